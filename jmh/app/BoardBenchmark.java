@@ -0,0 +1,206 @@
+package app;
+
+import app.exception.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BoardBenchmark {
+
+    /*
+     *   Overview:
+     *      Benchmark JMH delle operazioni di DataBoard sulle diverse implementazioni di Board,
+     *      con gli stessi parametri di Benchmark.java (che resta come alternativa senza dipendenze).
+     *      Le letture e insertLike sono misurate su una board popolata una sola volta per trial,
+     *      put e remove sull'intero feed, con una board nuova preparata prima di ogni invocazione.
+     *      Le operazioni protette usano una sessione aperta durante la preparazione, per cui
+     *      l'autenticazione non fa parte delle misure.
+     *
+     *   Uso:
+     *      gradle jmh -Pjmh.args="-p implementation=Board3 -p feedSize=1000 get"
+     *
+     */
+
+    static final String username = "Luca";
+    static final String password = "un1c0rn1!";
+
+    @Param({"Board1", "Board2", "Board3"})
+    public String implementation;
+
+    @Param({"10000"})
+    public int feedSize;
+
+    @Param({"16"})
+    public int categories;
+
+    @Param({"32"})
+    public int friendsPerCategory;
+
+    @Param({"4"})
+    public int likesPerPost;
+
+    private Random random;
+    private List<Data> posts;
+    private Board<Data> board;
+    private Session session;
+
+    @Setup(Level.Trial)
+    public void setUp()
+            throws Exception {
+
+        // La creazione delle board non è misurata: l'hash della password può essere economico
+        Board.setPasswordIterations(1_000);
+        this.random = new Random(42);
+        this.posts = this.newPosts();
+        this.board = this.newBoard();
+        this.session = this.board.login(password);
+        this.populate(this.board, this.session, this.posts);
+    }
+
+    /**
+     * Board vuota, con le sole categorie e amici, preparata prima di ogni invocazione di putFeed
+     */
+    @State(Scope.Thread)
+    public static class EmptyBoard {
+        List<Data> posts;
+        Board<Data> board;
+        Session session;
+
+        @Setup(Level.Invocation)
+        public void setUp(BoardBenchmark benchmark)
+                throws Exception {
+            this.posts = benchmark.newPosts();
+            this.board = benchmark.newBoard();
+            this.session = this.board.login(password);
+        }
+    }
+
+    /**
+     * Board popolata, preparata prima di ogni invocazione di removeFeed
+     */
+    @State(Scope.Thread)
+    public static class FullBoard {
+        List<Data> posts;
+        Board<Data> board;
+        Session session;
+
+        @Setup(Level.Invocation)
+        public void setUp(BoardBenchmark benchmark)
+                throws Exception {
+            this.posts = benchmark.newPosts();
+            this.board = benchmark.newBoard();
+            this.session = this.board.login(password);
+            benchmark.populate(this.board, this.session, this.posts);
+        }
+    }
+
+    @Benchmark
+    public void putFeed(EmptyBoard state)
+            throws Exception {
+        for (Data post : state.posts)
+            state.board.put(state.session, post, post.getCategory());
+    }
+
+    @Benchmark
+    public void removeFeed(FullBoard state)
+            throws Exception {
+        for (Data post : state.posts)
+            state.board.remove(state.session, post);
+    }
+
+    @Benchmark
+    public Data get()
+            throws Exception {
+        return board.get(session, posts.get(random.nextInt(feedSize)));
+    }
+
+    @Benchmark
+    public void insertLike()
+            throws Exception {
+        board.insertLike(friend(random.nextInt(friendsPerCategory)), posts.get(random.nextInt(feedSize)));
+    }
+
+    @Benchmark
+    public List<Data> getDataCategory()
+            throws Exception {
+        return board.getDataCategory(session, category(random.nextInt(categories)));
+    }
+
+    @Benchmark
+    public void getIterator(Blackhole blackhole)
+            throws Exception {
+        for (Iterator<Data> iterator = board.getIterator(session); iterator.hasNext(); )
+            blackhole.consume(iterator.next());
+    }
+
+    @Benchmark
+    public void getFriendIterator(Blackhole blackhole)
+            throws Exception {
+        Iterator<Data> iterator = board.getFriendIterator(friend(random.nextInt(friendsPerCategory)));
+        while (iterator.hasNext())
+            blackhole.consume(iterator.next());
+    }
+
+    // Board vuota dell'implementazione scelta, con le categorie ed i loro amici
+    private Board<Data> newBoard()
+            throws Exception {
+
+        Board<Data> board;
+        switch (implementation) {
+            case "Board1":
+                board = new Board1<>(username, password);
+                break;
+            case "Board2":
+                board = new Board2<>(username, password);
+                break;
+            case "Board3":
+                board = new Board3<>(username, password);
+                break;
+            default:
+                throw new IllegalArgumentException(implementation);
+        }
+        for (int c = 0; c < categories; c++) {
+            board.createCategory(category(c), password);
+            for (int f = 0; f < friendsPerCategory; f++)
+                board.addFriend(category(c), password, friend(f));
+        }
+        return board;
+    }
+
+    // Inserisce i posts ed i loro like
+    private void populate(Board<Data> board, Session session, List<Data> posts)
+            throws Exception {
+
+        for (Data post : posts) {
+            board.put(session, post, post.getCategory());
+            for (int l = 0; l < Math.min(likesPerPost, friendsPerCategory); l++)
+                board.insertLike(friend(l), post);
+        }
+    }
+
+    private List<Data> newPosts()
+            throws EmptyFieldException {
+
+        List<Data> posts = new ArrayList<>(feedSize);
+        for (int i = 0; i < feedSize; i++)
+            posts.add(new Data(username, "<" + random.nextInt(feedSize) + ">", category(i % categories)));
+        return posts;
+    }
+
+    private static String category(int c) {
+        return "Category" + c;
+    }
+
+    // Gli amici "f0".."fN" sono condivisi tra tutte le categorie
+    private static String friend(int f) {
+        return "f" + f;
+    }
+}
@@ -1,8 +1,16 @@
 package app;
 
-import app.exception.EmptyFieldException;
-import app.exception.SamePasswordException;
-import app.exception.UnauthorizedException;
+import app.exception.*;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
 
 public abstract class Board<E extends Data>
         implements DataBoard<E> {
@@ -15,23 +23,79 @@ public abstract class Board<E extends Data>
      *       restringerne l'utilizzo al solo proprietario. Inoltre fornisce un metodo
      *       di autenticazione per sbloccare le funzioni protette
      *       ed uno per cambiare la password, se lo si desidera.
+     *       La password non viene conservata in chiaro ma come hash salato (vedi Credential.java),
+     *       volutamente lento da calcolare. Per non pagarne il costo ad ogni operazione, le ultime
+     *       password verificate con successo sono ricordate in una piccola cache LRU, indicizzata
+     *       da una chiave veloce legata alla credenziale corrente: un cambio di password la svuota
+     *       e rende comunque inutilizzabili le chiavi calcolate prima del cambio.
+     *       I tentativi falliti non entrano nella cache e pagano sempre l'hash completo.
+     *       Per non verificare la password ad ogni operazione, l'utente può autenticarsi una volta
+     *       sola con login ed ottenere una sessione (vedi Session.java), accettata da tutte le operazioni
+     *       protette. Ogni sessione ha un token casuale segreto, confrontato in tempo costante;
+     *       le sessioni si chiudono con logout e vengono tutte revocate quando la password cambia.
+     *       Una sessione non usata per più di sessionIdleMs millisecondi scade, ed una board tiene
+     *       aperte al più maxSessions sessioni: un login oltre il limite chiude quella usata
+     *       meno di recente, così che le sessioni abbandonate non si accumulino.
+     *       Le implementazioni realizzano le operazioni protette nella versione con sessione:
+     *       la versione con password, definita qui, verifica la password e le esegue
+     *       con una sessione interna, che non viene mai restituita all'esterno.
      *
      *   Typical Element:
-     *       <owner, password, data>, dove:
+     *       <owner, credential, verified, sessions, data>, dove:
      *           owner (string)      è il nome del proprietario della board
-     *           password (string)   è la chiave di accesso alla board per l'utente 'owner'
+     *           credential (hash)   è l'hash salato della password dell'utente 'owner'
+     *           verified (cache)    sono le chiavi di cache delle ultime password verificate
+     *           sessions (map)      associa all'id di ogni sessione aperta il suo token
+     *                                   e l'istante del suo ultimo utilizzo
+     *           sessionIdleMs (long) è il tempo di inutilizzo dopo cui una sessione scade
+     *           maxSessions (int)   è il numero massimo di sessioni aperte
      *           data (misc)         è l'insieme delle strutture dati utilizzati per far
      *                                   funzionare la board, che dipende dall'implementazione scelta
      *                                   (Fare riferimento alla doc di Board1 e Board2 per i dettagli).
      *
      *   Representation Invariant:
      *       owner != null && owner != ""
-     *       && password != null && password != ""
+     *       && (credential != null || la board delega l'autenticazione ad un'altra board)
+     *       && verified != null && #verified <= VERIFIED_CACHE_SIZE
+     *       && for each(key) in verified : key == credential.cacheKey(password)
+     *       && sessions != null && #sessions <= maxSessions
+     *       && for each(id, entry) in sessions : entry.token.length == TOKEN_BYTES
+     *       && sessionIdleMs > 0 && maxSessions > 0
      *
      */
 
+    // Lunghezza in byte dei token di sessione
+    private static final int TOKEN_BYTES = 32;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    // Numero massimo di password verificate ricordate
+    private static final int VERIFIED_CACHE_SIZE = 8;
+    // Tempo di inutilizzo predefinito dopo cui una sessione scade
+    public static final long DEFAULT_SESSION_IDLE_MS = 30 * 60 * 1000;
+    // Numero massimo predefinito di sessioni aperte su una board
+    public static final int DEFAULT_MAX_SESSIONS = 64;
+
+    // Numero di iterazioni dell'hash delle password impostate da qui in poi
+    private static volatile int passwordIterations = Credential.DEFAULT_ITERATIONS;
+
     private final String owner;
-    private String password;
+    private volatile Credential credential;
+    private final Map<ByteBuffer, Boolean> verified;
+    private final Map<Long, SessionEntry> sessions;
+    private final AtomicLong nextSession;
+    private final Session internal;
+    private volatile long sessionIdleMs;
+    private volatile int maxSessions;
+
+    // Token di una sessione aperta e istante (System.nanoTime) del suo ultimo utilizzo
+    private static final class SessionEntry {
+        final byte[] token;
+        volatile long lastUsed;
+
+        SessionEntry(byte[] token, long lastUsed) {
+            this.token = token;
+            this.lastUsed = lastUsed;
+        }
+    }
 
     /**
      * Costruttore di Board
@@ -43,11 +107,63 @@ public abstract class Board<E extends Data>
     public Board(String owner, String password)
             throws EmptyFieldException {
 
-        if (owner.isBlank() || password.isBlank())
+        this(owner);
+        if (password.isBlank())
+            throw new EmptyFieldException();
+
+        this.credential = Credential.of(password, passwordIterations);
+        this.verified.put(this.credential.cacheKey(password), Boolean.TRUE);
+    }
+
+    /**
+     * Costruttore di Board senza credenziale, per le board che delegano autenticazione
+     * e sessioni ad un'altra board (vedi DurableBoard): non calcola l'hash di nessuna password,
+     * per cui la sottoclasse deve ridefinire authentication, resetPassword, login, logout
+     * ed authorize
+     *
+     * @param owner username valido, diverso dalla stringa vuota
+     * @throws EmptyFieldException se username è vuoto
+     */
+    Board(String owner)
+            throws EmptyFieldException {
+
+        if (owner.isBlank())
             throw new EmptyFieldException();
 
         this.owner = owner;
-        this.password = password; // Hash?
+        this.credential = null;
+        this.verified = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Boolean> eldest) {
+                return this.size() > VERIFIED_CACHE_SIZE;
+            }
+        };
+        this.sessions = new ConcurrentHashMap<>();
+        this.nextSession = new AtomicLong(1);
+        this.internal = new Session(this, 0, newToken());
+        this.sessionIdleMs = DEFAULT_SESSION_IDLE_MS;
+        this.maxSessions = DEFAULT_MAX_SESSIONS;
+    }
+
+    /**
+     * Imposta il numero di iterazioni dell'hash delle password (vedi Credential.java) per le board
+     * create e le password cambiate da qui in poi; le credenziali esistenti mantengono il proprio.
+     * Ridurlo rende più economici creazione e login, ad esempio in test e benchmark,
+     * a scapito della resistenza ai tentativi di indovinare le password
+     *
+     * @param iterations numero di iterazioni, positivo
+     * @throws IllegalArgumentException se iterations non è positivo
+     */
+    public static void setPasswordIterations(int iterations) {
+        if (iterations <= 0)
+            throw new IllegalArgumentException();
+        passwordIterations = iterations;
+    }
+
+    private static byte[] newToken() {
+        byte[] token = new byte[TOKEN_BYTES];
+        RANDOM.nextBytes(token);
+        return token;
     }
 
     /**
@@ -60,7 +176,8 @@ public abstract class Board<E extends Data>
     }
 
     /**
-     * Verifica di autenticazione
+     * Verifica di autenticazione: le password verificate di recente sono riconosciute
+     * dalla cache, le altre ricalcolando l'hash
      *
      * @param password password corrente dell'utente
      * @return (true) se l'autenticazione è riuscita, ovvero la password è corretta
@@ -72,8 +189,17 @@ public abstract class Board<E extends Data>
 
         if (password.isBlank())
             throw new EmptyFieldException();
-        if (!(password.equals(this.password)))
+        Credential credential = this.credential;
+        ByteBuffer key = credential.cacheKey(password);
+        synchronized (this.verified) {
+            if (this.verified.get(key) != null)
+                return true;
+        }
+        if (!credential.matches(password))
             throw new UnauthorizedException();
+        synchronized (this.verified) {
+            this.verified.put(key, Boolean.TRUE);
+        }
         return true;
     }
 
@@ -85,10 +211,11 @@ public abstract class Board<E extends Data>
      * @throws EmptyFieldException   se almeno uno dei due parametri è vuoto
      * @throws SamePasswordException se newPassword è uguale a currentPassowrd
      * @throws UnauthorizedException se la password corrente non è giusta
-     * @modifies this.password
-     * @effects post(this.password) = newPassword
+     * @modifies this.credential, this.verified, this.sessions
+     * @effects post(this.credential) = hash(newPassword) && post(this.verified) = {}
+     *          && post(this.sessions) = {}
      */
-    public void resetPassword(String currentPassword, String newPassword)
+    public synchronized void resetPassword(String currentPassword, String newPassword)
             throws EmptyFieldException, SamePasswordException, UnauthorizedException {
 
         if (currentPassword.isBlank() || newPassword.isBlank())
@@ -97,7 +224,370 @@ public abstract class Board<E extends Data>
             throw new SamePasswordException();
 
         this.authentication(currentPassword);
-        this.password = newPassword;
+        this.credential = Credential.of(newPassword, passwordIterations);
+        synchronized (this.verified) {
+            this.verified.clear();
+        }
+        this.sessions.clear();
+
+    }
+
+    /**
+     * Apre una nuova sessione sulla board
+     *
+     * @param password password corrente dell'utente
+     * @return (session) la sessione, da passare alle operazioni protette al posto della password
+     * @throws EmptyFieldException   se password è una stringa vuota
+     * @throws UnauthorizedException se la password non è corretta
+     * @modifies this.sessions
+     * @effects post(this.sessions) = pre(this.sessions) U {session}
+     */
+    public Session login(String password)
+            throws EmptyFieldException, UnauthorizedException {
+
+        Credential credential = this.credential;
+        this.authentication(password);
+        byte[] token = newToken();
+        long id = this.nextSession.getAndIncrement();
+        long now = System.nanoTime();
+        synchronized (this.sessions) {
+            this.expireSessions(now);
+            this.sessions.put(id, new SessionEntry(token, now));
+        }
+        // Se nel frattempo la password è cambiata, la sessione potrebbe essere sfuggita alla revoca
+        if (this.credential != credential) {
+            this.sessions.remove(id);
+            throw new UnauthorizedException();
+        }
+        return new Session(this, id, token.clone());
+    }
+
+    /**
+     * Chiude una sessione, che da quel momento non è più accettata
+     *
+     * @param session la sessione da chiudere
+     * @modifies this.sessions
+     * @effects post(this.sessions) = pre(this.sessions) \ {session}
+     */
+    public void logout(Session session) {
+        if (session.board() == this) {
+            SessionEntry entry = this.sessions.get(session.id());
+            if (entry != null && MessageDigest.isEqual(entry.token, session.token()))
+                this.sessions.remove(session.id(), entry);
+        }
+    }
+
+    /**
+     * Imposta la scadenza ed il numero massimo delle sessioni; le sessioni aperte oltre
+     * i nuovi limiti vengono chiuse al prossimo login o al loro prossimo utilizzo
+     *
+     * @param sessionIdleMs tempo in millisecondi di inutilizzo dopo cui una sessione scade
+     * @param maxSessions   numero massimo di sessioni aperte sulla board
+     * @throws IllegalArgumentException se uno dei due limiti non è positivo
+     * @modifies this.sessionIdleMs, this.maxSessions
+     */
+    public void setSessionLimits(long sessionIdleMs, int maxSessions) {
+        if (sessionIdleMs <= 0 || maxSessions <= 0)
+            throw new IllegalArgumentException();
+        this.sessionIdleMs = sessionIdleMs;
+        this.maxSessions = maxSessions;
+    }
+
+    // Chiude le sessioni scadute e, se serve, quelle usate meno di recente,
+    // lasciando posto per una nuova sessione
+    private void expireSessions(long now) {
+        long idle = TimeUnit.MILLISECONDS.toNanos(this.sessionIdleMs);
+        this.sessions.values().removeIf(entry -> now - entry.lastUsed > idle);
+        int excess = this.sessions.size() - this.maxSessions + 1;
+        if (excess <= 0)
+            return;
+        List<Map.Entry<Long, SessionEntry>> open = new ArrayList<>(this.sessions.entrySet());
+        open.sort(Comparator.comparingLong(e -> e.getValue().lastUsed));
+        for (int i = 0; i < excess; i++)
+            this.sessions.remove(open.get(i).getKey(), open.get(i).getValue());
+    }
+
+    /**
+     * Verifica la password e restituisce la sessione interna, usata dalle operazioni
+     * con password per eseguire la corrispondente operazione con sessione
+     *
+     * @param password password corrente dell'utente
+     * @return (session) la sessione interna della board
+     * @throws EmptyFieldException   se password è una stringa vuota
+     * @throws UnauthorizedException se la password non è corretta
+     */
+    Session authorize(String password)
+            throws EmptyFieldException, UnauthorizedException {
+
+        this.authentication(password);
+        return this.internal;
+    }
+
+    /**
+     * Verifica che una sessione sia aperta su questa board, confrontandone il token in tempo costante
+     *
+     * @param session la sessione da verificare
+     * @throws UnauthorizedException se la sessione non appartiene alla board, è stata chiusa,
+     *                               revocata o è scaduta
+     */
+    void authorize(Session session)
+            throws UnauthorizedException {
+
+        if (session == this.internal)
+            return;
+        SessionEntry entry = session.board() == this ? this.sessions.get(session.id()) : null;
+        if (entry == null || !MessageDigest.isEqual(entry.token, session.token()))
+            throw new UnauthorizedException();
+        long now = System.nanoTime();
+        if (now - entry.lastUsed > TimeUnit.MILLISECONDS.toNanos(this.sessionIdleMs)) {
+            this.sessions.remove(session.id(), entry);
+            throw new UnauthorizedException();
+        }
+        entry.lastUsed = now;
+    }
+
+    /**
+     * Autentica l'utente con la password ed esegue l'operazione
+     *
+     * @see DataBoard#createCategory(String, Session)
+     */
+    @Override
+    public void createCategory(String category, String password)
+            throws UnauthorizedException, EmptyFieldException, DuplicateItemException {
+        this.createCategory(category, this.authorize(password));
+    }
+
+    /**
+     * Autentica l'utente con la password ed esegue l'operazione
+     *
+     * @see DataBoard#removeCategory(String, Session)
+     */
+    @Override
+    public void removeCategory(String category, String password)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+        this.removeCategory(category, this.authorize(password));
+    }
+
+    /**
+     * Autentica l'utente con la password ed esegue l'operazione
+     *
+     * @see DataBoard#addFriend(String, Session, String)
+     */
+    @Override
+    public void addFriend(String category, String password, String friend)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+        this.addFriend(category, this.authorize(password), friend);
+    }
+
+    /**
+     * Autentica l'utente con la password ed esegue l'operazione
+     *
+     * @see DataBoard#removeFriend(String, Session, String)
+     */
+    @Override
+    public void removeFriend(String category, String password, String friend)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+        this.removeFriend(category, this.authorize(password), friend);
+    }
+
+    /**
+     * Autentica l'utente con la password ed esegue l'operazione
+     *
+     * @see DataBoard#put(Session, Data, String)
+     */
+    @Override
+    public boolean put(String password, E post, String category)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+        return this.put(this.authorize(password), post, category);
+    }
+
+    /**
+     * Autentica l'utente con la password ed esegue l'operazione
+     *
+     * @see DataBoard#putAll(Session, Collection, String)
+     */
+    @Override
+    public boolean putAll(String password, Collection<? extends E> posts, String category)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+        return this.putAll(this.authorize(password), posts, category);
+    }
+
+    /**
+     * Autentica l'utente con la password ed esegue l'operazione
+     *
+     * @see DataBoard#get(Session, Data)
+     */
+    @Override
+    public E get(String password, E post)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+        return this.get(this.authorize(password), post);
+    }
+
+    /**
+     * Autentica l'utente con la password ed esegue l'operazione
+     *
+     * @see DataBoard#remove(Session, Data)
+     */
+    @Override
+    public E remove(String password, E post)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+        return this.remove(this.authorize(password), post);
+    }
+
+    /**
+     * Autentica l'utente con la password ed esegue l'operazione
+     *
+     * @see DataBoard#getDataCategory(Session, String)
+     */
+    @Override
+    public List<E> getDataCategory(String password, String category)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+        return this.getDataCategory(this.authorize(password), category);
+    }
+
+    /**
+     * Autentica l'utente con la password ed esegue l'operazione
+     *
+     * @see DataBoard#getDataCategory(Session, String, String, int)
+     */
+    @Override
+    public Page<E> getDataCategory(String password, String category, String cursor, int limit)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+        return this.getDataCategory(this.authorize(password), category, cursor, limit);
+    }
+
+    /**
+     * Autentica l'utente con la password ed esegue l'operazione
+     *
+     * @see DataBoard#getDataSince(Session, long)
+     */
+    @Override
+    public List<E> getDataSince(String password, long since)
+            throws UnauthorizedException, EmptyFieldException {
+        return this.getDataSince(this.authorize(password), since);
+    }
+
+    /**
+     * Autentica l'utente con la password ed esegue l'operazione
+     *
+     * @see DataBoard#getDataBetween(Session, long, long)
+     */
+    @Override
+    public List<E> getDataBetween(String password, long from, long to)
+            throws UnauthorizedException, EmptyFieldException {
+        return this.getDataBetween(this.authorize(password), from, to);
+    }
+
+    /**
+     * Autentica l'utente con la password ed esegue l'operazione
+     *
+     * @see DataBoard#searchCategory(Session, String, String)
+     */
+    @Override
+    public List<E> searchCategory(String password, String category, String query)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+        return this.searchCategory(this.authorize(password), category, query);
+    }
+
+    /**
+     * Autentica l'utente con la password ed esegue l'operazione
+     *
+     * @see DataBoard#getIterator(Session)
+     */
+    @Override
+    public Iterator<E> getIterator(String password)
+            throws UnauthorizedException, EmptyFieldException {
+        return this.getIterator(this.authorize(password));
+    }
+
+    /**
+     * Autentica l'utente con la password ed esegue l'operazione
+     *
+     * @see DataBoard#getTopIterator(Session, int)
+     */
+    @Override
+    public Iterator<E> getTopIterator(String password, int k)
+            throws UnauthorizedException, EmptyFieldException {
+        return this.getTopIterator(this.authorize(password), k);
+    }
+
+    /**
+     * Autentica l'utente con la password ed esegue l'operazione
+     *
+     * @see DataBoard#getPage(Session, String, int)
+     */
+    @Override
+    public Page<E> getPage(String password, String cursor, int limit)
+            throws UnauthorizedException, EmptyFieldException {
+        return this.getPage(this.authorize(password), cursor, limit);
+    }
+
+    /**
+     * Autentica l'utente con la password ed esegue l'operazione
+     *
+     * @see DataBoard#stream(Session)
+     */
+    @Override
+    public Stream<E> stream(String password)
+            throws UnauthorizedException, EmptyFieldException {
+        return this.stream(this.authorize(password));
+    }
+
+    /**
+     * Autentica l'utente con la password ed esegue l'operazione
+     *
+     * @see DataBoard#categoryStream(Session, String)
+     */
+    @Override
+    public Stream<E> categoryStream(String password, String category)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+        return this.categoryStream(this.authorize(password), category);
+    }
+
+    /**
+     * Visita tutte le categorie della board insieme all'insieme dei rispettivi amici,
+     * usato per salvare lo stato della board (vedi Snapshot.java)
+     *
+     * @param action azione da eseguire su ogni coppia <categoria, amici>
+     */
+    abstract void forEachCategory(BiConsumer<String, Set<String>> action);
+
+    /**
+     * Fotografia di tutti i posts della board, duplicati compresi, insieme alla categoria
+     * in cui sono archiviati, usata per salvare lo stato della board (vedi Snapshot.java).
+     * La fotografia si prende in O(1) per ogni feed (vedi Feed.snapshot) e non risente
+     * delle modifiche successive. L'ordine di pubblicazione è rispettato almeno
+     * all'interno di ogni categoria
+     *
+     * @return (posts) iteratore (senza remove) sulle coppie <categoria, post>
+     */
+    abstract Iterator<Map.Entry<String, E>> postSnapshot();
+
+    /**
+     * Concatena le fotografie dei feed di più categorie, nell'ordine della map
+     *
+     * @param feeds associa ad ogni categoria la fotografia del suo feed
+     * @param <E>   tipo dei posts
+     * @return (posts) iteratore (senza remove) sulle coppie <categoria, post>
+     */
+    static <E> Iterator<Map.Entry<String, E>> concat(Map<String, ? extends Iterator<E>> feeds) {
+        Iterator<? extends Map.Entry<String, ? extends Iterator<E>>> categories = feeds.entrySet().iterator();
+        return new Iterator<>() {
+            private Map.Entry<String, ? extends Iterator<E>> current;
+
+            @Override
+            public boolean hasNext() {
+                while ((current == null || !current.getValue().hasNext()) && categories.hasNext())
+                    current = categories.next();
+                return current != null && current.getValue().hasNext();
+            }
 
+            @Override
+            public Map.Entry<String, E> next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return Map.entry(current.getKey(), current.getValue().next());
+            }
+        };
     }
 }
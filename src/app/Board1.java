@@ -3,6 +3,9 @@ package app;
 import app.exception.*;
 
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class Board1<E extends Data>
         extends Board<E> {
@@ -12,35 +15,84 @@ public class Board1<E extends Data>
      *      Una delle due implementazione della classe astratta Board.
      *      Questa prima implementazione prevede l'utilizzo di tre strutture dati differenti
      *      senza far uso di classi esterne. I posts creati dall'utente vengono salvati
-     *      all'interno di una lista <feed>, in modo da poter inserire
-     *      anche più di una volta uno stesso post, ammettendo quindi duplicati.
+     *      all'interno di un <feed> (vedi Feed.java), in modo da poter inserire
+     *      anche più di una volta uno stesso post, ammettendo quindi duplicati,
+     *      ed accedere ad un post specifico in tempo costante. Accanto al feed è mantenuta
+     *      una classifica (vedi Ranking.java) dei posts ordinata per numero di like,
+     *      un indice per timestamp (vedi TimeIndex.java) per le interrogazioni su un intervallo
+     *      di tempo ed un indice secondario che raggruppa i posts per categoria; accanto al feed
+     *      di ogni categoria è tenuto un indice invertito sul contenuto (vedi ContentIndex.java),
+     *      così che le ricerche in una categoria leggano solo le posting list della categoria.
+     *      Per ogni amico è infine mantenuto l'insieme delle categorie condivise con lui,
+     *      così che il suo feed si costruisca visitando solo i posts che può vedere.
      *      La lista degli amici invece è contenuta in un Set, in quanto questi
      *      non possono essere duplicati. Infine, le categorie sono contenute in una Map,
      *      per permetterne l'associazione con gli amici che possono visualizzare i contenuti
      *      appartenenti ad una specifica categoria.
+     *      Gli insiemi di amici e di categorie contengono gli identificativi interi assegnati
+     *      ai nomi dalla tabella dei simboli della board (vedi Symbols.java), non le stringhe.
+     *      Se costruita con una capacità positiva, la board lavora in modalità fan-out-on-write:
+     *      ogni post inserito viene spinto nella casella (vedi Inbox.java) di ogni amico della sua
+     *      categoria, così che getTimeline legga gli ultimi posts di un amico in O(limit).
+     *      Le caselle sono create alla prima lettura; quando le categorie visibili ad un amico
+     *      cambiano, o un post viene rimosso, le caselle coinvolte sono scartate e ricostruite
+     *      alla lettura successiva.
      *
      *   Abstraction Function:
-     *      <owner, password, feed, categories, friends>, dove:
+     *      <owner, password, feed, ranking, byTime, postsByCategory, contentByCategory, symbols, categories,
+     *      friends, sharedCategories, inboxCapacity, inboxes>, dove:
      *          owner (string)      è il nome del proprietario della board
      *          password (string)   è la chiave di accesso alla board per l'utente 'owner'
-     *          feed (list)         è la lista dei posts condivisi dal proprietario della board
+     *          feed (feed)         è la sequenza dei posts condivisi dal proprietario della board
+     *          ranking (ranking)   contiene gli stessi posts del feed, ordinati per numero di like
+     *          byTime (index)      contiene gli stessi posts del feed, ordinati per timestamp
+     *          postsByCategory (map)   associa al nome di una categoria il feed dei soli posts
+     *                                  appartenenti alla stessa (secondo post.category)
+     *          contentByCategory (map) associa al nome di una categoria l'indice per parola
+     *                                  degli stessi posts di postsByCategory
+     *          symbols (table)     è la tabella dei simboli degli amici e delle categorie della board
      *          categories (map)    è una map che associa alle categorie create dell'utente, gli amici
      *                                  che sono autorizzati a visualizzare i contenuti appartenenti alla stessa
      *          friend (set)        è un insieme di amici (quindi tutti distinti) che pssono visualizzare
      *                                  i contenuti associati alla categoria a cui appartengono.
+     *          sharedCategories (map)  è l'indice inverso di categories, che associa ad ogni amico
+     *                                  le categorie che può visualizzare
+     *          inboxCapacity (int)     è la capacità delle caselle, 0 se la modalità è disattivata
+     *          inboxes (map)           associa ad alcuni amici la casella con gli ultimi posts
+     *                                  condivisi con loro, null se la modalità è disattivata
      *
      *   Representation Invariant:
      *      owner != null && owner != ""
      *      && password != null && password != ""
-     *      && feed != null && categories != null && friends != null
+     *      && feed != null && ranking != null && categories != null && friends != null && symbols != null
+     *      && byTime != null && postsByCategory != null && contentByCategory != null
+     *      && for each(post) in feed : #(post in feed) == #(post in ranking) == #(post in byTime)
+     *          == #(post in postsByCategory[post.category]) == copies(post in contentByCategory[post.category])
+     *      && for each(category, posts) in postsByCategory : posts.size > 0
+     *      && keys(contentByCategory) == keys(postsByCategory)
+     *      && for each(friend, shared) in sharedCategories : shared != empty
+     *          && for each(category) in shared : friend in categories[category]
+     *      && for each(category) in categories : for each(friend) in categories[category] :
+     *          category in sharedCategories[friend]
      *      && for each(category) in categories : name(category) != "" && unique
      *      && for each(friend) in (for each(category) in categories : name(category.friend) != "" && unique)
+     *      && inboxCapacity >= 0 && (inboxCapacity == 0 <=> inboxes == null)
+     *      && for each(friend, inbox) in inboxes : inbox contiene gli ultimi posts
+     *          di getFriendIterator(friend), fino alla sua capacità
      *
      */
 
-    private List<E> feed;
-    private Set<String> friends;
-    private Map<String, Set<String>> categories;
+    private Feed<E> feed;
+    private Ranking<E> ranking;
+    private TimeIndex<E> byTime;
+    private Map<String, Feed<E>> postsByCategory;
+    private Map<String, ContentIndex<E>> contentByCategory;
+    private final Symbols symbols;
+    private SymbolSet friends;
+    private Map<String, SymbolSet> categories;
+    private Map<String, SymbolSet> sharedCategories;
+    private final int inboxCapacity;
+    private Map<String, Inbox<E>> inboxes;
 
     /**
      * Costruttore di board (1)
@@ -51,57 +103,84 @@ public class Board1<E extends Data>
      */
     public Board1(String username, String password)
             throws EmptyFieldException {
+        this(username, password, 0);
+    }
+
+    /**
+     * Costruttore di board (1) in modalità fan-out-on-write
+     *
+     * @param username      valido, diverso dalla stringa vuota
+     * @param password      valida, diverso dalla stringa vuota
+     * @param inboxCapacity numero di posts tenuti nella casella di ogni amico, 0 per disattivare la modalità
+     * @throws EmptyFieldException      se almeno uno dei parametri è vuoto
+     * @throws IllegalArgumentException se inboxCapacity è negativa
+     */
+    public Board1(String username, String password, int inboxCapacity)
+            throws EmptyFieldException {
         super(username, password);
-        this.feed = new ArrayList<>();
-        this.friends = new HashSet<>();
+        if (inboxCapacity < 0)
+            throw new IllegalArgumentException();
+        this.inboxCapacity = inboxCapacity;
+        this.inboxes = inboxCapacity > 0 ? new HashMap<>() : null;
+        this.feed = new Feed<>();
+        this.ranking = new Ranking<>();
+        this.byTime = new TimeIndex<>();
+        this.postsByCategory = new HashMap<>();
+        this.contentByCategory = new HashMap<>();
+        this.symbols = new Symbols();
+        this.friends = new SymbolSet(this.symbols);
         this.categories = new HashMap<>();
+        this.sharedCategories = new HashMap<>();
     }
 
     /**
      * Crea una nuova categoria
      *
      * @param category nome della categoria da creare
-     * @param password password dell'utente per autenticarsi
+     * @param session  sessione dell'utente, ottenuta con login
      * @throws EmptyFieldException    se almeno uno dei due parametri è una stringa vuota
-     * @throws UnauthorizedException  se la password non è corretta
+     * @throws UnauthorizedException  se la sessione non è valida
      * @throws DuplicateItemException se esiste già una categoria con lo stesso nome
      * @modifies this.categories
      * @effects post(this.categories) = pre(this.categories) U {category}
      */
     @Override
-    public void createCategory(String category, String password)
+    public void createCategory(String category, Session session)
             throws EmptyFieldException, UnauthorizedException, DuplicateItemException {
 
-        if (password.isBlank() || category.isBlank())
+        if (category.isBlank())
             throw new EmptyFieldException();
-        this.authentication(password);
+        this.authorize(session);
         if (this.categories.containsKey(category))
             throw new DuplicateItemException();
         else
-            this.categories.put(category, new TreeSet<>());
+            this.categories.put(category, new SymbolSet(this.symbols));
     }
 
     /**
      * Rimuove una categoria esistente
      *
      * @param category nome della categoria da rimuovere
-     * @param password password dell'utente per autenticarsi
+     * @param session  sessione dell'utente, ottenuta con login
      * @throws EmptyFieldException   se uno dei due parametri è una stringa vuota
-     * @throws UnauthorizedException se la password non è corretta
+     * @throws UnauthorizedException se la sessione non è valida
      * @throws ItemNotFoundException se la categoria da rimuovere non esiste
-     * @modifies this.categories
+     * @modifies this.categories, this.sharedCategories
      * @effects post(this.categories) = pre(this.categories) \ {category}
      */
     @Override
-    public void removeCategory(String category, String password)
+    public void removeCategory(String category, Session session)
             throws EmptyFieldException, UnauthorizedException, ItemNotFoundException {
 
-        if (password.isEmpty() || category.isEmpty())
+        if (category.isEmpty())
             throw new EmptyFieldException();
-        this.authentication(password);
-        if (this.categories.containsKey(category))
-            this.categories.remove(category);
-        else
+        this.authorize(session);
+        if (this.categories.containsKey(category)) {
+            for (String friend : this.categories.remove(category).view()) {
+                this.unshare(category, friend);
+                this.invalidate(friend);
+            }
+        } else
             throw new ItemNotFoundException();
     }
 
@@ -109,25 +188,27 @@ public class Board1<E extends Data>
      * Associa un nuovo amico ad una categoria esistente
      *
      * @param category nome della categoria dove aggiungere l'amico
-     * @param password password dell'utente per autenticarsi
+     * @param session  sessione dell'utente, ottenuta con login
      * @param friend   nome dell'amico da aggiungere
      * @throws EmptyFieldException   se almeno uno dei tre parametri è una stringa vuota
-     * @throws UnauthorizedException se la password non è corretta
+     * @throws UnauthorizedException se la sessione non è valida
      * @throws ItemNotFoundException se non esiste una categoria con quel nome
-     * @modifies this.categories, this.friends
+     * @modifies this.categories, this.friends, this.sharedCategories
      * @effects post(this.categories[category]) = pre(this.categories[category]) U {friend}
      * @effects post(this.friends) = pre(this.friends) U {friend}
      */
     @Override
-    public void addFriend(String category, String password, String friend)
+    public void addFriend(String category, Session session, String friend)
             throws EmptyFieldException, UnauthorizedException, ItemNotFoundException {
 
-        if (password.isEmpty() || friend.isEmpty() || category.isEmpty())
+        if (friend.isEmpty() || category.isEmpty())
             throw new EmptyFieldException();
-        this.authentication(password);
+        this.authorize(session);
         if (this.categories.containsKey(category)) {
             this.categories.get(category).add(friend);
             this.friends.add(friend);
+            this.sharedCategories.computeIfAbsent(friend, f -> new SymbolSet(this.symbols)).add(category);
+            this.invalidate(friend);
         } else
             throw new ItemNotFoundException();
     }
@@ -136,76 +217,143 @@ public class Board1<E extends Data>
      * Rimuove l'associazione tra un certo amico ed una specifica categoria
      *
      * @param category nome della categoria da dove rimuovere l'amico
-     * @param password password dell'utente per autenticarsi
+     * @param session  sessione dell'utente, ottenuta con login
      * @param friend   nome dell'amico da rimuovere
      * @throws EmptyFieldException   se almeno uno dei tre parametri è una stringa vuota
-     * @throws UnauthorizedException se la password non è corretta
+     * @throws UnauthorizedException se la sessione non è valida
      * @throws ItemNotFoundException se non esiste un amico con quel nome
-     * @modifies this.categories, this.friends
+     * @modifies this.categories, this.friends, this.sharedCategories
      * @effects post(this.categories[category]) = pre(this.categories[category]) \ {friend}
      * @effects post(this.friends) = pre(this.friends) \ {friend}
      */
     @Override
-    public void removeFriend(String category, String password, String friend)
+    public void removeFriend(String category, Session session, String friend)
             throws EmptyFieldException, UnauthorizedException, ItemNotFoundException {
 
-        if (password.isBlank() || friend.isBlank() || category.isBlank())
+        if (friend.isBlank() || category.isBlank())
             throw new EmptyFieldException();
-        this.authentication(password);
+        this.authorize(session);
         if (this.friends.contains(friend)) {
             this.friends.remove(friend);
             this.categories.get(category).remove(friend);
+            this.unshare(category, friend);
+            this.invalidate(friend);
         } else
             throw new ItemNotFoundException();
     }
 
+    /**
+     * Rimuove una categoria dall'insieme di quelle condivise con un amico
+     *
+     * @param category nome della categoria
+     * @param friend   nome dell'amico
+     * @modifies this.sharedCategories
+     * @effects post(this.sharedCategories[friend]) = pre(this.sharedCategories[friend]) \ {category}
+     */
+    private void unshare(String category, String friend) {
+        SymbolSet shared = this.sharedCategories.get(friend);
+        if (shared != null && shared.remove(category) && shared.isEmpty())
+            this.sharedCategories.remove(friend);
+    }
+
     /**
      * Inserisce un nuovo post nel feed dell'utente
      *
-     * @param password password dell'utente per autenticarsi
+     * @param session  sessione dell'utente, ottenuta con login
      * @param post     il post da inserire nel feed
      * @param category nome della categoria dove inserire il post
      * @return (true) se l'operazione va a buon fine
      * @throws EmptyFieldException   se uno dei due parametri stringa è vuota
-     * @throws UnauthorizedException se la password non è corretta
+     * @throws UnauthorizedException se la sessione non è valida
      * @throws ItemNotFoundException se non esiste una categoria con quel nome
-     * @modifies this.feed
+     * @modifies this.feed, this.ranking, this.byTime, this.postsByCategory, this.contentByCategory
      * @effects post(this.feed) = pre(this.feed) U {post}
      */
     @Override
-    public boolean put(String password, E post, String category)
+    public boolean put(Session session, E post, String category)
             throws EmptyFieldException, UnauthorizedException, ItemNotFoundException {
 
-        if (password.isBlank() || category.isBlank())
+        if (category.isBlank())
             throw new EmptyFieldException();
-        this.authentication(password);
-        if (this.categories.containsKey(category))
+        this.authorize(session);
+        if (this.categories.containsKey(category)) {
             // Non controllo i duplicati, in quanto posso voler
             // pubblicare più di una volta uno stesso contenuto
-            return this.feed.add(post);
-        else
+            this.ranking.add(post);
+            post.retain();
+            this.byTime.add(post);
+            long seq = this.feed.add(post);
+            this.postsByCategory.computeIfAbsent(post.getCategory(), c -> new Feed<>()).add(post, seq);
+            this.contentByCategory.computeIfAbsent(post.getCategory(), c -> new ContentIndex<>()).add(post);
+            this.fanOut(post);
+            return true;
+        } else
             throw new ItemNotFoundException();
     }
 
+    /**
+     * Inserisce in blocco dei posts nel feed dell'utente, autenticandosi una sola volta
+     * e preparando il feed a riceverli tutti
+     *
+     * @param session  sessione dell'utente, ottenuta con login
+     * @param posts    i posts da inserire nel feed, nell'ordine della collezione
+     * @param category nome della categoria dove inserire i posts
+     * @return (true) se l'operazione va a buon fine
+     * @throws EmptyFieldException   se uno dei due parametri stringa è vuota
+     * @throws UnauthorizedException se la sessione non è valida
+     * @throws ItemNotFoundException se non esiste una categoria con quel nome
+     * @modifies this.feed, this.ranking, this.byTime, this.postsByCategory, this.contentByCategory
+     * @effects post(this.feed) = pre(this.feed) U posts
+     */
+    @Override
+    public boolean putAll(Session session, Collection<? extends E> posts, String category)
+            throws EmptyFieldException, UnauthorizedException, ItemNotFoundException {
+
+        if (category.isBlank())
+            throw new EmptyFieldException();
+        this.authorize(session);
+        if (!this.categories.containsKey(category))
+            throw new ItemNotFoundException();
+        for (E post : posts)
+            Objects.requireNonNull(post);
+
+        this.feed.ensureCapacity(posts.size());
+        // I posts di un blocco hanno quasi sempre la stessa categoria: si riusa l'ultimo indice
+        String bucketName = null;
+        Feed<E> bucket = null;
+        ContentIndex<E> bucketContent = null;
+        for (E post : posts) {
+            if (!post.getCategory().equals(bucketName)) {
+                bucketName = post.getCategory();
+                bucket = this.postsByCategory.computeIfAbsent(bucketName, c -> new Feed<>());
+                bucketContent = this.contentByCategory.computeIfAbsent(bucketName, c -> new ContentIndex<>());
+            }
+            this.ranking.add(post);
+            post.retain();
+            this.byTime.add(post);
+            bucket.add(post, this.feed.add(post));
+            bucketContent.add(post);
+            this.fanOut(post);
+        }
+        return true;
+    }
+
     /**
      * Visualizza un post dal feed dell'utente
      *
-     * @param password password dell'utente per autenticarsi
+     * @param session  sessione dell'utente, ottenuta con login
      * @param post     il post da visualizzare dal feed
      * @return (post) ritorna una copia del dato richiesto
-     * @throws EmptyFieldException   se il campo password è vuoto
-     * @throws UnauthorizedException se la password non è corretta
+     * @throws UnauthorizedException se la sessione non è valida
      * @throws ItemNotFoundException se il post richiesto non esiste
      */
     @Override
-    public E get(String password, E post)
+    public E get(Session session, E post)
             throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
 
-        if (password.isBlank())
-            throw new EmptyFieldException();
-        this.authentication(password);
+        this.authorize(session);
         if (this.feed.contains(post))
-            return (E) this.feed.get(this.feed.indexOf(post)).clone();
+            return (E) this.feed.get(post).clone();
         else
             throw new ItemNotFoundException();
     }
@@ -213,26 +361,35 @@ public class Board1<E extends Data>
     /**
      * Rimuove un post dal feed dell'utente
      *
-     * @param password password dell'utente per autenticarsi
+     * @param session  sessione dell'utente, ottenuta con login
      * @param post     il post da rimuovere dal feed
      * @return (post) ritorna una copia del dato rimosso
-     * @throws EmptyFieldException   se il campo password è vuoto
-     * @throws UnauthorizedException se la password non è corretta
+     * @throws UnauthorizedException se la sessione non è valida
      * @throws ItemNotFoundException se il post da rimuovere non esiste
-     * @modifies this.feed
+     * @modifies this.feed, this.ranking, this.byTime, this.postsByCategory, this.contentByCategory
      * @effects post(this.feed) = pre(this.feed) \ {post}
      */
     @Override
-    public E remove(String password, E post)
+    public E remove(Session session, E post)
             throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
 
-        if (password.isBlank())
-            throw new EmptyFieldException();
-        this.authentication(password);
-        if (this.feed.contains(post))
-            this.feed.remove(feed.indexOf(post));
-        else
+        this.authorize(session);
+        if (!this.feed.remove(post))
             throw new ItemNotFoundException();
+        this.ranking.remove(post);
+        post.release();
+        this.byTime.remove(post);
+        Feed<E> categoryFeed = this.postsByCategory.get(post.getCategory());
+        categoryFeed.remove(post);
+        this.contentByCategory.get(post.getCategory()).remove(post);
+        if (categoryFeed.size() == 0) {
+            this.postsByCategory.remove(post.getCategory());
+            this.contentByCategory.remove(post.getCategory());
+        }
+        SymbolSet audience = this.categories.get(post.getCategory());
+        if (audience != null)
+            for (String friend : audience.view())
+                this.invalidate(friend);
         return (E) post.clone();
     }
 
@@ -244,7 +401,7 @@ public class Board1<E extends Data>
      * @param post   post a cui mettere like
      * @throws EmptyFieldException   se il campo friend è vuoto
      * @throws ItemNotFoundException se il post non esiste
-     * @modifies this.feed[post]
+     * @modifies this.feed[post], this.ranking
      * @effects post(this.feed[post][likes]) = pre(this.feed[post][likes]) U {friend}
      */
     @Override
@@ -254,63 +411,258 @@ public class Board1<E extends Data>
         if (friend.isBlank())
             throw new EmptyFieldException();
         if (this.feed.contains(post) && this.categories.containsKey(post.getCategory()))
-            if (this.categories.get(post.getCategory()).contains(friend))
-                this.feed.get(this.feed.indexOf(post)).addLike(friend);
-            else
+            if (this.categories.get(post.getCategory()).contains(friend)) {
+                this.feed.get(post).addLike(friend);
+                this.ranking.update(post);
+            } else
                 throw new NotAllowedException();
         else
             throw new ItemNotFoundException();
     }
 
     /**
-     * Crea la lista dei post in bacheca di una determinata categoria
+     * Inserisce (o toglie) un like da parte di un amico a più posts. Prima si controlla
+     * che tutti i posts esistano e che l'amico possa vederli, poi si applicano i like:
+     * se un controllo fallisce non viene modificato nessun post
+     *
+     * @param friend nome dell'amico che vuole mettere like ai posts
+     * @param posts  i posts a cui mettere like
+     * @throws EmptyFieldException   se il campo friend è vuoto
+     * @throws ItemNotFoundException se uno dei posts non esiste
+     * @throws NotAllowedException   se l'amico non può vedere la categoria di uno dei posts
+     * @modifies this.feed[posts], this.ranking
+     * @effects see insertLike
+     */
+    @Override
+    public void likeAll(String friend, Collection<? extends E> posts)
+            throws EmptyFieldException, ItemNotFoundException, NotAllowedException {
+
+        if (friend.isBlank())
+            throw new EmptyFieldException();
+        int id = this.symbols.lookup(friend);
+        for (E post : posts) {
+            SymbolSet friends = this.categories.get(post.getCategory());
+            if (friends == null || !this.feed.contains(post))
+                throw new ItemNotFoundException();
+            if (!friends.contains(id))
+                throw new NotAllowedException();
+        }
+        for (E post : posts) {
+            this.feed.get(post).addLike(friend);
+            this.ranking.update(post);
+        }
+    }
+
+    /**
+     * Crea la lista dei post in bacheca di una determinata categoria,
+     * leggendoli dall'indice per categoria invece di scorrere tutto il feed
      *
-     * @param password password dell'utente per autenticarsi
+     * @param session  sessione dell'utente, ottenuta con login
      * @param category nome della categoria di cui si vogliono vedere i post
      * @return (list) ritorna una lista dei post appartenenti ad una categoria
      * @throws EmptyFieldException   se uno dei due campi è vuoto
-     * @throws UnauthorizedException se la password non è corretta
+     * @throws UnauthorizedException se la sessione non è valida
      * @throws ItemNotFoundException se la categoria non esiste
      */
     @Override
-    public List<E> getDataCategory(String password, String category)
+    public List<E> getDataCategory(Session session, String category)
             throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
 
-        if (password.isBlank() || category.isBlank())
+        if (category.isBlank())
             throw new EmptyFieldException();
-        this.authentication(password);
+        this.authorize(session);
         if (this.categories.containsKey(category)) {
-            List<E> filteredFeed = new ArrayList<>();
-            for (E post : this.feed)
-                if (post.getCategory().equals(category))
-                    filteredFeed.add(post);
+            Feed<E> categoryFeed = this.postsByCategory.get(category);
+            if (categoryFeed == null)
+                return new ArrayList<>();
+            List<E> filteredFeed = new ArrayList<>(categoryFeed.size());
+            for (E post : categoryFeed)
+                filteredFeed.add(post);
             return filteredFeed;
         } else
             throw new ItemNotFoundException();
     }
 
     /**
-     * Iteratore che genera tutti i dati del feed ordinati per numero di like
+     * Pagina dei post in bacheca di una determinata categoria, in ordine di pubblicazione.
+     * Il cursore è il numero di sequenza dell'ultimo post restituito: la pagina successiva
+     * si trova con una ricerca binaria nell'indice per categoria e costa O(log n + limit)
      *
-     * @param password password dell'utente per autenticarsi
-     * @return (iterator) ritorna un iteratore immutabile (senza la remove) per generare i posts
-     * @throws EmptyFieldException   se il campo password è vuoto
-     * @throws UnauthorizedException se la password non è corretta
+     * @param session  sessione dell'utente, ottenuta con login
+     * @param category nome della categoria di cui si vogliono vedere i post
+     * @param cursor   cursore della pagina precedente, oppure null per la prima pagina
+     * @param limit    numero massimo di post della pagina
+     * @return (page) ritorna una pagina dei post appartenenti ad una categoria
+     * @throws EmptyFieldException      se uno dei due campi è vuoto
+     * @throws UnauthorizedException    se la sessione non è valida
+     * @throws ItemNotFoundException    se la categoria non esiste
+     * @throws IllegalArgumentException se il cursore non è valido o limit non è positivo
      */
     @Override
-    public Iterator<E> getIterator(String password)
+    public Page<E> getDataCategory(Session session, String category, String cursor, int limit)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        if (category.isBlank())
+            throw new EmptyFieldException();
+        this.authorize(session);
+        if (!this.categories.containsKey(category))
+            throw new ItemNotFoundException();
+        Page.checkLimit(limit);
+        long afterSeq = Page.afterSeq(cursor, "category");
+        Feed<E> categoryFeed = this.postsByCategory.get(category);
+        if (categoryFeed == null)
+            return new Page<>(new ArrayList<>(), null);
+        return categoryFeed.page(afterSeq, limit, post -> true, "category");
+    }
+
+    /**
+     * Lista dei dati in bacheca creati a partire da un certo istante, in ordine di timestamp,
+     * letti dall'indice per timestamp in O(log n + k), dove k è il numero di posts restituiti
+     *
+     * @param session sessione dell'utente, ottenuta con login
+     * @param since   primo timestamp incluso, in microsecondi (vedi Data.now)
+     * @return (list) ritorna una nuova lista di posts
+     * @throws UnauthorizedException se la sessione non è valida
+     */
+    @Override
+    public List<E> getDataSince(Session session, long since)
+            throws UnauthorizedException, EmptyFieldException {
+
+        this.authorize(session);
+        return this.byTime.since(since);
+    }
+
+    /**
+     * Lista dei dati in bacheca creati in un intervallo di tempo, in ordine di timestamp
+     * (vedi getDataSince)
+     *
+     * @param session sessione dell'utente, ottenuta con login
+     * @param from    primo timestamp incluso, in microsecondi (vedi Data.now)
+     * @param to      primo timestamp escluso, in microsecondi
+     * @return (list) ritorna una nuova lista di posts
+     * @throws UnauthorizedException    se la sessione non è valida
+     * @throws IllegalArgumentException se from è maggiore di to
+     */
+    @Override
+    public List<E> getDataBetween(Session session, long from, long to)
             throws UnauthorizedException, EmptyFieldException {
 
-        if (password.isBlank())
+        this.authorize(session);
+        return this.byTime.range(from, to);
+    }
+
+    /**
+     * Cerca tra i post di una determinata categoria quelli che contengono almeno una delle parole
+     * di query (vedi ContentIndex.tokenize), ordinati per rilevanza. Si leggono
+     * solo le posting list delle parole cercate nell'indice della categoria
+     *
+     * @param session  sessione dell'utente, ottenuta con login
+     * @param category nome della categoria in cui cercare
+     * @param query    le parole da cercare
+     * @return (list) ritorna una nuova lista di posts, vuota se nessun post contiene le parole
+     * @throws EmptyFieldException   se uno dei campi è vuoto
+     * @throws UnauthorizedException se la sessione non è valida
+     * @throws ItemNotFoundException se la categoria non esiste
+     */
+    @Override
+    public List<E> searchCategory(Session session, String category, String query)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        if (category.isBlank() || query.isBlank())
+            throw new EmptyFieldException();
+        this.authorize(session);
+        if (!this.categories.containsKey(category))
+            throw new ItemNotFoundException();
+        ContentIndex.Query<E> search = new ContentIndex.Query<>(query);
+        ContentIndex<E> content = this.contentByCategory.get(category);
+        if (content != null)
+            content.collect(search, post -> true);
+        return search.ranked();
+    }
+
+    /**
+     * Cerca tra i dati condivisi con uno specifico amico quelli che contengono almeno una
+     * delle parole di query, ordinati per rilevanza, leggendo gli indici delle sole categorie
+     * condivise con lui (vedi searchCategory)
+     *
+     * @param friend nome dell'amico
+     * @param query  le parole da cercare
+     * @return (list) ritorna una nuova lista di posts, vuota se nessun post contiene le parole
+     * @throws EmptyFieldException se uno dei campi è vuoto
+     */
+    @Override
+    public List<E> searchFriend(String friend, String query)
+            throws EmptyFieldException {
+
+        if (friend.isBlank() || query.isBlank())
             throw new EmptyFieldException();
-        this.authentication(password);
-        List<E> sortedFeed = new ArrayList<>(feed);
-        Collections.sort(sortedFeed);
-        return Collections.unmodifiableList(sortedFeed).iterator();
+        ContentIndex.Query<E> search = new ContentIndex.Query<>(query);
+        for (String category : this.shared(friend)) {
+            ContentIndex<E> content = this.contentByCategory.get(category);
+            if (content != null)
+                content.collect(search, post -> true);
+        }
+        return search.ranked();
+    }
+
+    /**
+     * Iteratore che genera tutti i dati del feed ordinati per numero di like,
+     * letti direttamente da una fotografia della classifica senza copie né ordinamenti
+     *
+     * @param session  sessione dell'utente, ottenuta con login
+     * @return (iterator) ritorna un iteratore immutabile (senza la remove) per generare i posts
+     * @throws UnauthorizedException se la sessione non è valida
+     */
+    @Override
+    public Iterator<E> getIterator(Session session)
+            throws UnauthorizedException, EmptyFieldException {
+
+        this.authorize(session);
+        return this.ranking.iterator();
+    }
+
+    /**
+     * Iteratore che genera i primi k dati del feed ordinati per numero di like.
+     * La classifica è già ordinata, per cui si visitano solo i primi k posts
+     *
+     * @param session  sessione dell'utente, ottenuta con login
+     * @param k        numero massimo di posts da generare
+     * @return (iterator) ritorna un iteratore immutabile (senza la remove) per generare i posts
+     * @throws UnauthorizedException    se la sessione non è valida
+     * @throws IllegalArgumentException se k è negativo
+     */
+    @Override
+    public Iterator<E> getTopIterator(Session session, int k)
+            throws UnauthorizedException, EmptyFieldException {
+
+        this.authorize(session);
+        return this.ranking.iterator(k);
+    }
+
+    /**
+     * Pagina dei dati del feed ordinati per numero di like, letta dalla classifica
+     * a partire dalla chiave dell'ultimo post restituito (vedi Ranking.page)
+     *
+     * @param session sessione dell'utente, ottenuta con login
+     * @param cursor  cursore della pagina precedente, oppure null per la prima pagina
+     * @param limit   numero massimo di posts della pagina
+     * @return (page) ritorna una pagina di posts
+     * @throws UnauthorizedException    se la sessione non è valida
+     * @throws IllegalArgumentException se il cursore non è valido o limit non è positivo
+     */
+    @Override
+    public Page<E> getPage(Session session, String cursor, int limit)
+            throws UnauthorizedException, EmptyFieldException {
+
+        this.authorize(session);
+        return this.ranking.page(cursor, limit);
     }
 
     /**
-     * Iteratore che genera tutti i dati condivisi con uno specifico amico
+     * Iteratore che genera tutti i dati condivisi con uno specifico amico.
+     * Si visitano solo le categorie condivise con l'amico, fondendone i posts
+     * in ordine di pubblicazione man mano che vengono richiesti. L'iteratore lavora
+     * su fotografie dei feed delle categorie, per cui non risente delle modifiche successive
      *
      * @param friend nome dell'amico
      * @return (iterator) ritorna un iteratore immutabile (senza la remove) per generare i posts
@@ -320,12 +672,280 @@ public class Board1<E extends Data>
     public Iterator<E> getFriendIterator(String friend)
             throws EmptyFieldException {
 
+        return this.getFriendIterator(friend, false);
+    }
+
+    /**
+     * Iteratore che genera tutti i dati condivisi con uno specifico amico in ordine di pubblicazione,
+     * anche a ritroso. Come getFriendIterator fonde in modo pigro le fotografie dei feed
+     * delle categorie condivise, visitate dal post più recente se newestFirst
+     *
+     * @param friend      nome dell'amico
+     * @param newestFirst true per partire dal post più recente
+     * @return (iterator) ritorna un iteratore immutabile (senza la remove) per generare i posts
+     * @throws EmptyFieldException se il campo friend è vuoto
+     */
+    @Override
+    public Iterator<E> getFriendIterator(String friend, boolean newestFirst)
+            throws EmptyFieldException {
+
         if (friend.isBlank())
             throw new EmptyFieldException();
-        List<E> filteredFeed = new ArrayList<>();
-        for (E post : this.feed)
-            if (this.categories.get(post.getCategory()).contains(friend))
-                filteredFeed.add(post);
-        return Collections.unmodifiableList(filteredFeed).iterator();
+        List<Feed<E>.Cursor> cursors = new ArrayList<>();
+        for (String category : this.shared(friend)) {
+            Feed<E> categoryFeed = this.postsByCategory.get(category);
+            if (categoryFeed != null && categoryFeed.size() > 0)
+                cursors.add(newestFirst ? categoryFeed.reverseSnapshot() : categoryFeed.snapshot());
+        }
+        return Feed.merge(cursors, newestFirst);
+    }
+
+    /**
+     * Iteratore che genera tutti i dati condivisi con uno specifico amico ordinati per numero di like,
+     * letti da una fotografia della classifica scartando i posts delle categorie non condivise.
+     * Le categorie condivise sono quelle al momento della chiamata
+     *
+     * @param friend nome dell'amico
+     * @return (iterator) ritorna un iteratore immutabile (senza la remove) per generare i posts
+     * @throws EmptyFieldException se il campo friend è vuoto
+     */
+    @Override
+    public Iterator<E> getFriendRankingIterator(String friend)
+            throws EmptyFieldException {
+
+        if (friend.isBlank())
+            throw new EmptyFieldException();
+        Set<String> shared = new HashSet<>(this.shared(friend));
+        if (shared.isEmpty())
+            return Collections.emptyIterator();
+        return this.ranking.iterator(post -> shared.contains(post.getCategory()));
+    }
+
+    /**
+     * Pagina dei dati condivisi con uno specifico amico, nello stesso ordine di getFriendIterator.
+     * I numeri di sequenza sono unici in tutta la board, per cui il cursore è il numero di sequenza
+     * dell'ultimo post restituito: ogni categoria condivisa riparte da lì con una ricerca binaria
+     *
+     * @param friend nome dell'amico
+     * @param cursor cursore della pagina precedente, oppure null per la prima pagina
+     * @param limit  numero massimo di posts della pagina
+     * @return (page) ritorna una pagina di posts
+     * @throws EmptyFieldException      se il campo friend è vuoto
+     * @throws IllegalArgumentException se il cursore non è valido o limit non è positivo
+     */
+    @Override
+    public Page<E> getFriendPage(String friend, String cursor, int limit)
+            throws EmptyFieldException {
+
+        if (friend.isBlank())
+            throw new EmptyFieldException();
+        Page.checkLimit(limit);
+        long afterSeq = Page.afterSeq(cursor, "friend");
+        PriorityQueue<Feed<E>.Cursor> cursors = new PriorityQueue<>(Comparator.comparingLong(c -> c.peekSeq()));
+        for (String category : this.shared(friend)) {
+            Feed<E> categoryFeed = this.postsByCategory.get(category);
+            if (categoryFeed != null) {
+                Feed<E>.Cursor categoryCursor = categoryFeed.iterator(afterSeq);
+                if (categoryCursor.hasNext())
+                    cursors.add(categoryCursor);
+            }
+        }
+        List<E> items = new ArrayList<>(limit);
+        while (items.size() < limit && !cursors.isEmpty()) {
+            Feed<E>.Cursor categoryCursor = cursors.poll();
+            afterSeq = categoryCursor.peekSeq();
+            items.add(categoryCursor.next());
+            if (categoryCursor.hasNext())
+                cursors.add(categoryCursor);
+        }
+        return new Page<>(items, cursors.isEmpty() ? null : Page.cursor("friend", afterSeq));
+    }
+
+    /**
+     * Ultimi dati condivisi con uno specifico amico, dal più recente. In modalità fan-out-on-write
+     * sono letti dalla casella dell'amico in O(limit), ricostruendola se era stata scartata;
+     * altrimenti, o se limit supera i posts conservati nella casella, sono scelti tra gli ultimi
+     * limit posts di ogni categoria condivisa in O(k * limit * log(limit)), con k categorie
+     *
+     * @param friend nome dell'amico
+     * @param limit  numero massimo di posts
+     * @return (list) ritorna al più limit posts, dal più recente
+     * @throws EmptyFieldException      se il campo friend è vuoto
+     * @throws IllegalArgumentException se limit non è positivo
+     */
+    @Override
+    public List<E> getTimeline(String friend, int limit)
+            throws EmptyFieldException {
+
+        if (friend.isBlank())
+            throw new EmptyFieldException();
+        Page.checkLimit(limit);
+        if (this.inboxes == null)
+            return this.latest(friend, limit);
+        Inbox<E> inbox = this.inboxes.get(friend);
+        if (inbox == null) {
+            inbox = new Inbox<>(this.inboxCapacity);
+            List<E> latest = this.latest(friend, this.inboxCapacity);
+            for (int i = latest.size() - 1; i >= 0; i--)
+                inbox.push(latest.get(i));
+            if (latest.size() == this.inboxCapacity)
+                inbox.markTruncated();
+            this.inboxes.put(friend, inbox);
+        }
+        if (limit <= inbox.size() || !inbox.truncated())
+            return inbox.latest(limit);
+        return this.latest(friend, limit);
+    }
+
+    /**
+     * Ultimi posts condivisi con un amico, letti in coda al feed di ogni categoria condivisa.
+     * I numeri di sequenza sono unici in tutta la board, per cui ne ordinano i posts
+     *
+     * @param friend nome dell'amico
+     * @param limit  numero massimo di posts
+     * @return (list) al più limit posts, dal più recente
+     */
+    private List<E> latest(String friend, int limit) {
+        TreeMap<Long, E> newest = new TreeMap<>();
+        for (String category : this.shared(friend)) {
+            Feed<E> categoryFeed = this.postsByCategory.get(category);
+            if (categoryFeed != null)
+                for (Feed<E>.Cursor posts = categoryFeed.tail(limit); posts.hasNext(); ) {
+                    newest.put(posts.peekSeq(), posts.next());
+                    if (newest.size() > limit)
+                        newest.pollFirstEntry();
+                }
+        }
+        return new ArrayList<>(newest.descendingMap().values());
+    }
+
+    /**
+     * Spinge un post appena inserito nelle caselle già create degli amici della sua categoria
+     *
+     * @param post il post inserito
+     * @modifies this.inboxes
+     */
+    private void fanOut(E post) {
+        if (this.inboxes == null || this.inboxes.isEmpty())
+            return;
+        SymbolSet audience = this.categories.get(post.getCategory());
+        if (audience != null)
+            for (String friend : audience.view()) {
+                Inbox<E> inbox = this.inboxes.get(friend);
+                if (inbox != null)
+                    inbox.push(post);
+            }
+    }
+
+    /**
+     * Scarta la casella di un amico, che sarà ricostruita alla prossima lettura
+     *
+     * @param friend nome dell'amico
+     * @modifies this.inboxes
+     */
+    private void invalidate(String friend) {
+        if (this.inboxes != null)
+            this.inboxes.remove(friend);
+    }
+
+    /**
+     * Stream di tutti i dati del feed, in ordine di inserimento, letto da una fotografia del feed
+     * senza copiarlo né compattarlo. Lo spliterator si divide a metà del feed, saltando le lapidi,
+     * ed ha dimensione esatta (SIZED e SUBSIZED) se il feed non ne contiene (vedi Feed.spliterator),
+     * per cui lo stream può essere reso parallelo senza costi aggiuntivi
+     *
+     * @param session sessione dell'utente, ottenuta con login
+     * @return (stream) ritorna uno stream sequenziale dei posts, da rendere parallelo con parallel()
+     * @throws UnauthorizedException se la sessione non è valida
+     */
+    @Override
+    public Stream<E> stream(Session session)
+            throws UnauthorizedException, EmptyFieldException {
+
+        this.authorize(session);
+        return StreamSupport.stream(this.feed.spliterator(), false);
+    }
+
+    /**
+     * Stream dei post in bacheca di una determinata categoria, letto da una fotografia
+     * dell'indice per categoria (vedi stream)
+     *
+     * @param session  sessione dell'utente, ottenuta con login
+     * @param category nome della categoria di cui si vogliono vedere i post
+     * @return (stream) ritorna uno stream sequenziale dei posts della categoria
+     * @throws EmptyFieldException   se uno dei due campi è vuoto
+     * @throws UnauthorizedException se la sessione non è valida
+     * @throws ItemNotFoundException se la categoria non esiste
+     */
+    @Override
+    public Stream<E> categoryStream(Session session, String category)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        if (category.isBlank())
+            throw new EmptyFieldException();
+        this.authorize(session);
+        if (!this.categories.containsKey(category))
+            throw new ItemNotFoundException();
+        Feed<E> categoryFeed = this.postsByCategory.get(category);
+        if (categoryFeed == null)
+            return Stream.empty();
+        return StreamSupport.stream(categoryFeed.spliterator(), false);
+    }
+
+    /**
+     * Stream dei dati condivisi con uno specifico amico, che concatena le fotografie
+     * dei feed delle sole categorie condivise (vedi ConcatSpliterator)
+     *
+     * @param friend nome dell'amico
+     * @return (stream) ritorna uno stream sequenziale dei posts, categoria per categoria
+     * @throws EmptyFieldException se il campo friend è vuoto
+     */
+    @Override
+    public Stream<E> friendStream(String friend)
+            throws EmptyFieldException {
+
+        if (friend.isBlank())
+            throw new EmptyFieldException();
+        List<Spliterator<E>> parts = new ArrayList<>();
+        for (String category : this.shared(friend)) {
+            Feed<E> categoryFeed = this.postsByCategory.get(category);
+            if (categoryFeed != null)
+                parts.add(categoryFeed.spliterator());
+        }
+        return StreamSupport.stream(new ConcatSpliterator<>(parts), false);
+    }
+
+    /**
+     * Restituisce i nomi delle categorie condivise con un amico
+     *
+     * @param friend nome dell'amico
+     * @return (categories) vista in sola lettura, vuota se l'amico non vede alcuna categoria
+     */
+    private Set<String> shared(String friend) {
+        SymbolSet shared = this.sharedCategories.get(friend);
+        return shared == null ? Collections.emptySet() : shared.view();
+    }
+
+    @Override
+    void forEachCategory(BiConsumer<String, Set<String>> action) {
+        this.categories.forEach((category, friends) -> action.accept(category, friends.view()));
+    }
+
+    // I posts restano nel feed anche dopo la rimozione della loro categoria
+    @Override
+    Iterator<Map.Entry<String, E>> postSnapshot() {
+        Feed<E>.Cursor posts = this.feed.snapshot();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return posts.hasNext();
+            }
+
+            @Override
+            public Map.Entry<String, E> next() {
+                E post = posts.next();
+                return Map.entry(post.getCategory(), post);
+            }
+        };
     }
 }
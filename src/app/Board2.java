@@ -3,6 +3,9 @@ package app;
 import app.exception.*;
 
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 public class Board2<E extends Data> extends Board<E> {
@@ -15,22 +18,60 @@ public class Board2<E extends Data> extends Board<E> {
      *       quindi di passare attraverso questa struttura per accedere alle varie
      *       categorie. Per ulteriori dettagli di implementazione,
      *       si rimanda all'apposito file (Category.java).
+     *       Tutti i posts della board sono inoltre mantenuti in una classifica
+     *       ordinata per numero di like (vedi Ranking.java) ed in un indice per timestamp
+     *       (vedi TimeIndex.java), mentre ad ogni amico
+     *       è associato l'insieme delle categorie condivise con lui.
+     *       I posts ricevono numeri di sequenza unici in tutta la board, così che i feed
+     *       di più categorie si possano fondere in ordine di pubblicazione.
+     *       Se costruita con una capacità positiva, la board lavora in modalità fan-out-on-write
+     *       come Board1: ogni post inserito in una categoria viene spinto nella casella
+     *       (vedi Inbox.java) di ogni suo amico, e getTimeline la legge in O(limit).
      *
      *   Abstract Function:
-     *      <owner, password, categories>, dove:
+     *      <owner, password, symbols, categories, ranking, byTime, sharedCategories, nextSeq, inboxCapacity, inboxes>,
+     *      dove:
      *          owner (string)      è il nome del proprietario della board
      *          password (string)   è la chiave di accesso alla board per l'utente 'owner'
+     *          symbols (table)     è la tabella dei simboli degli amici e delle categorie,
+     *                                  condivisa da tutte le categorie
      *          categories (map)    è una map che contiene le istante di tutte le categorie
      *                                  create dall'utente
+     *          ranking (ranking)   contiene i posts di tutte le categorie, ordinati per numero di like
+     *          byTime (index)      contiene i posts di tutte le categorie, ordinati per timestamp
+     *          sharedCategories (map)  associa ad ogni amico l'insieme (vedi SymbolSet.java) delle categorie
+     *                                  che può visualizzare; chi le visita in ordine alfabetico
+     *                                  ne ordina i nomi al momento della lettura
+     *          nextSeq (long)      è il numero di sequenza del prossimo post inserito
+     *          inboxCapacity (int) è la capacità delle caselle, 0 se la modalità è disattivata
+     *          inboxes (map)       associa ad alcuni amici la casella con gli ultimi posts
+     *                                  condivisi con loro, null se la modalità è disattivata
      *
      *   Representation Invariant:
      *      owner != null && owner != ""
      *      && password != null && password != ""
      *      && for each(category) in categories : name(category) != "" && unique
+     *      && symbols != null
+     *      && ranking != null && ranking == U(for each(category) in categories : category.feed)
+     *      && byTime != null && byTime == U(for each(category) in categories : category.feed)
+     *      && sharedCategories != null
+     *      && for each(friend, shared) in sharedCategories : shared != empty
+     *          && for each(category) in shared : categories[category].checkFriend(friend)
+     *      && nextSeq > di ogni numero di sequenza in categories
+     *      && inboxCapacity >= 0 && (inboxCapacity == 0 <=> inboxes == null)
+     *      && for each(friend, inbox) in inboxes : inbox contiene gli ultimi posts
+     *          di getFriendIterator(friend), fino alla sua capacità
      *
      */
 
+    private final Symbols symbols;
     private Map<String, Category<E>> categories;
+    private Ranking<E> ranking;
+    private TimeIndex<E> byTime;
+    private Map<String, SymbolSet> sharedCategories;
+    private long nextSeq;
+    private final int inboxCapacity;
+    private Map<String, Inbox<E>> inboxes;
 
     /**
      * Costruttore di board (2)
@@ -41,55 +82,86 @@ public class Board2<E extends Data> extends Board<E> {
      */
     public Board2(String username, String password)
             throws EmptyFieldException {
+        this(username, password, 0);
+    }
+
+    /**
+     * Costruttore di board (2) in modalità fan-out-on-write
+     *
+     * @param username      valido, diverso dalla stringa vuota
+     * @param password      valida, diverso dalla stringa vuota
+     * @param inboxCapacity numero di posts tenuti nella casella di ogni amico, 0 per disattivare la modalità
+     * @throws EmptyFieldException      se username o password sono vuoti
+     * @throws IllegalArgumentException se inboxCapacity è negativa
+     */
+    public Board2(String username, String password, int inboxCapacity)
+            throws EmptyFieldException {
         super(username, password);
+        if (inboxCapacity < 0)
+            throw new IllegalArgumentException();
+        this.inboxCapacity = inboxCapacity;
+        this.inboxes = inboxCapacity > 0 ? new HashMap<>() : null;
+        this.symbols = new Symbols();
         this.categories = new HashMap<>();
+        this.ranking = new Ranking<>();
+        this.byTime = new TimeIndex<>();
+        this.sharedCategories = new HashMap<>();
     }
 
     /**
      * Crea una nuova categoria
      *
      * @param category nome della categoria da creare
-     * @param password password dell'utente per autenticarsi
-     * @throws UnauthorizedException  se la password non è corretta
+     * @param session  sessione dell'utente, ottenuta con login
+     * @throws UnauthorizedException  se la sessione non è valida
      * @throws EmptyFieldException    se uno dei due parametri è una stringa vuota
      * @throws DuplicateItemException se esiste già una categoria con lo stesso nome
      * @modifies this.categories
      * @effects post(this.categories) = pre(this.categories) U {category}
      */
     @Override
-    public void createCategory(String category, String password)
+    public void createCategory(String category, Session session)
             throws UnauthorizedException, EmptyFieldException, DuplicateItemException {
 
-        if (category.isBlank() || password.isBlank())
+        if (category.isBlank())
             throw new EmptyFieldException();
-        this.authentication(password);
+        this.authorize(session);
         if (this.categories.containsKey(category))
             throw new DuplicateItemException();
         else
-            this.categories.put(category, new Category<>());
+            this.categories.put(category, new Category<>(this.symbols));
     }
 
     /**
      * Rimuove una categoria esistente
      *
      * @param category nome della categoria da rimuovere
-     * @param password password dell'utente per autenticarsi
-     * @throws UnauthorizedException se la password non è corretta
+     * @param session  sessione dell'utente, ottenuta con login
+     * @throws UnauthorizedException se la sessione non è valida
      * @throws EmptyFieldException   se uno dei due parametri è una stringa vuota
      * @throws ItemNotFoundException se non esiste una categoria con quel nome
-     * @modifies this.categories
+     * @modifies this.categories, this.ranking, this.byTime, this.sharedCategories
      * @effects post(this.categories) = pre(this.categories) \ {category}
      */
     @Override
-    public void removeCategory(String category, String password)
+    public void removeCategory(String category, Session session)
             throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
 
-        if (category.isBlank() || password.isBlank())
+        if (category.isBlank())
             throw new EmptyFieldException();
-        this.authentication(password);
-        if (this.categories.containsKey(category))
+        this.authorize(session);
+        if (this.categories.containsKey(category)) {
+            this.categories.get(category).forEachPost(post -> {
+                this.ranking.remove(post);
+                post.release();
+                this.byTime.remove(post);
+            });
+            for (String friend : this.categories.get(category).friendsView()) {
+                this.unshare(category, friend);
+                this.invalidate(friend);
+            }
             this.categories.remove(category);
-        else
+        } else
             throw new ItemNotFoundException();
     }
 
@@ -97,24 +169,26 @@ public class Board2<E extends Data> extends Board<E> {
      * Associa un nuovo amico ad una categoria esistente
      *
      * @param category nome della categoria dove aggiungere l'amico
-     * @param password password dell'utente per autenticarsi
+     * @param session  sessione dell'utente, ottenuta con login
      * @param friend   nome dell'amico da aggiungere
-     * @throws UnauthorizedException se la password non è corretta
+     * @throws UnauthorizedException se la sessione non è valida
      * @throws EmptyFieldException   se uno dei tre parametri è una stringa vuota
      * @throws ItemNotFoundException se non esiste una categoria con quel nome
-     * @modifies this.categories[category]
+     * @modifies this.categories[category], this.sharedCategories
      * @effects see Category.java
      */
     @Override
-    public void addFriend(String category, String password, String friend)
+    public void addFriend(String category, Session session, String friend)
             throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
 
-        if (category.isBlank() || password.isBlank() || friend.isBlank())
+        if (category.isBlank() || friend.isBlank())
             throw new EmptyFieldException();
-        this.authentication(password);
-        if (this.categories.containsKey(category))
+        this.authorize(session);
+        if (this.categories.containsKey(category)) {
             this.categories.get(category).addFriend(friend);
-        else
+            this.sharedCategories.computeIfAbsent(friend, f -> new SymbolSet(this.symbols)).add(category);
+            this.invalidate(friend);
+        } else
             throw new ItemNotFoundException();
     }
 
@@ -122,70 +196,149 @@ public class Board2<E extends Data> extends Board<E> {
      * Rimuove un amico da una delle categorie
      *
      * @param category nome della categoria da dove rimuovere l'amico
-     * @param password password dell'utente per autenticarsi
+     * @param session  sessione dell'utente, ottenuta con login
      * @param friend   nome dell'amico da rimuocere
-     * @throws UnauthorizedException se la password non è corretta
+     * @throws UnauthorizedException se la sessione non è valida
      * @throws EmptyFieldException   se uno dei tre parametri è una stringa vuota
      * @throws ItemNotFoundException se non esiste un amico con quel nome
-     * @modifies this.categories[category]
+     * @modifies this.categories[category], this.sharedCategories
      * @effects see Category.java
      */
     @Override
-    public void removeFriend(String category, String password, String friend)
+    public void removeFriend(String category, Session session, String friend)
             throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
 
-        if (category.isBlank() || password.isBlank() || friend.isBlank())
+        if (category.isBlank() || friend.isBlank())
             throw new EmptyFieldException();
-        this.authentication(password);
-        if (this.categories.containsKey(category))
+        this.authorize(session);
+        if (this.categories.containsKey(category)) {
             this.categories.get(category).removeFriend(friend);
-        else
+            this.unshare(category, friend);
+            this.invalidate(friend);
+        } else
             throw new ItemNotFoundException();
     }
 
+    /**
+     * Rimuove una categoria dall'insieme di quelle condivise con un amico
+     *
+     * @param category nome della categoria
+     * @param friend   nome dell'amico
+     * @modifies this.sharedCategories
+     * @effects post(this.sharedCategories[friend]) = pre(this.sharedCategories[friend]) \ {category}
+     */
+    private void unshare(String category, String friend) {
+        SymbolSet shared = this.sharedCategories.get(friend);
+        if (shared != null && shared.remove(category) && shared.isEmpty())
+            this.sharedCategories.remove(friend);
+    }
+
+    /**
+     * Restituisce i nomi delle categorie condivise con un amico
+     *
+     * @param friend nome dell'amico
+     * @return (categories) vista in sola lettura, vuota se l'amico non vede alcuna categoria
+     */
+    private Set<String> shared(String friend) {
+        SymbolSet shared = this.sharedCategories.get(friend);
+        return shared == null ? Collections.emptySet() : shared.view();
+    }
+
+    /**
+     * Restituisce i nomi delle categorie condivise con un amico in ordine alfabetico,
+     * ordinati al momento della chiamata in O(c log c) sulle c categorie condivise
+     *
+     * @param friend nome dell'amico
+     * @return (categories) copia ordinata, vuota se l'amico non vede alcuna categoria
+     */
+    private NavigableSet<String> sortedShared(String friend) {
+        return new TreeSet<>(this.shared(friend));
+    }
+
     /**
      * Inserisce un nuovo post nel feed dell'utente
      *
-     * @param password password dell'utente per autenticarsi
+     * @param session  sessione dell'utente, ottenuta con login
      * @param post     il post da inserire nel feed
      * @param category nome della categoria dove inserire il post
      * @return (true) se l'operazione va a buon fine
-     * @throws UnauthorizedException se la password non è corretta
+     * @throws UnauthorizedException se la sessione non è valida
      * @throws EmptyFieldException   se uno dei due parametri stringa è vuota
      * @throws ItemNotFoundException se non esiste una categoria con quel nome
-     * @modifies this.categories[category]
+     * @modifies this.categories[category], this.ranking, this.byTime
      * @effects see Category.java
      */
     @Override
-    public boolean put(String password, E post, String category)
+    public boolean put(Session session, E post, String category)
             throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
 
-        if (password.isBlank() || category.isBlank())
+        if (category.isBlank())
             throw new EmptyFieldException();
-        this.authentication(password);
+        this.authorize(session);
         if (this.categories.containsKey(category)) {
-            this.categories.get(category).addPost(post);
+            Category<E> target = this.categories.get(category);
+            target.addPost(post, this.nextSeq++);
+            this.ranking.add(post);
+            post.retain();
+            this.byTime.add(post);
+            this.fanOut(target, post);
             return true;
         } else
             throw new ItemNotFoundException();
     }
 
+    /**
+     * Inserisce in blocco dei posts nel feed dell'utente, autenticandosi una sola volta
+     * e cercando la categoria una sola volta
+     *
+     * @param session  sessione dell'utente, ottenuta con login
+     * @param posts    i posts da inserire nel feed, nell'ordine della collezione
+     * @param category nome della categoria dove inserire i posts
+     * @return (true) se l'operazione va a buon fine
+     * @throws UnauthorizedException se la sessione non è valida
+     * @throws EmptyFieldException   se uno dei due parametri stringa è vuota
+     * @throws ItemNotFoundException se non esiste una categoria con quel nome
+     * @modifies this.categories[category], this.ranking, this.byTime
+     * @effects see Category.java
+     */
+    @Override
+    public boolean putAll(Session session, Collection<? extends E> posts, String category)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        if (category.isBlank())
+            throw new EmptyFieldException();
+        this.authorize(session);
+        Category<E> target = this.categories.get(category);
+        if (target == null)
+            throw new ItemNotFoundException();
+        for (E post : posts)
+            Objects.requireNonNull(post);
+
+        target.addPosts(posts, this.nextSeq);
+        this.nextSeq += posts.size();
+        for (E post : posts) {
+            this.ranking.add(post);
+            post.retain();
+            this.byTime.add(post);
+            this.fanOut(target, post);
+        }
+        return true;
+    }
+
     /**
      * Visualizza un post dal feed dell'utente
      *
-     * @param password password dell'utente per autenticarsi
+     * @param session  sessione dell'utente, ottenuta con login
      * @param post     il post da visualizzare dal feed
      * @return (post) ritorna una copia del dato richiesto
-     * @throws UnauthorizedException se la password non è corretta
-     * @throws EmptyFieldException   se il campo password è vuoto
+     * @throws UnauthorizedException se la sessione non è valida
      * @throws ItemNotFoundException se il post richiesto non esiste
      */
     @Override
-    public E get(String password, E post)
+    public E get(Session session, E post)
             throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
 
-        if (password.isBlank()) throw new EmptyFieldException();
-        this.authentication(password);
+        this.authorize(session);
         if (this.categories.containsKey(post.getCategory()))
             return (E) this.categories.get(post.getCategory()).getPost(post).clone();
         else
@@ -195,23 +348,27 @@ public class Board2<E extends Data> extends Board<E> {
     /**
      * Rimuove un post dal feed dell'utente
      *
-     * @param password password dell'utente per autenticarsi
+     * @param session  sessione dell'utente, ottenuta con login
      * @param post     il post da rimuovere dal feed
      * @return (post) ritorna una copia del dato rimosso
-     * @throws UnauthorizedException se la password non è corretta
-     * @throws EmptyFieldException   se il campo password è vuoto
+     * @throws UnauthorizedException se la sessione non è valida
      * @throws ItemNotFoundException se il post da rimuovere non esiste
-     * @modifies this.categories[post.category]
+     * @modifies this.categories[post.category], this.ranking, this.byTime
      * @effects see Category.java
      */
     @Override
-    public E remove(String password, E post)
+    public E remove(Session session, E post)
             throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
 
-        if (password.isBlank()) throw new EmptyFieldException();
-        this.authentication(password);
+        this.authorize(session);
         if (this.categories.containsKey(post.getCategory())) {
-            this.categories.get(post.getCategory()).removePost(post);
+            Category<E> source = this.categories.get(post.getCategory());
+            source.removePost(post);
+            this.ranking.remove(post);
+            post.release();
+            this.byTime.remove(post);
+            for (String friend : source.friendsView())
+                this.invalidate(friend);
             return (E) post.clone();
         } else
             throw new ItemNotFoundException();
@@ -225,7 +382,7 @@ public class Board2<E extends Data> extends Board<E> {
      * @param post   post a cui mettere like
      * @throws EmptyFieldException   se il campo friend è vuoto
      * @throws ItemNotFoundException se il post non esiste
-     * @modifies this.categories[post.category][likes]
+     * @modifies this.categories[post.category][likes], this.ranking
      * @effects see Category.java
      */
     @Override
@@ -236,35 +393,69 @@ public class Board2<E extends Data> extends Board<E> {
             throw new EmptyFieldException();
 
         if (this.categories.containsKey(post.getCategory())
-                && this.categories.get(post.getCategory()).getFeed().contains(post))
-            if (this.categories.get(post.getCategory()).checkFriend(friend))
+                && this.categories.get(post.getCategory()).containsPost(post))
+            if (this.categories.get(post.getCategory()).checkFriend(friend)) {
                 this.categories.get(post.getCategory()).like(post, friend);
-            else
+                this.ranking.update(post);
+            } else
                 throw new NotAllowedException();
         else
             throw new ItemNotFoundException(); // categoria || post non esistenti
     }
 
+    /**
+     * Inserisce (o toglie) un like da parte di un amico a più posts. Prima si controlla
+     * che tutti i posts esistano e che l'amico possa vederli, poi si applicano i like:
+     * se un controllo fallisce non viene modificato nessun post
+     *
+     * @param friend nome dell'amico che vuole mettere like ai posts
+     * @param posts  i posts a cui mettere like
+     * @throws EmptyFieldException   se il campo friend è vuoto
+     * @throws ItemNotFoundException se la categoria o uno dei posts non esistono
+     * @throws NotAllowedException   se l'amico non può vedere la categoria di uno dei posts
+     * @modifies this.categories[posts.category][likes], this.ranking
+     * @effects see Category.java
+     */
+    @Override
+    public void likeAll(String friend, Collection<? extends E> posts)
+            throws EmptyFieldException, ItemNotFoundException, NotAllowedException {
+
+        if (friend.isBlank())
+            throw new EmptyFieldException();
+        int id = this.symbols.lookup(friend);
+        for (E post : posts) {
+            Category<E> category = this.categories.get(post.getCategory());
+            if (category == null || !category.containsPost(post))
+                throw new ItemNotFoundException();
+            if (!category.checkFriend(id))
+                throw new NotAllowedException();
+        }
+        for (E post : posts) {
+            this.categories.get(post.getCategory()).like(post, friend);
+            this.ranking.update(post);
+        }
+    }
+
     /**
      * Crea la lista dei post in bacheca di una determinata categoria
      *
-     * @param password password dell'utente per autenticarsi
+     * @param session  sessione dell'utente, ottenuta con login
      * @param category nome della categoria di cui si vogliono vedere i post
      * @return (list) ritorna una lista dei post appartenenti ad una categoria
-     * @throws UnauthorizedException se la password non è corretta
+     * @throws UnauthorizedException se la sessione non è valida
      * @throws EmptyFieldException   se uno dei due campi è vuoto
      * @throws ItemNotFoundException se la categoria non esiste
      */
     @Override
-    public List<E> getDataCategory(String password, String category)
+    public List<E> getDataCategory(Session session, String category)
             throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
 
-        if (password.isBlank() || category.isBlank())
+        if (category.isBlank())
             throw new EmptyFieldException();
-        this.authentication(password);
+        this.authorize(session);
         if (this.categories.containsKey(category)) {
-            List<E> filteredFeed = new ArrayList<>();
-            for (E post : this.categories.get(category).getFeed())
+            List<E> filteredFeed = new ArrayList<>(this.categories.get(category).feedView().size());
+            for (E post : this.categories.get(category).feedView())
                 if (post.getCategory().equals(category))
                     filteredFeed.add(post);
             return filteredFeed;
@@ -273,28 +464,176 @@ public class Board2<E extends Data> extends Board<E> {
     }
 
     /**
-     * Iteratore che genera tutti i dati del feed ordinati per numero di like
+     * Pagina dei post in bacheca di una determinata categoria, in ordine di pubblicazione.
+     * Il cursore è il numero di sequenza dell'ultimo post restituito nel feed della categoria:
+     * la pagina successiva riparte da lì con una ricerca binaria
+     *
+     * @param session  sessione dell'utente, ottenuta con login
+     * @param category nome della categoria di cui si vogliono vedere i post
+     * @param cursor   cursore della pagina precedente, oppure null per la prima pagina
+     * @param limit    numero massimo di post della pagina
+     * @return (page) ritorna una pagina dei post appartenenti ad una categoria
+     * @throws EmptyFieldException      se uno dei due campi è vuoto
+     * @throws UnauthorizedException    se la sessione non è valida
+     * @throws ItemNotFoundException    se la categoria non esiste
+     * @throws IllegalArgumentException se il cursore non è valido o limit non è positivo
+     */
+    @Override
+    public Page<E> getDataCategory(Session session, String category, String cursor, int limit)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        if (category.isBlank())
+            throw new EmptyFieldException();
+        this.authorize(session);
+        if (!this.categories.containsKey(category))
+            throw new ItemNotFoundException();
+        Page.checkLimit(limit);
+        return this.categories.get(category).feedPage(Page.afterSeq(cursor, "category"), limit,
+                post -> post.getCategory().equals(category), "category");
+    }
+
+    /**
+     * Lista dei dati in bacheca creati a partire da un certo istante, in ordine di timestamp,
+     * letti dall'indice per timestamp in O(log n + k), dove k è il numero di posts restituiti
+     *
+     * @param session sessione dell'utente, ottenuta con login
+     * @param since   primo timestamp incluso, in microsecondi (vedi Data.now)
+     * @return (list) ritorna una nuova lista di posts
+     * @throws UnauthorizedException se la sessione non è valida
+     */
+    @Override
+    public List<E> getDataSince(Session session, long since)
+            throws UnauthorizedException, EmptyFieldException {
+
+        this.authorize(session);
+        return this.byTime.since(since);
+    }
+
+    /**
+     * Lista dei dati in bacheca creati in un intervallo di tempo, in ordine di timestamp
+     * (vedi getDataSince)
+     *
+     * @param session sessione dell'utente, ottenuta con login
+     * @param from    primo timestamp incluso, in microsecondi (vedi Data.now)
+     * @param to      primo timestamp escluso, in microsecondi
+     * @return (list) ritorna una nuova lista di posts
+     * @throws UnauthorizedException    se la sessione non è valida
+     * @throws IllegalArgumentException se from è maggiore di to
+     */
+    @Override
+    public List<E> getDataBetween(Session session, long from, long to)
+            throws UnauthorizedException, EmptyFieldException {
+
+        this.authorize(session);
+        return this.byTime.range(from, to);
+    }
+
+    /**
+     * Cerca tra i post di una determinata categoria quelli che contengono almeno una delle parole
+     * di query (vedi ContentIndex.tokenize), ordinati per rilevanza. Ogni categoria
+     * ha il proprio indice invertito, per cui si leggono solo le posting list della categoria
+     *
+     * @param session  sessione dell'utente, ottenuta con login
+     * @param category nome della categoria in cui cercare
+     * @param query    le parole da cercare
+     * @return (list) ritorna una nuova lista di posts, vuota se nessun post contiene le parole
+     * @throws EmptyFieldException   se uno dei campi è vuoto
+     * @throws UnauthorizedException se la sessione non è valida
+     * @throws ItemNotFoundException se la categoria non esiste
+     */
+    @Override
+    public List<E> searchCategory(Session session, String category, String query)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        if (category.isBlank() || query.isBlank())
+            throw new EmptyFieldException();
+        this.authorize(session);
+        Category<E> target = this.categories.get(category);
+        if (target == null)
+            throw new ItemNotFoundException();
+        ContentIndex.Query<E> search = new ContentIndex.Query<>(query);
+        target.search(search, post -> post.getCategory().equals(category));
+        return search.ranked();
+    }
+
+    /**
+     * Cerca tra i dati condivisi con uno specifico amico quelli che contengono almeno una
+     * delle parole di query, ordinati per rilevanza (vedi searchCategory)
+     *
+     * @param friend nome dell'amico
+     * @param query  le parole da cercare
+     * @return (list) ritorna una nuova lista di posts, vuota se nessun post contiene le parole
+     * @throws EmptyFieldException se uno dei campi è vuoto
+     */
+    @Override
+    public List<E> searchFriend(String friend, String query)
+            throws EmptyFieldException {
+
+        if (friend.isBlank() || query.isBlank())
+            throw new EmptyFieldException();
+        ContentIndex.Query<E> search = new ContentIndex.Query<>(query);
+        for (String category : this.shared(friend))
+            this.categories.get(category).search(search, post -> true);
+        return search.ranked();
+    }
+
+    /**
+     * Iteratore che genera tutti i dati del feed ordinati per numero di like,
+     * letti direttamente da una fotografia della classifica senza copie né ordinamenti
      *
-     * @param password password dell'utente per autenticarsi
+     * @param session  sessione dell'utente, ottenuta con login
      * @return Iterator ritorna un iteratore immutabile (senza la remove) per generare i posts
-     * @throws UnauthorizedException se la password non è corretta
-     * @throws EmptyFieldException   se il campo password è vuoto
+     * @throws UnauthorizedException se la sessione non è valida
+     */
+    @Override
+    public Iterator<E> getIterator(Session session)
+            throws UnauthorizedException, EmptyFieldException {
+
+        this.authorize(session);
+        return this.ranking.iterator();
+    }
+
+    /**
+     * Iteratore che genera i primi k dati del feed ordinati per numero di like.
+     * La classifica è già ordinata, per cui si visitano solo i primi k posts
+     *
+     * @param session  sessione dell'utente, ottenuta con login
+     * @param k        numero massimo di posts da generare
+     * @return (iterator) ritorna un iteratore immutabile (senza la remove) per generare i posts
+     * @throws UnauthorizedException    se la sessione non è valida
+     * @throws IllegalArgumentException se k è negativo
+     */
+    @Override
+    public Iterator<E> getTopIterator(Session session, int k)
+            throws UnauthorizedException, EmptyFieldException {
+
+        this.authorize(session);
+        return this.ranking.iterator(k);
+    }
+
+    /**
+     * Pagina dei dati del feed ordinati per numero di like, letta dalla classifica
+     * a partire dalla chiave dell'ultimo post restituito (vedi Ranking.page)
+     *
+     * @param session sessione dell'utente, ottenuta con login
+     * @param cursor  cursore della pagina precedente, oppure null per la prima pagina
+     * @param limit   numero massimo di posts della pagina
+     * @return (page) ritorna una pagina di posts
+     * @throws UnauthorizedException    se la sessione non è valida
+     * @throws IllegalArgumentException se il cursore non è valido o limit non è positivo
      */
     @Override
-    public Iterator<E> getIterator(String password)
+    public Page<E> getPage(Session session, String cursor, int limit)
             throws UnauthorizedException, EmptyFieldException {
 
-        if (password.isBlank()) throw new EmptyFieldException();
-        this.authentication(password);
-        List<E> sortedFeed = new ArrayList<>();
-        for (String category : this.categories.keySet())
-            sortedFeed.addAll(this.categories.get(category).getFeed());
-        Collections.sort(sortedFeed);
-        return Collections.unmodifiableList(sortedFeed).iterator();
+        this.authorize(session);
+        return this.ranking.page(cursor, limit);
     }
 
     /**
-     * Iteratore che genera tutti i dati condivisi con uno specifico amico
+     * Iteratore che genera tutti i dati condivisi con uno specifico amico,
+     * visitando solo le categorie condivise con lui. L'iteratore concatena fotografie
+     * dei feed delle categorie, per cui non risente delle modifiche successive
      *
      * @param friend nome dell'amico
      * @return Iterator ritorna un iteratore immutabile (senza la remove) per generare i posts
@@ -305,10 +644,268 @@ public class Board2<E extends Data> extends Board<E> {
             throws EmptyFieldException {
 
         if (friend.isBlank()) throw new EmptyFieldException();
-        List<E> filteredFeed = new ArrayList<>();
-        for (String category : this.categories.keySet())
-            if (this.categories.get(category).checkFriend(friend))
-                filteredFeed.addAll(this.categories.get(category).getFeed());
-        return Collections.unmodifiableList(filteredFeed).iterator();
+        Deque<Iterator<E>> snapshots = new ArrayDeque<>();
+        for (String category : this.sortedShared(friend))
+            snapshots.add(this.categories.get(category).feedSnapshot());
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                while (!snapshots.isEmpty() && !snapshots.peekFirst().hasNext())
+                    snapshots.pollFirst();
+                return !snapshots.isEmpty();
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return snapshots.peekFirst().next();
+            }
+        };
+    }
+
+    /**
+     * Iteratore che genera tutti i dati condivisi con uno specifico amico in ordine di pubblicazione,
+     * anche a ritroso. I numeri di sequenza sono unici in tutta la board, per cui le fotografie
+     * dei feed delle categorie condivise si fondono in modo pigro, dal post più recente se newestFirst
+     *
+     * @param friend      nome dell'amico
+     * @param newestFirst true per partire dal post più recente
+     * @return (iterator) ritorna un iteratore immutabile (senza la remove) per generare i posts
+     * @throws EmptyFieldException se il campo friend è vuoto
+     */
+    @Override
+    public Iterator<E> getFriendIterator(String friend, boolean newestFirst)
+            throws EmptyFieldException {
+
+        if (friend.isBlank()) throw new EmptyFieldException();
+        List<Feed<E>.Cursor> cursors = new ArrayList<>();
+        for (String name : this.shared(friend)) {
+            Category<E> category = this.categories.get(name);
+            cursors.add(newestFirst ? category.feedReverseSnapshot() : category.feedSnapshot());
+        }
+        return Feed.merge(cursors, newestFirst);
+    }
+
+    /**
+     * Iteratore che genera tutti i dati condivisi con uno specifico amico ordinati per numero di like,
+     * letti da una fotografia della classifica scartando i posts delle categorie non condivise.
+     * Le categorie condivise sono quelle al momento della chiamata
+     *
+     * @param friend nome dell'amico
+     * @return (iterator) ritorna un iteratore immutabile (senza la remove) per generare i posts
+     * @throws EmptyFieldException se il campo friend è vuoto
+     */
+    @Override
+    public Iterator<E> getFriendRankingIterator(String friend)
+            throws EmptyFieldException {
+
+        if (friend.isBlank())
+            throw new EmptyFieldException();
+        Set<String> shared = new HashSet<>(this.shared(friend));
+        if (shared.isEmpty())
+            return Collections.emptyIterator();
+        return this.ranking.iterator(post -> shared.contains(post.getCategory()));
+    }
+
+    /**
+     * Pagina dei dati condivisi con uno specifico amico, nello stesso ordine di getFriendIterator
+     * (categorie in ordine alfabetico, posts in ordine di pubblicazione). Il cursore è la coppia
+     * (categoria, numero di sequenza) dell'ultimo post restituito
+     *
+     * @param friend nome dell'amico
+     * @param cursor cursore della pagina precedente, oppure null per la prima pagina
+     * @param limit  numero massimo di posts della pagina
+     * @return (page) ritorna una pagina di posts
+     * @throws EmptyFieldException      se il campo friend è vuoto
+     * @throws IllegalArgumentException se il cursore non è valido o limit non è positivo
+     */
+    @Override
+    public Page<E> getFriendPage(String friend, String cursor, int limit)
+            throws EmptyFieldException {
+
+        if (friend.isBlank()) throw new EmptyFieldException();
+        Page.checkLimit(limit);
+        String lastCategory = null;
+        long afterSeq = -1;
+        if (cursor != null) {
+            String[] fields = Page.fields(cursor, "friend", 2);
+            lastCategory = fields[0];
+            afterSeq = Long.parseLong(fields[1]);
+        }
+        NavigableSet<String> shared = this.sortedShared(friend);
+        List<E> items = new ArrayList<>(limit);
+        boolean more = false;
+        for (String name : lastCategory == null ? shared : shared.tailSet(lastCategory, true)) {
+            Feed<E>.Cursor categoryCursor = this.categories.get(name).feedFrom(name.equals(lastCategory) ? afterSeq : -1);
+            while (items.size() < limit && categoryCursor.hasNext()) {
+                lastCategory = name;
+                afterSeq = categoryCursor.peekSeq();
+                items.add(categoryCursor.next());
+            }
+            if (categoryCursor.hasNext()) {
+                more = true;
+                break;
+            }
+        }
+        return new Page<>(items, more ? Page.cursor("friend", lastCategory, afterSeq) : null);
+    }
+
+    /**
+     * Stream di tutti i dati in bacheca, che concatena le fotografie dei feed delle categorie
+     * senza copiarli né compattarli. Lo spliterator si divide prima tra le categorie e poi all'interno
+     * di ognuna, ed ha dimensione esatta (SIZED e SUBSIZED) se i feed non contengono lapidi
+     * (vedi Feed.spliterator), per cui lo stream può essere reso parallelo senza costi aggiuntivi
+     *
+     * @param session sessione dell'utente, ottenuta con login
+     * @return (stream) ritorna uno stream sequenziale dei posts, da rendere parallelo con parallel()
+     * @throws UnauthorizedException se la sessione non è valida
+     */
+    @Override
+    public Stream<E> stream(Session session)
+            throws UnauthorizedException, EmptyFieldException {
+
+        this.authorize(session);
+        List<Spliterator<E>> parts = new ArrayList<>(this.categories.size());
+        for (Category<E> category : this.categories.values())
+            parts.add(category.feedSpliterator());
+        return StreamSupport.stream(new ConcatSpliterator<>(parts), false);
+    }
+
+    /**
+     * Stream dei post in bacheca di una determinata categoria, letto da una fotografia
+     * del feed della categoria. Come getDataCategory scarta i post archiviati nella categoria
+     * con un'altra categoria, per cui lo stream non ha una dimensione nota in anticipo
+     *
+     * @param session  sessione dell'utente, ottenuta con login
+     * @param category nome della categoria di cui si vogliono vedere i post
+     * @return (stream) ritorna uno stream sequenziale dei posts della categoria
+     * @throws EmptyFieldException   se uno dei due campi è vuoto
+     * @throws UnauthorizedException se la sessione non è valida
+     * @throws ItemNotFoundException se la categoria non esiste
+     */
+    @Override
+    public Stream<E> categoryStream(Session session, String category)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        if (category.isBlank())
+            throw new EmptyFieldException();
+        this.authorize(session);
+        if (!this.categories.containsKey(category))
+            throw new ItemNotFoundException();
+        return StreamSupport.stream(this.categories.get(category).feedSpliterator(), false)
+                .filter(post -> post.getCategory().equals(category));
+    }
+
+    /**
+     * Stream dei dati condivisi con uno specifico amico, nello stesso ordine di getFriendIterator
+     *
+     * @param friend nome dell'amico
+     * @return (stream) ritorna uno stream sequenziale dei posts
+     * @throws EmptyFieldException se il campo friend è vuoto
+     */
+    @Override
+    public Stream<E> friendStream(String friend)
+            throws EmptyFieldException {
+
+        if (friend.isBlank()) throw new EmptyFieldException();
+        List<Spliterator<E>> parts = new ArrayList<>();
+        for (String name : this.sortedShared(friend))
+            parts.add(this.categories.get(name).feedSpliterator());
+        return StreamSupport.stream(new ConcatSpliterator<>(parts), false);
+    }
+
+    /**
+     * Ultimi dati condivisi con uno specifico amico, dal più recente. In modalità fan-out-on-write
+     * sono letti dalla casella dell'amico in O(limit), ricostruendola se era stata scartata;
+     * altrimenti, o se limit supera i posts conservati nella casella, sono scelti tra gli ultimi
+     * limit posts di ogni categoria condivisa in O(k * limit * log(limit)), con k categorie
+     *
+     * @param friend nome dell'amico
+     * @param limit  numero massimo di posts
+     * @return (list) ritorna al più limit posts, dal più recente
+     * @throws EmptyFieldException      se il campo friend è vuoto
+     * @throws IllegalArgumentException se limit non è positivo
+     */
+    @Override
+    public List<E> getTimeline(String friend, int limit)
+            throws EmptyFieldException {
+
+        if (friend.isBlank()) throw new EmptyFieldException();
+        Page.checkLimit(limit);
+        if (this.inboxes == null)
+            return this.latest(friend, limit);
+        Inbox<E> inbox = this.inboxes.get(friend);
+        if (inbox == null) {
+            inbox = new Inbox<>(this.inboxCapacity);
+            List<E> latest = this.latest(friend, this.inboxCapacity);
+            for (int i = latest.size() - 1; i >= 0; i--)
+                inbox.push(latest.get(i));
+            if (latest.size() == this.inboxCapacity)
+                inbox.markTruncated();
+            this.inboxes.put(friend, inbox);
+        }
+        if (limit <= inbox.size() || !inbox.truncated())
+            return inbox.latest(limit);
+        return this.latest(friend, limit);
+    }
+
+    /**
+     * Ultimi posts condivisi con un amico, letti in coda al feed di ogni categoria condivisa
+     * ed ordinati per numero di sequenza
+     *
+     * @param friend nome dell'amico
+     * @param limit  numero massimo di posts
+     * @return (list) al più limit posts, dal più recente
+     */
+    private List<E> latest(String friend, int limit) {
+        TreeMap<Long, E> newest = new TreeMap<>();
+        for (String name : this.shared(friend))
+            for (Feed<E>.Cursor posts = this.categories.get(name).feedTail(limit); posts.hasNext(); ) {
+                newest.put(posts.peekSeq(), posts.next());
+                if (newest.size() > limit)
+                    newest.pollFirstEntry();
+            }
+        return new ArrayList<>(newest.descendingMap().values());
+    }
+
+    /**
+     * Spinge un post appena inserito nelle caselle già create degli amici della categoria
+     *
+     * @param category la categoria in cui è stato inserito il post
+     * @param post     il post inserito
+     * @modifies this.inboxes
+     */
+    private void fanOut(Category<E> category, E post) {
+        if (this.inboxes == null || this.inboxes.isEmpty())
+            return;
+        for (String friend : category.friendsView()) {
+            Inbox<E> inbox = this.inboxes.get(friend);
+            if (inbox != null)
+                inbox.push(post);
+        }
+    }
+
+    /**
+     * Scarta la casella di un amico, che sarà ricostruita alla prossima lettura
+     *
+     * @param friend nome dell'amico
+     * @modifies this.inboxes
+     */
+    private void invalidate(String friend) {
+        if (this.inboxes != null)
+            this.inboxes.remove(friend);
+    }
+
+    @Override
+    void forEachCategory(BiConsumer<String, Set<String>> action) {
+        this.categories.forEach((name, category) -> action.accept(name, category.friendsView()));
+    }
+
+    @Override
+    Iterator<Map.Entry<String, E>> postSnapshot() {
+        Map<String, Feed<E>.Cursor> feeds = new LinkedHashMap<>();
+        this.categories.forEach((name, category) -> feeds.put(name, category.feedSnapshot()));
+        return Board.concat(feeds);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,1206 @@
+package app;
+
+import app.exception.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+
+public class Board3<E extends Data> extends Board<E> {
+
+    /*
+     *   Overview:
+     *       Terza implementazione della classe astratta Board, pensata per essere usata
+     *       da più thread contemporaneamente senza un lock globale esterno.
+     *       Come Board2, i posts sono divisi per categoria (vedi Category.java), ma le categorie
+     *       sono contenute in una ConcurrentHashMap ed ognuna è protetta da un proprio
+     *       lock di lettura/scrittura (lock "a strisce"). Le operazioni su una categoria
+     *       bloccano quindi solo quella categoria: una raffica di like su una categoria
+     *       non impedisce la lettura delle altre. I like, il cui toggle è atomico in Data,
+     *       richiedono solo il lock di lettura, per cui non bloccano nemmeno le letture
+     *       della categoria stessa. Gli iteratori leggono una categoria alla volta,
+     *       per cui ogni categoria è vista in modo consistente, ma non l'intera board.
+     *       I numeri di sequenza dei posts sono unici in tutta la board ed assegnati sotto
+     *       il lock di scrittura della categoria, per cui crescono all'interno di ogni categoria
+     *       e permettono di fondere i feed di più categorie in ordine di pubblicazione.
+     *       Ogni striscia ha infine un proprio indice per timestamp (vedi TimeIndex.java)
+     *       ed una propria classifica per like (vedi Ranking.java), protetti dallo stesso lock
+     *       della categoria. I like aggiornano la classifica con il solo lock di lettura,
+     *       per cui la classifica è protetta anche dal proprio monitor; le pagine per like
+     *       fondono le classifiche delle categorie con un heap.
+     *
+     *   Abstract Function:
+     *      <owner, password, symbols, stripes, nextSeq>, dove:
+     *          owner (string)      è il nome del proprietario della board
+     *          password (string)   è la chiave di accesso alla board per l'utente 'owner'
+     *          symbols (table)     è la tabella dei simboli degli amici, condivisa da tutte le categorie
+     *          stripes (map)       è una map concorrente che associa al nome di ogni categoria
+     *                                  la quadrupla <category, byTime, ranking, lock>, dove lock protegge
+     *                                  category, il suo indice per timestamp byTime e la sua
+     *                                  classifica ranking, che è protetta anche dal proprio monitor
+     *          nextSeq (long)      è il numero di sequenza del prossimo post inserito
+     *
+     *   Representation Invariant:
+     *      owner != null && owner != ""
+     *      && password != null && password != ""
+     *      && symbols != null && stripes != null
+     *      && for each(name, stripe) in stripes : name != "" && unique
+     *          && stripe.category != null && stripe.lock != null
+     *          && stripe.byTime == stripe.category.feed && stripe.ranking == stripe.category.feed
+     *      && nextSeq != null && nextSeq > di ogni numero di sequenza in stripes
+     *
+     */
+
+    private static final class Stripe<E extends Data> {
+        final Category<E> category;
+        final TimeIndex<E> byTime = new TimeIndex<>();
+        final Ranking<E> ranking = new Ranking<>();
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        Stripe(Symbols symbols) {
+            this.category = new Category<>(symbols);
+        }
+    }
+
+    // Coppia <post, like> letta sotto lock, per ordinare senza rileggere i like mentre cambiano
+    private static final class Entry<E extends Data> {
+        final E post;
+        final int likes;
+
+        Entry(E post) {
+            this.post = post;
+            this.likes = post.getLikesCounter();
+        }
+    }
+
+    // Cursore sulla classifica di una categoria, con il nome della categoria per gli spareggi
+    private static final class Head<E extends Data> {
+        final String name;
+        final Ranking<E>.Cursor posts;
+
+        Head(String name, Ranking<E>.Cursor posts) {
+            this.name = name;
+            this.posts = posts;
+        }
+    }
+
+    // Stesso ordinamento di Data.compareTo, ma sui like letti al momento della copia
+    private static final Comparator<Entry<?>> BY_LIKES = (a, b) -> {
+        int result = Integer.compare(b.likes, a.likes);
+        return result != 0 ? result : a.post.compareContent(b.post);
+    };
+
+    // Ordinamento totale tra le classifiche delle categorie: a parità di like e contenuto
+    // decidono il nome della categoria e la posizione nella sua classifica
+    private static final Comparator<Head<?>> BY_POSITION = (a, b) -> {
+        int result = Integer.compare(b.posts.peekLikes(), a.posts.peekLikes());
+        if (result == 0)
+            result = a.posts.peek().compareContent(b.posts.peek());
+        if (result == 0)
+            result = a.name.compareTo(b.name);
+        if (result == 0)
+            result = Long.compare(a.posts.peekSeq(), b.posts.peekSeq());
+        return result;
+    };
+
+    // Numero di posts letti da una striscia ad ogni acquisizione del lock, negli iteratori pigri
+    private static final int CHUNK = 256;
+
+    private final Symbols symbols;
+    private final Map<String, Stripe<E>> stripes;
+    private final AtomicLong nextSeq;
+
+    /**
+     * Costruttore di board (3)
+     *
+     * @param username valido, diverso dalla stringa vuota
+     * @param password valida, diverso dalla stringa vuota
+     * @throws EmptyFieldException se username o password sono vuoti
+     */
+    public Board3(String username, String password)
+            throws EmptyFieldException {
+        super(username, password);
+        this.symbols = new Symbols();
+        this.stripes = new ConcurrentHashMap<>();
+        this.nextSeq = new AtomicLong();
+    }
+
+    /**
+     * Crea una nuova categoria
+     *
+     * @param category nome della categoria da creare
+     * @param session  sessione dell'utente, ottenuta con login
+     * @throws UnauthorizedException  se la sessione non è valida
+     * @throws EmptyFieldException    se uno dei due parametri è una stringa vuota
+     * @throws DuplicateItemException se esiste già una categoria con lo stesso nome
+     * @modifies this.stripes
+     * @effects post(this.stripes) = pre(this.stripes) U {category}
+     */
+    @Override
+    public void createCategory(String category, Session session)
+            throws UnauthorizedException, EmptyFieldException, DuplicateItemException {
+
+        if (category.isBlank())
+            throw new EmptyFieldException();
+        this.authorize(session);
+        if (this.stripes.putIfAbsent(category, new Stripe<>(this.symbols)) != null)
+            throw new DuplicateItemException();
+    }
+
+    /**
+     * Rimuove una categoria esistente, insieme ai posts che contiene
+     *
+     * @param category nome della categoria da rimuovere
+     * @param session  sessione dell'utente, ottenuta con login
+     * @throws UnauthorizedException se la sessione non è valida
+     * @throws EmptyFieldException   se uno dei due parametri è una stringa vuota
+     * @throws ItemNotFoundException se non esiste una categoria con quel nome
+     * @modifies this.stripes
+     * @effects post(this.stripes) = pre(this.stripes) \ {category}
+     */
+    @Override
+    public void removeCategory(String category, Session session)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        if (category.isBlank())
+            throw new EmptyFieldException();
+        this.authorize(session);
+        Stripe<E> removed = this.stripes.remove(category);
+        if (removed == null)
+            throw new ItemNotFoundException();
+        removed.lock.writeLock().lock();
+        try {
+            removed.category.forEachPost(Data::release);
+        } finally {
+            removed.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Associa un nuovo amico ad una categoria esistente
+     *
+     * @param category nome della categoria dove aggiungere l'amico
+     * @param session  sessione dell'utente, ottenuta con login
+     * @param friend   nome dell'amico da aggiungere
+     * @throws UnauthorizedException se la sessione non è valida
+     * @throws EmptyFieldException   se uno dei tre parametri è una stringa vuota
+     * @throws ItemNotFoundException se non esiste una categoria con quel nome
+     * @modifies this.stripes[category]
+     * @effects see Category.java
+     */
+    @Override
+    public void addFriend(String category, Session session, String friend)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        if (category.isBlank() || friend.isBlank())
+            throw new EmptyFieldException();
+        this.authorize(session);
+        Stripe<E> stripe = this.stripe(category);
+        stripe.lock.writeLock().lock();
+        try {
+            stripe.category.addFriend(friend);
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rimuove un amico da una delle categorie
+     *
+     * @param category nome della categoria da dove rimuovere l'amico
+     * @param session  sessione dell'utente, ottenuta con login
+     * @param friend   nome dell'amico da rimuovere
+     * @throws UnauthorizedException se la sessione non è valida
+     * @throws EmptyFieldException   se uno dei tre parametri è una stringa vuota
+     * @throws ItemNotFoundException se non esiste una categoria con quel nome
+     * @modifies this.stripes[category]
+     * @effects see Category.java
+     */
+    @Override
+    public void removeFriend(String category, Session session, String friend)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        if (category.isBlank() || friend.isBlank())
+            throw new EmptyFieldException();
+        this.authorize(session);
+        Stripe<E> stripe = this.stripe(category);
+        stripe.lock.writeLock().lock();
+        try {
+            stripe.category.removeFriend(friend);
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Inserisce un nuovo post nel feed dell'utente
+     *
+     * @param session  sessione dell'utente, ottenuta con login
+     * @param post     il post da inserire nel feed
+     * @param category nome della categoria dove inserire il post
+     * @return (true) se l'operazione va a buon fine
+     * @throws UnauthorizedException se la sessione non è valida
+     * @throws EmptyFieldException   se uno dei due parametri stringa è vuota
+     * @throws ItemNotFoundException se non esiste una categoria con quel nome
+     * @modifies this.stripes[category]
+     * @effects see Category.java
+     */
+    @Override
+    public boolean put(Session session, E post, String category)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        if (category.isBlank())
+            throw new EmptyFieldException();
+        this.authorize(session);
+        Stripe<E> stripe = this.stripe(category);
+        stripe.lock.writeLock().lock();
+        try {
+            stripe.category.addPost(post, this.nextSeq.getAndIncrement());
+            stripe.byTime.add(post);
+            stripe.ranking.add(post);
+            post.retain();
+            return true;
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Inserisce in blocco dei posts nel feed dell'utente, autenticandosi una sola volta
+     * e prendendo il lock di scrittura della categoria una sola volta
+     *
+     * @param session  sessione dell'utente, ottenuta con login
+     * @param posts    i posts da inserire nel feed, nell'ordine della collezione
+     * @param category nome della categoria dove inserire i posts
+     * @return (true) se l'operazione va a buon fine
+     * @throws UnauthorizedException se la sessione non è valida
+     * @throws EmptyFieldException   se uno dei due parametri stringa è vuota
+     * @throws ItemNotFoundException se non esiste una categoria con quel nome
+     * @modifies this.stripes[category]
+     * @effects see Category.java
+     */
+    @Override
+    public boolean putAll(Session session, Collection<? extends E> posts, String category)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        if (category.isBlank())
+            throw new EmptyFieldException();
+        this.authorize(session);
+        Stripe<E> stripe = this.stripe(category);
+        for (E post : posts)
+            Objects.requireNonNull(post);
+        stripe.lock.writeLock().lock();
+        try {
+            stripe.category.addPosts(posts, this.nextSeq.getAndAdd(posts.size()));
+            for (E post : posts) {
+                stripe.byTime.add(post);
+                stripe.ranking.add(post);
+                post.retain();
+            }
+            return true;
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Visualizza un post dal feed dell'utente
+     *
+     * @param session  sessione dell'utente, ottenuta con login
+     * @param post     il post da visualizzare dal feed
+     * @return (post) ritorna una copia del dato richiesto
+     * @throws UnauthorizedException se la sessione non è valida
+     * @throws ItemNotFoundException se il post richiesto non esiste
+     */
+    @Override
+    public E get(Session session, E post)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        this.authorize(session);
+        Stripe<E> stripe = this.stripe(post.getCategory());
+        stripe.lock.readLock().lock();
+        try {
+            return stripe.category.getPost(post);
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rimuove un post dal feed dell'utente
+     *
+     * @param session  sessione dell'utente, ottenuta con login
+     * @param post     il post da rimuovere dal feed
+     * @return (post) ritorna una copia del dato rimosso
+     * @throws UnauthorizedException se la sessione non è valida
+     * @throws ItemNotFoundException se il post da rimuovere non esiste
+     * @modifies this.stripes[post.category]
+     * @effects see Category.java
+     */
+    @Override
+    public E remove(Session session, E post)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        this.authorize(session);
+        Stripe<E> stripe = this.stripe(post.getCategory());
+        stripe.lock.writeLock().lock();
+        try {
+            E removed = stripe.category.removePost(post);
+            stripe.byTime.remove(post);
+            stripe.ranking.remove(post);
+            post.release();
+            return removed;
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Inserisce un like ad un post specifico da parte di un amico,
+     * se il like c'è già allora funziona da toggle, ovvero lo rimuove.
+     * Il toggle è atomico in Data, per cui basta il lock di lettura della categoria del post
+     *
+     * @param friend nome dell'amico che vuole mettere like al post
+     * @param post   post a cui mettere like
+     * @throws EmptyFieldException   se il campo friend è vuoto
+     * @throws ItemNotFoundException se la categoria o il post non esistono
+     * @throws NotAllowedException   se l'amico non può vedere la categoria del post
+     * @modifies this.stripes[post.category][likes]
+     * @effects see Category.java
+     */
+    @Override
+    public void insertLike(String friend, E post)
+            throws EmptyFieldException, ItemNotFoundException, NotAllowedException {
+
+        if (friend.isBlank())
+            throw new EmptyFieldException();
+        Stripe<E> stripe = this.stripe(post.getCategory());
+        stripe.lock.readLock().lock();
+        try {
+            if (!stripe.category.containsPost(post))
+                throw new ItemNotFoundException();
+            if (!stripe.category.checkFriend(friend))
+                throw new NotAllowedException();
+            stripe.category.like(post, friend);
+            synchronized (stripe.ranking) {
+                stripe.ranking.update(post);
+            }
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Inserisce (o toglie) un like da parte di un amico a più posts. Si prendono i lock di lettura
+     * di tutte le categorie coinvolte, sempre in ordine di nome per evitare stalli, si controlla
+     * che tutti i posts esistano e che l'amico possa vederli, e solo allora si applicano i like:
+     * se un controllo fallisce non viene modificato nessun post
+     *
+     * @param friend nome dell'amico che vuole mettere like ai posts
+     * @param posts  i posts a cui mettere like
+     * @throws EmptyFieldException   se il campo friend è vuoto
+     * @throws ItemNotFoundException se la categoria o uno dei posts non esistono
+     * @throws NotAllowedException   se l'amico non può vedere la categoria di uno dei posts
+     * @modifies this.stripes[posts.category][likes]
+     * @effects see Category.java
+     */
+    @Override
+    public void likeAll(String friend, Collection<? extends E> posts)
+            throws EmptyFieldException, ItemNotFoundException, NotAllowedException {
+
+        if (friend.isBlank())
+            throw new EmptyFieldException();
+        SortedMap<String, Stripe<E>> involved = new TreeMap<>();
+        for (E post : posts)
+            if (!involved.containsKey(post.getCategory()))
+                involved.put(post.getCategory(), this.stripe(post.getCategory()));
+
+        List<Stripe<E>> locked = new ArrayList<>(involved.size());
+        try {
+            for (Stripe<E> stripe : involved.values()) {
+                stripe.lock.readLock().lock();
+                locked.add(stripe);
+            }
+            int id = this.symbols.lookup(friend);
+            for (E post : posts) {
+                Category<E> category = involved.get(post.getCategory()).category;
+                if (!category.containsPost(post))
+                    throw new ItemNotFoundException();
+                if (!category.checkFriend(id))
+                    throw new NotAllowedException();
+            }
+            for (E post : posts) {
+                Stripe<E> stripe = involved.get(post.getCategory());
+                stripe.category.like(post, friend);
+                synchronized (stripe.ranking) {
+                    stripe.ranking.update(post);
+                }
+            }
+        } finally {
+            for (Stripe<E> stripe : locked)
+                stripe.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Crea la lista dei post in bacheca di una determinata categoria
+     *
+     * @param session  sessione dell'utente, ottenuta con login
+     * @param category nome della categoria di cui si vogliono vedere i post
+     * @return (list) ritorna una lista dei post appartenenti ad una categoria
+     * @throws UnauthorizedException se la sessione non è valida
+     * @throws EmptyFieldException   se uno dei due campi è vuoto
+     * @throws ItemNotFoundException se la categoria non esiste
+     */
+    @Override
+    public List<E> getDataCategory(Session session, String category)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        if (category.isBlank())
+            throw new EmptyFieldException();
+        this.authorize(session);
+        Stripe<E> stripe = this.stripe(category);
+        stripe.lock.readLock().lock();
+        try {
+            List<E> filteredFeed = new ArrayList<>(stripe.category.feedView().size());
+            for (E post : stripe.category.feedView())
+                if (post.getCategory().equals(category))
+                    filteredFeed.add(post);
+            return filteredFeed;
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Pagina dei post in bacheca di una determinata categoria, in ordine di pubblicazione,
+     * letta sotto il lock di lettura della categoria. Il cursore è il numero di sequenza
+     * dell'ultimo post restituito nel feed della categoria
+     *
+     * @param session  sessione dell'utente, ottenuta con login
+     * @param category nome della categoria di cui si vogliono vedere i post
+     * @param cursor   cursore della pagina precedente, oppure null per la prima pagina
+     * @param limit    numero massimo di post della pagina
+     * @return (page) ritorna una pagina dei post appartenenti ad una categoria
+     * @throws UnauthorizedException    se la sessione non è valida
+     * @throws EmptyFieldException      se uno dei due campi è vuoto
+     * @throws ItemNotFoundException    se la categoria non esiste
+     * @throws IllegalArgumentException se il cursore non è valido o limit non è positivo
+     */
+    @Override
+    public Page<E> getDataCategory(Session session, String category, String cursor, int limit)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        if (category.isBlank())
+            throw new EmptyFieldException();
+        this.authorize(session);
+        Stripe<E> stripe = this.stripe(category);
+        Page.checkLimit(limit);
+        long afterSeq = Page.afterSeq(cursor, "category");
+        stripe.lock.readLock().lock();
+        try {
+            return stripe.category.feedPage(afterSeq, limit, post -> post.getCategory().equals(category), "category");
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lista dei dati in bacheca creati a partire da un certo istante, in ordine di timestamp.
+     * Ogni categoria risponde dal proprio indice per timestamp sotto il lock di lettura;
+     * le sequenze ordinate delle categorie sono poi fuse con un ordinamento stabile (TimSort),
+     * che le riconosce come sequenze già ordinate
+     *
+     * @param session sessione dell'utente, ottenuta con login
+     * @param since   primo timestamp incluso, in microsecondi (vedi Data.now)
+     * @return (list) ritorna una nuova lista di posts
+     * @throws UnauthorizedException se la sessione non è valida
+     */
+    @Override
+    public List<E> getDataSince(Session session, long since)
+            throws UnauthorizedException, EmptyFieldException {
+
+        this.authorize(session);
+        return this.byTime(index -> index.since(since));
+    }
+
+    /**
+     * Lista dei dati in bacheca creati in un intervallo di tempo, in ordine di timestamp
+     * (vedi getDataSince)
+     *
+     * @param session sessione dell'utente, ottenuta con login
+     * @param from    primo timestamp incluso, in microsecondi (vedi Data.now)
+     * @param to      primo timestamp escluso, in microsecondi
+     * @return (list) ritorna una nuova lista di posts
+     * @throws UnauthorizedException    se la sessione non è valida
+     * @throws IllegalArgumentException se from è maggiore di to
+     */
+    @Override
+    public List<E> getDataBetween(Session session, long from, long to)
+            throws UnauthorizedException, EmptyFieldException {
+
+        this.authorize(session);
+        if (from > to)
+            throw new IllegalArgumentException();
+        return this.byTime(index -> index.range(from, to));
+    }
+
+    /**
+     * Interroga l'indice per timestamp di ogni categoria, sotto il suo lock di lettura,
+     * e fonde i risultati in ordine di timestamp
+     *
+     * @param query l'interrogazione da eseguire su ogni indice
+     * @return (list) ritorna una nuova lista di posts
+     */
+    private List<E> byTime(Function<TimeIndex<E>, List<E>> query) {
+        List<E> posts = new ArrayList<>();
+        for (Stripe<E> stripe : this.stripes.values()) {
+            stripe.lock.readLock().lock();
+            try {
+                posts.addAll(query.apply(stripe.byTime));
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        }
+        posts.sort(Comparator.comparingLong(Data::getTimestamp));
+        return posts;
+    }
+
+    /**
+     * Cerca tra i post di una determinata categoria quelli che contengono almeno una delle parole
+     * di query (vedi ContentIndex.tokenize), ordinati per rilevanza. L'indice
+     * invertito della categoria è letto sotto il suo lock di lettura
+     *
+     * @param session  sessione dell'utente, ottenuta con login
+     * @param category nome della categoria in cui cercare
+     * @param query    le parole da cercare
+     * @return (list) ritorna una nuova lista di posts, vuota se nessun post contiene le parole
+     * @throws EmptyFieldException   se uno dei campi è vuoto
+     * @throws UnauthorizedException se la sessione non è valida
+     * @throws ItemNotFoundException se la categoria non esiste
+     */
+    @Override
+    public List<E> searchCategory(Session session, String category, String query)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        if (category.isBlank() || query.isBlank())
+            throw new EmptyFieldException();
+        this.authorize(session);
+        Stripe<E> stripe = this.stripe(category);
+        ContentIndex.Query<E> search = new ContentIndex.Query<>(query);
+        stripe.lock.readLock().lock();
+        try {
+            stripe.category.search(search, post -> post.getCategory().equals(category));
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+        return search.ranked();
+    }
+
+    /**
+     * Cerca tra i dati condivisi con uno specifico amico quelli che contengono almeno una
+     * delle parole di query, ordinati per rilevanza (vedi searchCategory)
+     *
+     * @param friend nome dell'amico
+     * @param query  le parole da cercare
+     * @return (list) ritorna una nuova lista di posts, vuota se nessun post contiene le parole
+     * @throws EmptyFieldException se uno dei campi è vuoto
+     */
+    @Override
+    public List<E> searchFriend(String friend, String query)
+            throws EmptyFieldException {
+
+        if (friend.isBlank() || query.isBlank())
+            throw new EmptyFieldException();
+        ContentIndex.Query<E> search = new ContentIndex.Query<>(query);
+        int id = this.symbols.lookup(friend);
+        for (Stripe<E> stripe : this.stripes.values()) {
+            stripe.lock.readLock().lock();
+            try {
+                if (stripe.category.checkFriend(id))
+                    stripe.category.search(search, post -> true);
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        }
+        return search.ranked();
+    }
+
+    /**
+     * Iteratore che genera tutti i dati del feed ordinati per numero di like
+     *
+     * @param session  sessione dell'utente, ottenuta con login
+     * @return Iterator ritorna un iteratore immutabile (senza la remove) per generare i posts
+     * @throws UnauthorizedException se la sessione non è valida
+     */
+    @Override
+    public Iterator<E> getIterator(Session session)
+            throws UnauthorizedException, EmptyFieldException {
+
+        this.authorize(session);
+        List<Entry<E>> entries = this.entries();
+        entries.sort(BY_LIKES);
+        List<E> sortedFeed = new ArrayList<>(entries.size());
+        for (Entry<E> entry : entries)
+            sortedFeed.add(entry.post);
+        return Collections.unmodifiableList(sortedFeed).iterator();
+    }
+
+    /**
+     * Iteratore che genera i primi k dati del feed ordinati per numero di like.
+     * Usa un heap limitato a k elementi: O(n log k) in tempo ed O(k) in memoria
+     *
+     * @param session  sessione dell'utente, ottenuta con login
+     * @param k        numero massimo di posts da generare
+     * @return (iterator) ritorna un iteratore immutabile (senza la remove) per generare i posts
+     * @throws UnauthorizedException    se la sessione non è valida
+     * @throws IllegalArgumentException se k è negativo
+     */
+    @Override
+    public Iterator<E> getTopIterator(Session session, int k)
+            throws UnauthorizedException, EmptyFieldException {
+
+        this.authorize(session);
+        if (k < 0)
+            throw new IllegalArgumentException();
+        if (k == 0)
+            return Collections.emptyIterator();
+
+        // Min-heap rispetto alla classifica: in cima c'è il peggiore dei k migliori
+        PriorityQueue<Entry<E>> heap = new PriorityQueue<>(k, BY_LIKES.reversed());
+        for (Stripe<E> stripe : this.stripes.values()) {
+            stripe.lock.readLock().lock();
+            try {
+                for (E post : stripe.category.feedView()) {
+                    Entry<E> entry = new Entry<>(post);
+                    if (heap.size() < k)
+                        heap.add(entry);
+                    else if (BY_LIKES.compare(entry, heap.peek()) < 0) {
+                        heap.poll();
+                        heap.add(entry);
+                    }
+                }
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        }
+
+        // L'heap restituisce i posts dal peggiore al migliore
+        List<E> top = new ArrayList<>(heap.size());
+        while (!heap.isEmpty())
+            top.add(heap.poll().post);
+        Collections.reverse(top);
+        return Collections.unmodifiableList(top).iterator();
+    }
+
+    /**
+     * Pagina dei dati del feed ordinati per numero di like. Ogni categoria ha la propria classifica:
+     * il cursore di ognuna è posizionato in O(log n) sotto il lock di lettura della categoria,
+     * dopodiché i cursori, che lavorano su fotografie, sono fusi con un heap, per cui la pagina
+     * costa O(k log n + limit log k) con k categorie. A parità di like e contenuto i posts seguono
+     * l'ordine dei nomi delle categorie. Il cursore contiene like, categoria e numero di sequenza
+     * nella sua classifica dell'ultimo post, insieme al numero di sue copie già restituite:
+     * il contenuto si ritrova nella classifica di quella sola categoria. Se nel frattempo il post
+     * è stato rimosso la pagina riparte dal primo post con lo stesso numero di like, per cui
+     * alcuni posts possono essere ripetuti ma nessuno viene saltato
+     *
+     * @param session sessione dell'utente, ottenuta con login
+     * @param cursor  cursore della pagina precedente, oppure null per la prima pagina
+     * @param limit   numero massimo di posts della pagina
+     * @return (page) ritorna una pagina di posts
+     * @throws UnauthorizedException    se la sessione non è valida
+     * @throws IllegalArgumentException se il cursore non è valido o limit non è positivo
+     */
+    @Override
+    public Page<E> getPage(Session session, String cursor, int limit)
+            throws UnauthorizedException, EmptyFieldException {
+
+        this.authorize(session);
+        Page.checkLimit(limit);
+        String[] fields = cursor != null ? Page.fields(cursor, "ranking", 4) : null;
+        E resumed = null;
+        if (fields != null) {
+            Stripe<E> stripe = this.stripes.get(fields[1]);
+            long seq = Long.parseLong(fields[2]);
+            resumed = stripe != null ? this.readRanking(stripe, ranking -> ranking.get(seq)) : null;
+        }
+        String content = resumed != null ? resumed.getContent() : null;
+
+        PriorityQueue<Head<E>> heads = new PriorityQueue<>(Math.max(1, this.stripes.size()), BY_POSITION);
+        for (Map.Entry<String, Stripe<E>> stripe : this.stripes.entrySet()) {
+            Ranking<E>.Cursor posts = this.readRanking(stripe.getValue(),
+                    ranking -> this.resume(ranking, stripe.getKey(), fields, content));
+            if (posts.hasNext())
+                heads.add(new Head<>(stripe.getKey(), posts));
+        }
+
+        List<E> items = new ArrayList<>(limit);
+        Head<E> last = null;
+        int likes = 0;
+        long seq = 0;
+        int emitted = 0;
+        while (items.size() < limit && !heads.isEmpty()) {
+            last = heads.poll();
+            likes = last.posts.peekLikes();
+            seq = last.posts.peekSeq();
+            emitted = last.posts.peekEmitted() + 1;
+            items.add(last.posts.next());
+            if (last.posts.hasNext())
+                heads.add(last);
+        }
+        return new Page<>(items, heads.isEmpty() ? null : Page.cursor("ranking", likes, last.name, seq, emitted));
+    }
+
+    /**
+     * Posiziona il cursore della classifica di una categoria subito dopo la posizione di un cursore di pagina
+     *
+     * @param ranking la classifica della categoria
+     * @param name    nome della categoria
+     * @param fields  campi del cursore di pagina <like, categoria, seq, copie>, null per la prima pagina
+     * @param content contenuto dell'ultimo post restituito, null se non è più nella board
+     * @return (cursor)
+     */
+    private Ranking<E>.Cursor resume(Ranking<E> ranking, String name, String[] fields, String content) {
+        if (fields == null)
+            return ranking.iterator();
+        int likes = Integer.parseInt(fields[0]);
+        if (content == null)
+            return ranking.iterator(likes, "", -1, 0);
+        // Le categorie che precedono quella del cursore ripartono dopo (like, contenuto), le altre da lì
+        int order = name.compareTo(fields[1]);
+        if (order < 0)
+            return ranking.iterator(likes, content, Long.MAX_VALUE, 0);
+        if (order > 0)
+            return ranking.iterator(likes, content, -1, 0);
+        return ranking.iterator(likes, content, Long.parseLong(fields[2]), Integer.parseInt(fields[3]));
+    }
+
+    /**
+     * Interroga la classifica di una categoria sotto il suo lock di lettura ed il suo monitor,
+     * con cui i like la aggiornano
+     *
+     * @param stripe la striscia della categoria
+     * @param query  l'interrogazione
+     * @param <R>    tipo del risultato
+     * @return (result) il risultato dell'interrogazione
+     */
+    private <R> R readRanking(Stripe<E> stripe, Function<Ranking<E>, R> query) {
+        stripe.lock.readLock().lock();
+        try {
+            synchronized (stripe.ranking) {
+                return query.apply(stripe.ranking);
+            }
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Iteratore che genera tutti i dati condivisi con uno specifico amico
+     *
+     * @param friend nome dell'amico
+     * @return Iterator ritorna un iteratore immutabile (senza la remove) per generare i posts
+     * @throws EmptyFieldException se il campo friend è vuoto
+     */
+    @Override
+    public Iterator<E> getFriendIterator(String friend)
+            throws EmptyFieldException {
+
+        if (friend.isBlank()) throw new EmptyFieldException();
+        List<E> filteredFeed = new ArrayList<>();
+        int id = this.symbols.lookup(friend);
+        for (Stripe<E> stripe : this.stripes.values()) {
+            stripe.lock.readLock().lock();
+            try {
+                if (stripe.category.checkFriend(id))
+                    filteredFeed.addAll(stripe.category.feedView());
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        }
+        return Collections.unmodifiableList(filteredFeed).iterator();
+    }
+
+    /**
+     * Iteratore che genera tutti i dati condivisi con uno specifico amico in ordine di pubblicazione,
+     * anche a ritroso. Ogni categoria condivisa è letta a blocchi, ognuno sotto il proprio lock
+     * di lettura (vedi StripeReader), ed i blocchi sono fusi in modo pigro per numero di sequenza,
+     * per cui ogni blocco è visto in modo consistente, ma non l'intera categoria
+     *
+     * @param friend      nome dell'amico
+     * @param newestFirst true per partire dal post più recente
+     * @return (iterator) ritorna un iteratore immutabile (senza la remove) per generare i posts
+     * @throws EmptyFieldException se il campo friend è vuoto
+     */
+    @Override
+    public Iterator<E> getFriendIterator(String friend, boolean newestFirst)
+            throws EmptyFieldException {
+
+        if (friend.isBlank()) throw new EmptyFieldException();
+        Comparator<StripeReader> bySeq = Comparator.comparingLong(StripeReader::peekSeq);
+        PriorityQueue<StripeReader> readers = new PriorityQueue<>(Math.max(1, this.stripes.size()),
+                newestFirst ? bySeq.reversed() : bySeq);
+        int id = this.symbols.lookup(friend);
+        for (Map.Entry<String, Stripe<E>> stripe : this.stripes.entrySet()) {
+            StripeReader reader = new StripeReader(stripe.getKey(), stripe.getValue(), id, newestFirst);
+            if (reader.hasNext())
+                readers.add(reader);
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !readers.isEmpty();
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                StripeReader reader = readers.poll();
+                E post = reader.next();
+                if (reader.hasNext())
+                    readers.add(reader);
+                return post;
+            }
+        };
+    }
+
+    /**
+     * Posts di una categoria condivisi con un amico, in ordine di pubblicazione (anche a ritroso),
+     * letti a blocchi di CHUNK sotto il lock di lettura della striscia: ogni blocco riparte
+     * dal numero di sequenza dell'ultimo post letto. La lettura si ferma se la categoria
+     * viene rimossa o l'amico non la vede più
+     */
+    private final class StripeReader {
+        private final String name;
+        private final Stripe<E> stripe;
+        private final int friend;
+        private final boolean newestFirst;
+        private final List<E> posts = new ArrayList<>();
+        private final long[] seqs = new long[CHUNK];
+        private int next;
+        private long lastSeq;
+        private boolean exhausted;
+
+        StripeReader(String name, Stripe<E> stripe, int friend, boolean newestFirst) {
+            this.name = name;
+            this.stripe = stripe;
+            this.friend = friend;
+            this.newestFirst = newestFirst;
+            this.lastSeq = newestFirst ? Long.MAX_VALUE : -1;
+            this.fill();
+        }
+
+        boolean hasNext() {
+            return next < posts.size();
+        }
+
+        long peekSeq() {
+            return seqs[next];
+        }
+
+        E next() {
+            E post = posts.get(next++);
+            if (next == posts.size())
+                fill();
+            return post;
+        }
+
+        // Legge il blocco successivo, se la categoria ne ha ancora
+        private void fill() {
+            posts.clear();
+            next = 0;
+            if (exhausted)
+                return;
+            stripe.lock.readLock().lock();
+            try {
+                if (stripes.get(name) != stripe || !stripe.category.checkFriend(friend)) {
+                    exhausted = true;
+                    return;
+                }
+                Feed<E>.Cursor cursor = newestFirst
+                        ? stripe.category.feedBefore(lastSeq)
+                        : stripe.category.feedFrom(lastSeq);
+                while (posts.size() < CHUNK && cursor.hasNext()) {
+                    lastSeq = cursor.peekSeq();
+                    seqs[posts.size()] = lastSeq;
+                    posts.add(cursor.next());
+                }
+                exhausted = !cursor.hasNext();
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Iteratore che genera tutti i dati condivisi con uno specifico amico ordinati per numero di like.
+     * Ogni categoria condivisa fornisce una fotografia della propria classifica, presa in O(1)
+     * sotto il proprio lock di lettura, e le classifiche sono fuse in modo pigro con un heap,
+     * nello stesso ordine di getPage, per cui il primo post costa O(c log c) sulle c categorie
+     *
+     * @param friend nome dell'amico
+     * @return (iterator) ritorna un iteratore immutabile (senza la remove) per generare i posts
+     * @throws EmptyFieldException se il campo friend è vuoto
+     */
+    @Override
+    public Iterator<E> getFriendRankingIterator(String friend)
+            throws EmptyFieldException {
+
+        if (friend.isBlank()) throw new EmptyFieldException();
+        PriorityQueue<Head<E>> heads = new PriorityQueue<>(Math.max(1, this.stripes.size()), BY_POSITION);
+        int id = this.symbols.lookup(friend);
+        for (Map.Entry<String, Stripe<E>> stripe : this.stripes.entrySet()) {
+            Ranking<E>.Cursor posts = this.readRanking(stripe.getValue(),
+                    ranking -> stripe.getValue().category.checkFriend(id) ? ranking.iterator() : null);
+            if (posts != null && posts.hasNext())
+                heads.add(new Head<>(stripe.getKey(), posts));
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Head<E> head = heads.poll();
+                E post = head.posts.next();
+                if (head.posts.hasNext())
+                    heads.add(head);
+                return post;
+            }
+        };
+    }
+
+    /**
+     * Pagina dei dati condivisi con uno specifico amico, visitando le categorie in ordine
+     * alfabetico ed ognuna sotto il proprio lock di lettura. Il cursore è la coppia
+     * (categoria, numero di sequenza) dell'ultimo post restituito
+     *
+     * @param friend nome dell'amico
+     * @param cursor cursore della pagina precedente, oppure null per la prima pagina
+     * @param limit  numero massimo di posts della pagina
+     * @return (page) ritorna una pagina di posts
+     * @throws EmptyFieldException      se il campo friend è vuoto
+     * @throws IllegalArgumentException se il cursore non è valido o limit non è positivo
+     */
+    @Override
+    public Page<E> getFriendPage(String friend, String cursor, int limit)
+            throws EmptyFieldException {
+
+        if (friend.isBlank()) throw new EmptyFieldException();
+        Page.checkLimit(limit);
+        String lastCategory = null;
+        long afterSeq = -1;
+        if (cursor != null) {
+            String[] fields = Page.fields(cursor, "friend", 2);
+            lastCategory = fields[0];
+            afterSeq = Long.parseLong(fields[1]);
+        }
+        NavigableSet<String> names = new TreeSet<>(this.stripes.keySet());
+        List<E> items = new ArrayList<>(limit);
+        boolean more = false;
+        int id = this.symbols.lookup(friend);
+        for (String name : lastCategory == null ? names : names.tailSet(lastCategory, true)) {
+            Stripe<E> stripe = this.stripes.get(name);
+            if (stripe == null)
+                continue;
+            stripe.lock.readLock().lock();
+            try {
+                if (!stripe.category.checkFriend(id))
+                    continue;
+                Feed<E>.Cursor posts = stripe.category.feedFrom(name.equals(lastCategory) ? afterSeq : -1);
+                while (items.size() < limit && posts.hasNext()) {
+                    lastCategory = name;
+                    afterSeq = posts.peekSeq();
+                    items.add(posts.next());
+                }
+                more = posts.hasNext();
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+            if (more)
+                break;
+        }
+        return new Page<>(items, more ? Page.cursor("friend", lastCategory, afterSeq) : null);
+    }
+
+    /**
+     * Ultimi dati condivisi con uno specifico amico, dal più recente, scelti tra gli ultimi limit
+     * posts di ogni categoria condivisa, letti sotto il lock di lettura della categoria.
+     * La board è condivisa tra più thread, per cui non mantiene caselle per gli amici
+     *
+     * @param friend nome dell'amico
+     * @param limit  numero massimo di posts
+     * @return (list) ritorna al più limit posts, dal più recente
+     * @throws EmptyFieldException      se il campo friend è vuoto
+     * @throws IllegalArgumentException se limit non è positivo
+     */
+    @Override
+    public List<E> getTimeline(String friend, int limit)
+            throws EmptyFieldException {
+
+        if (friend.isBlank()) throw new EmptyFieldException();
+        Page.checkLimit(limit);
+        TreeMap<Long, E> newest = new TreeMap<>();
+        int id = this.symbols.lookup(friend);
+        for (Stripe<E> stripe : this.stripes.values()) {
+            stripe.lock.readLock().lock();
+            try {
+                if (stripe.category.checkFriend(id))
+                    for (Feed<E>.Cursor posts = stripe.category.feedTail(limit); posts.hasNext(); ) {
+                        newest.put(posts.peekSeq(), posts.next());
+                        if (newest.size() > limit)
+                            newest.pollFirstEntry();
+                    }
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        }
+        return new ArrayList<>(newest.descendingMap().values());
+    }
+
+    /**
+     * Stream di tutti i dati in bacheca. I feed delle categorie possono cambiare in ogni momento,
+     * per cui ogni categoria è copiata sotto il proprio lock di lettura in un array,
+     * il cui spliterator ha dimensione esatta e si divide a metà (SIZED e SUBSIZED)
+     *
+     * @param session sessione dell'utente, ottenuta con login
+     * @return (stream) ritorna uno stream sequenziale dei posts, da rendere parallelo con parallel()
+     * @throws UnauthorizedException se la sessione non è valida
+     */
+    @Override
+    public Stream<E> stream(Session session)
+            throws UnauthorizedException, EmptyFieldException {
+
+        this.authorize(session);
+        List<E> posts = new ArrayList<>();
+        for (Stripe<E> stripe : this.stripes.values()) {
+            stripe.lock.readLock().lock();
+            try {
+                posts.addAll(stripe.category.feedView());
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        }
+        return Collections.unmodifiableList(posts).stream();
+    }
+
+    /**
+     * Stream dei post in bacheca di una determinata categoria, copiati sotto il lock di lettura
+     * della categoria (vedi stream)
+     *
+     * @param session  sessione dell'utente, ottenuta con login
+     * @param category nome della categoria di cui si vogliono vedere i post
+     * @return (stream) ritorna uno stream sequenziale dei posts della categoria
+     * @throws UnauthorizedException se la sessione non è valida
+     * @throws EmptyFieldException   se uno dei due campi è vuoto
+     * @throws ItemNotFoundException se la categoria non esiste
+     */
+    @Override
+    public Stream<E> categoryStream(Session session, String category)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        return Collections.unmodifiableList(this.getDataCategory(session, category)).stream();
+    }
+
+    /**
+     * Stream dei dati condivisi con uno specifico amico, copiati categoria per categoria
+     * sotto i rispettivi lock di lettura (vedi stream)
+     *
+     * @param friend nome dell'amico
+     * @return (stream) ritorna uno stream sequenziale dei posts
+     * @throws EmptyFieldException se il campo friend è vuoto
+     */
+    @Override
+    public Stream<E> friendStream(String friend)
+            throws EmptyFieldException {
+
+        if (friend.isBlank()) throw new EmptyFieldException();
+        List<E> filteredFeed = new ArrayList<>();
+        int id = this.symbols.lookup(friend);
+        for (Stripe<E> stripe : this.stripes.values()) {
+            stripe.lock.readLock().lock();
+            try {
+                if (stripe.category.checkFriend(id))
+                    filteredFeed.addAll(stripe.category.feedView());
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        }
+        return Collections.unmodifiableList(filteredFeed).stream();
+    }
+
+    /**
+     * Restituisce la striscia associata ad una categoria
+     *
+     * @param category nome della categoria
+     * @return (stripe) la quadrupla <category, byTime, ranking, lock> della categoria
+     * @throws ItemNotFoundException se non esiste una categoria con quel nome
+     */
+    private Stripe<E> stripe(String category)
+            throws ItemNotFoundException {
+
+        Stripe<E> stripe = this.stripes.get(category);
+        if (stripe == null)
+            throw new ItemNotFoundException();
+        return stripe;
+    }
+
+    /**
+     * Copia tutti i posts della board insieme al loro numero di like,
+     * leggendo ogni categoria sotto il proprio lock di lettura
+     *
+     * @return (entries) la lista delle coppie <post, like>
+     */
+    private List<Entry<E>> entries() {
+        List<Entry<E>> entries = new ArrayList<>();
+        for (Stripe<E> stripe : this.stripes.values()) {
+            stripe.lock.readLock().lock();
+            try {
+                for (E post : stripe.category.feedView())
+                    entries.add(new Entry<>(post));
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    void forEachCategory(BiConsumer<String, Set<String>> action) {
+        this.stripes.forEach((name, stripe) -> {
+            stripe.lock.readLock().lock();
+            try {
+                action.accept(name, stripe.category.friendsView());
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        });
+    }
+
+    // Ogni categoria è fotografata sotto il proprio lock di lettura, per cui la fotografia
+    // è consistente per categoria ma non tra categorie diverse
+    @Override
+    Iterator<Map.Entry<String, E>> postSnapshot() {
+        Map<String, Feed<E>.Cursor> feeds = new LinkedHashMap<>();
+        this.stripes.forEach((name, stripe) -> {
+            stripe.lock.readLock().lock();
+            try {
+                feeds.put(name, stripe.category.feedSnapshot());
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        });
+        return Board.concat(feeds);
+    }
+}
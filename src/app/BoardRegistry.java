@@ -0,0 +1,246 @@
+package app;
+
+import app.exception.*;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class BoardRegistry<E extends Data> implements Closeable {
+
+    /*
+     *   Overview:
+     *      Registro che ospita le board di molti utenti nella stessa JVM. I proprietari sono
+     *      divisi tra un numero fisso di partizioni (shard) in base all'hash del nome: ogni shard
+     *      ha la propria map proprietario -> board ed un proprio executor con un solo thread.
+     *      Ogni operazione su una board viene inviata allo shard che la possiede ed eseguita
+     *      dal suo thread (modello ad attori): le board di uno shard sono toccate da un solo thread,
+     *      per cui non hanno bisogno di lock, mentre shard diversi lavorano in parallelo
+     *      ed il throughput cresce con il numero di core.
+     *      Tutte le operazioni sono asincrone e restituiscono un CompletableFuture, che termina
+     *      eccezionalmente con l'eccezione lanciata dalla board; call attende il risultato.
+     *      I task non devono conservare riferimenti alla board né bloccarsi in attesa di altri task
+     *      dello stesso shard.
+     *
+     *   Abstraction function:
+     *      <factory, shards>, dove:
+     *          factory (factory)   crea la board di un nuovo proprietario
+     *          shards (list)       sono le partizioni, ognuna con <boards, executor>, dove
+     *                                  boards associa ad ogni proprietario la sua board
+     *
+     *   Representation invariant:
+     *      factory != null && shards != null && shards.size > 0
+     *      && for each(shard) in shards : shard.boards != null && shard.executor != null
+     *      && for each(i, shard) in shards : for each(owner) in shard.boards : shardOf(owner) == i
+     *      && shard.boards è letta e modificata solo dal thread di shard.executor
+     *
+     */
+
+    private static final AtomicInteger registries = new AtomicInteger();
+
+    private final BoardFactory<E> factory;
+    private final List<Shard<E>> shards;
+
+    /**
+     * Costruttore della classe BoardRegistry, con uno shard per ogni processore disponibile
+     *
+     * @param factory crea la board di un nuovo proprietario, ad esempio Board1::new
+     */
+    public BoardRegistry(BoardFactory<E> factory) {
+        this(Runtime.getRuntime().availableProcessors(), factory);
+    }
+
+    /**
+     * Costruttore della classe BoardRegistry
+     *
+     * @param shards  numero di partizioni, ognuna con il proprio thread
+     * @param factory crea la board di un nuovo proprietario, ad esempio Board1::new
+     * @throws IllegalArgumentException se shards non è positivo
+     */
+    public BoardRegistry(int shards, BoardFactory<E> factory) {
+        if (shards <= 0)
+            throw new IllegalArgumentException();
+        if (factory == null)
+            throw new NullPointerException();
+        this.factory = factory;
+        List<Shard<E>> partitions = new ArrayList<>(shards);
+        int registry = registries.getAndIncrement();
+        for (int i = 0; i < shards; i++)
+            partitions.add(new Shard<>("board-shard-" + registry + "-" + i));
+        this.shards = List.copyOf(partitions);
+    }
+
+    /**
+     * Crea la board di un nuovo proprietario nel suo shard
+     *
+     * @param owner    nome del proprietario
+     * @param password password della nuova board
+     * @return (future) termina con EmptyFieldException se owner o password sono vuoti,
+     * con DuplicateItemException se il proprietario ha già una board
+     */
+    public CompletableFuture<Void> register(String owner, String password) {
+        return this.shard(owner).run(boards -> {
+            if (boards.containsKey(owner))
+                throw new DuplicateItemException();
+            boards.put(owner, factory.create(owner, password));
+            return null;
+        });
+    }
+
+    /**
+     * Elimina la board di un proprietario, dopo averne verificato la password
+     *
+     * @param owner    nome del proprietario
+     * @param password password della board
+     * @return (future) termina con ItemNotFoundException se il proprietario non ha una board,
+     * con UnauthorizedException se la password è errata
+     */
+    public CompletableFuture<Void> unregister(String owner, String password) {
+        return this.shard(owner).run(boards -> {
+            Board<E> board = boards.get(owner);
+            if (board == null)
+                throw new ItemNotFoundException();
+            board.authentication(password);
+            boards.remove(owner);
+            return null;
+        });
+    }
+
+    /**
+     * Esegue un'operazione sulla board di un proprietario, nel thread del suo shard
+     *
+     * @param owner nome del proprietario
+     * @param task  l'operazione da eseguire
+     * @param <R>   tipo del risultato
+     * @return (future) il risultato del task, oppure termina con ItemNotFoundException
+     * se il proprietario non ha una board o con l'eccezione lanciata dal task
+     */
+    public <R> CompletableFuture<R> submit(String owner, BoardTask<E, R> task) {
+        return this.shard(owner).run(boards -> {
+            Board<E> board = boards.get(owner);
+            if (board == null)
+                throw new ItemNotFoundException();
+            return task.apply(board);
+        });
+    }
+
+    /**
+     * Esegue un'operazione sulla board di un proprietario e ne attende il risultato
+     *
+     * @param owner nome del proprietario
+     * @param task  l'operazione da eseguire
+     * @param <R>   tipo del risultato
+     * @return (result) il risultato del task
+     * @throws Exception l'eccezione lanciata dal task, oppure ItemNotFoundException
+     *                   se il proprietario non ha una board
+     */
+    public <R> R call(String owner, BoardTask<E, R> task)
+            throws Exception {
+        try {
+            return this.submit(owner, task).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception)
+                throw (Exception) cause;
+            throw (Error) cause;
+        }
+    }
+
+    /**
+     * Numero di board ospitate, sommando i conteggi dei singoli shard
+     *
+     * @return (future) il numero di proprietari registrati
+     */
+    public CompletableFuture<Integer> size() {
+        CompletableFuture<Integer> total = CompletableFuture.completedFuture(0);
+        for (Shard<E> shard : shards)
+            total = total.thenCombine(shard.run(Map::size), Integer::sum);
+        return total;
+    }
+
+    /**
+     * Indice dello shard che possiede la board di un proprietario
+     *
+     * @param owner nome del proprietario
+     * @return (index) un intero in [0, shards)
+     */
+    public int shardOf(String owner) {
+        int hash = owner.hashCode();
+        // Si mescolano i bit alti, come in HashMap, per non dipendere solo da quelli bassi
+        return Math.floorMod(hash ^ (hash >>> 16), shards.size());
+    }
+
+    /**
+     * Termina gli executor degli shard dopo aver eseguito le operazioni già inviate
+     */
+    @Override
+    public void close() {
+        for (Shard<E> shard : shards)
+            shard.executor.shutdown();
+        try {
+            for (Shard<E> shard : shards)
+                shard.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Shard<E> shard(String owner) {
+        return shards.get(this.shardOf(owner));
+    }
+
+    /**
+     * Crea la board di un nuovo proprietario
+     */
+    @FunctionalInterface
+    public interface BoardFactory<E extends Data> {
+        Board<E> create(String owner, String password) throws EmptyFieldException;
+    }
+
+    /**
+     * Operazione da eseguire su una board nel thread del suo shard
+     */
+    @FunctionalInterface
+    public interface BoardTask<E extends Data, R> {
+        R apply(Board<E> board) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface ShardTask<E extends Data, R> {
+        R apply(Map<String, Board<E>> boards) throws Exception;
+    }
+
+    // Partizione del registro: le sue board sono toccate solo dal thread del suo executor
+    private static final class Shard<E extends Data> {
+        final Map<String, Board<E>> boards = new HashMap<>();
+        final ExecutorService executor;
+
+        Shard(String name) {
+            this.executor = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        <R> CompletableFuture<R> run(ShardTask<E, R> task) {
+            CompletableFuture<R> result = new CompletableFuture<>();
+            try {
+                executor.execute(() -> {
+                    try {
+                        result.complete(task.apply(boards));
+                    } catch (Throwable e) {
+                        result.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(e);
+            }
+            return result;
+        }
+    }
+}
@@ -4,6 +4,8 @@ import app.exception.EmptyFieldException;
 import app.exception.ItemNotFoundException;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public class Category<E extends Data> {
 
@@ -14,32 +16,68 @@ public class Category<E extends Data> {
      *      la lista degli amici che possono visualizzare i contenuti della stessa
      *      ed un ulteriore lista che contiene proprio i post condivisi dall'utente.
      *      Questa scelta permette di separare i post in base alla categoria a cui sono associati.
+     *      Oltre ai getter che restituiscono copie, la classe offre delle viste in sola lettura
+     *      (feedView, friendsView) ed alcuni accessori interni (containsPost, forEachPost)
+     *      che non allocano nuove strutture, da usare nei percorsi più frequenti della board.
+     *      Gli amici sono tenuti come identificativi della tabella dei simboli della board
+     *      (vedi SymbolSet.java), per cui il controllo checkFriend non confronta stringhe;
+     *      la board che controlla lo stesso amico in più categorie risolve il nome una volta sola
+     *      e usa checkFriend(int).
+     *      I post del feed sono anche indicizzati per parola (vedi ContentIndex.java),
+     *      così che la ricerca nella categoria legga solo le posting list delle parole cercate.
      *
      *   Abstraction function:
-     *      <friends, feed>, dove:
-     *          friends (set)   è un insieme che contiene al suo interno gli amici che sono autorizzati
-     *                              a visualizzare i contenuti associati alla categoria. Essendo un insieme,
-     *                              gli amici sono tutti distinti tra loro
-     *          feed (list)     è una lista che tiene in memoria tutti i post condivisi dall'utente che sono
-     *                              associati alla specifica categoria. Essendo una lista, sono ammessi post
+     *      <friends, feed, index>, dove:
+     *          friends (set)   è un insieme che contiene al suo interno gli identificativi degli amici
+     *                              che sono autorizzati a visualizzare i contenuti associati alla categoria.
+     *                              Essendo un insieme, gli amici sono tutti distinti tra loro
+     *          feed (feed)     è la sequenza (vedi Feed.java) che tiene in memoria tutti i post condivisi
+     *                              dall'utente che sono associati alla specifica categoria. Sono ammessi post
      *                              duplicati.
+     *          index (index)   è l'indice invertito sul contenuto dei post del feed
      *
      *   Representation invariant:
-     *      friends != null && feed != null
+     *      friends != null && feed != null && feedView != null && friendsView != null
+     *      && index != null && for each(post) in feed : #(post in feed) == copies(post in index)
      *      && for each(friend) in friends: name(friend) != "" && unique
      *      && for each(post) in feed: post.category == name(this)
      *
      */
 
-    private Set<String> friends;
-    private List<E> feed;
+    private SymbolSet friends;
+    private Feed<E> feed;
+    private ContentIndex<E> index;
+    private final Collection<E> feedView;
+    private final Set<String> friendsView;
 
     /**
-     * Costrutture della classe Category
+     * Costrutture della classe Category, con una propria tabella dei simboli
      */
     public Category() {
-        this.friends = new TreeSet<>();
-        this.feed = new ArrayList<>();
+        this(new Symbols());
+    }
+
+    /**
+     * Costrutture della classe Category, che condivide la tabella dei simboli della board
+     *
+     * @param symbols la tabella dei simboli della board
+     */
+    Category(Symbols symbols) {
+        this.friends = new SymbolSet(symbols);
+        this.feed = new Feed<>();
+        this.index = new ContentIndex<>();
+        this.friendsView = this.friends.view();
+        this.feedView = new AbstractCollection<>() {
+            @Override
+            public Iterator<E> iterator() {
+                return feed.iterator();
+            }
+
+            @Override
+            public int size() {
+                return feed.size();
+            }
+        };
     }
 
     /**
@@ -48,7 +86,7 @@ public class Category<E extends Data> {
      * @return (friends) una copia del treeset che contiene gli amici
      */
     public Set<String> getFriends() {
-        return new TreeSet<>(friends);
+        return new TreeSet<>(friendsView);
     }
 
     /**
@@ -57,7 +95,107 @@ public class Category<E extends Data> {
      * @return (feed) una copia della lista che contiene i post condivisi dall'utente
      */
     public List<E> getFeed() {
-        return new ArrayList<>(feed);
+        return new ArrayList<>(feedView);
+    }
+
+    /**
+     * Vista in sola lettura dell'insieme degli amici, che riflette le modifiche successive
+     *
+     * @return (friends) una vista non modificabile dell'insieme degli amici, in ordine di identificativo
+     */
+    public Set<String> friendsView() {
+        return friendsView;
+    }
+
+    /**
+     * Vista in sola lettura dei post condivisi, che riflette le modifiche successive
+     *
+     * @return (feed) una vista non modificabile dei post condivisi dall'utente
+     */
+    public Collection<E> feedView() {
+        return feedView;
+    }
+
+    /**
+     * Iteratore (senza remove) su una fotografia dei post condivisi, creata in O(1),
+     * che non risente delle modifiche successive della categoria (vedi Feed.java)
+     *
+     * @return (iterator)
+     */
+    public Feed<E>.Cursor feedSnapshot() {
+        return this.feed.snapshot();
+    }
+
+    /**
+     * Iteratore (senza remove) su una fotografia dei post condivisi, creata in O(1),
+     * dal più recente al meno recente (vedi Feed.reverseSnapshot)
+     *
+     * @return (cursor) iteratore che permette di leggere il numero di sequenza di ogni post
+     */
+    public Feed<E>.Cursor feedReverseSnapshot() {
+        return this.feed.reverseSnapshot();
+    }
+
+    /**
+     * Iteratore (senza remove) sui post condivisi con numero di sequenza maggiore di afterSeq
+     *
+     * @param afterSeq numero di sequenza dopo cui iniziare, -1 per iniziare dal primo post
+     * @return (cursor) iteratore che permette di leggere il numero di sequenza di ogni post
+     */
+    public Feed<E>.Cursor feedFrom(long afterSeq) {
+        return this.feed.iterator(afterSeq);
+    }
+
+    /**
+     * Iteratore (senza remove) sui post condivisi con numero di sequenza minore di beforeSeq,
+     * dal più recente al meno recente (vedi Feed.before)
+     *
+     * @param beforeSeq numero di sequenza prima di cui iniziare, Long.MAX_VALUE per iniziare dall'ultimo post
+     * @return (cursor) iteratore che permette di leggere il numero di sequenza di ogni post
+     */
+    public Feed<E>.Cursor feedBefore(long beforeSeq) {
+        return this.feed.before(beforeSeq);
+    }
+
+    /**
+     * Pagina dei post condivisi (vedi Feed.page)
+     *
+     * @param afterSeq numero di sequenza dopo cui iniziare, -1 per la prima pagina
+     * @param limit    numero massimo di post della pagina
+     * @param filter   condizione che i post devono rispettare
+     * @param tag      tipo di interrogazione da codificare nel cursore
+     * @return (page)
+     */
+    public Page<E> feedPage(long afterSeq, int limit, Predicate<? super E> filter, String tag) {
+        return this.feed.page(afterSeq, limit, filter, tag);
+    }
+
+    /**
+     * Spliterator su una fotografia dei post condivisi (vedi Feed.spliterator)
+     *
+     * @return (spliterator)
+     */
+    public Spliterator<E> feedSpliterator() {
+        return this.feed.spliterator();
+    }
+
+    /**
+     * Controlla se un post è presente nel feed della categoria, senza copiarlo
+     *
+     * @param post il post da cercare
+     * @return (bool) true se il post è presente nel feed
+     */
+    public boolean containsPost(E post) {
+        return this.feed.contains(post);
+    }
+
+    /**
+     * Esegue un'azione su ogni post del feed, in ordine di inserimento, senza copiarlo
+     *
+     * @param action l'azione da eseguire
+     */
+    public void forEachPost(Consumer<? super E> action) {
+        this.feed.forEach(action);
     }
 
     /**
@@ -86,11 +224,79 @@ public class Category<E extends Data> {
      * Aggiunge un post al feed dell'utente
      *
      * @param post post da aggiungere
-     * @modifies this.feed
+     * @modifies this.feed, this.index
      * @effects post(this.feed) = pre(this.feed) U {post}
      */
     public void addPost(E post) {
         this.feed.add(post);
+        this.index.add(post);
+    }
+
+    /**
+     * Aggiunge un post al feed dell'utente con un numero di sequenza scelto dalla board,
+     * così che i feed di più categorie si possano fondere in ordine di pubblicazione
+     *
+     * @param post post da aggiungere
+     * @param seq  numero di sequenza, maggiore di quelli già presenti nel feed
+     * @modifies this.feed, this.index
+     * @effects post(this.feed) = pre(this.feed) U {post}
+     */
+    public void addPost(E post, long seq) {
+        this.feed.add(post, seq);
+        this.index.add(post);
+    }
+
+    /**
+     * Aggiunge in blocco dei posts al feed dell'utente, con numeri di sequenza consecutivi
+     * a partire da firstSeq
+     *
+     * @param posts    i posts da aggiungere
+     * @param firstSeq numero di sequenza del primo post, maggiore di quelli già presenti nel feed
+     * @modifies this.feed, this.index
+     * @effects post(this.feed) = pre(this.feed) U posts
+     */
+    public void addPosts(Collection<? extends E> posts, long firstSeq) {
+        this.feed.ensureCapacity(posts.size());
+        for (E post : posts) {
+            this.feed.add(post, firstSeq++);
+            this.index.add(post);
+        }
+    }
+
+    /**
+     * Iteratore (senza remove) sugli ultimi n post condivisi (vedi Feed.tail)
+     *
+     * @param n numero massimo di post
+     * @return (cursor) iteratore che permette di leggere il numero di sequenza di ogni post
+     */
+    public Feed<E>.Cursor feedTail(int n) {
+        return this.feed.tail(n);
+    }
+
+    /**
+     * Aggiunge in blocco dei posts al feed dell'utente, nell'ordine della collezione
+     *
+     * @param posts i posts da aggiungere
+     * @modifies this.feed, this.index
+     * @effects post(this.feed) = pre(this.feed) U posts
+     */
+    public void addPosts(Collection<? extends E> posts) {
+        this.feed.ensureCapacity(posts.size());
+        for (E post : posts) {
+            this.feed.add(post);
+            this.index.add(post);
+        }
+    }
+
+    /**
+     * Aggiunge ad una ricerca i post della categoria che contengono le sue parole (vedi ContentIndex)
+     *
+     * @param query  la ricerca
+     * @param filter i post che possono comparire nei risultati
+     * @modifies query
+     */
+    public void search(ContentIndex.Query<E> query, Predicate<? super E> filter) {
+        this.index.collect(query, filter);
     }
 
     /**
@@ -104,7 +310,7 @@ public class Category<E extends Data> {
             throws ItemNotFoundException {
 
         if (this.feed.contains(post))
-            return (E) this.feed.get(this.feed.indexOf(post)).clone();
+            return (E) this.feed.get(post).clone();
         else
             throw new ItemNotFoundException();
     }
@@ -115,14 +321,17 @@ public class Category<E extends Data> {
      * @param post il post da rimuovere
      * @return (post) una copia del post rimosso, altrimenti (null) se il post non esiste
      * @throws ItemNotFoundException se il post da rimuovere non esiste nel feed
-     * @modifies this.feed
+     * @modifies this.feed, this.index
      * @effects post(this.feed) = pre(this.feed) \ {post}
      */
     public E removePost(E post)
             throws ItemNotFoundException {
 
         if (!this.feed.contains(post)) throw new ItemNotFoundException();
-        return this.feed.remove(post) ? (E) post.clone() : null;
+        if (!this.feed.remove(post))
+            return null;
+        this.index.remove(post);
+        return (E) post.clone();
     }
 
     /**
@@ -141,7 +350,7 @@ public class Category<E extends Data> {
 
         if (!this.feed.contains(post))
             throw new ItemNotFoundException();
-        this.feed.get(this.feed.indexOf(post)).addLike(friend);
+        this.feed.get(post).addLike(friend);
     }
 
     /**
@@ -158,4 +367,14 @@ public class Category<E extends Data> {
             throw new EmptyFieldException();
         return this.friends.contains(friend);
     }
+
+    /**
+     * Controlla se un certo amico, già risolto nella tabella dei simboli, è presente all'interno della categoria
+     *
+     * @param friend l'identificativo dell'amico (vedi Symbols.lookup), -1 se il nome non è registrato
+     * @return (bool) ritorna true o false in base a se l'amico è contenuto nella lista oppure no
+     */
+    boolean checkFriend(int friend) {
+        return this.friends.contains(friend);
+    }
 }
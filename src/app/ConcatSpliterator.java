@@ -0,0 +1,86 @@
+package app;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+final class ConcatSpliterator<E> implements Spliterator<E> {
+
+    /*
+     *   Overview:
+     *      Spliterator che concatena, nell'ordine della lista, gli spliterator di più feed
+     *      (ad esempio quelli delle singole categorie). La divisione separa a metà la lista
+     *      degli spliterator; quando ne resta uno solo, la divisione è delegata a quest'ultimo.
+     *      Se tutte le parti hanno dimensione esatta anche sui sottointervalli (SUBSIZED),
+     *      lo stesso vale per la concatenazione.
+     *
+     *   Abstraction function:
+     *      <parts, from, bound>, dove:
+     *          parts (list)    sono gli spliterator da concatenare
+     *          from (int)      è l'indice della parte corrente
+     *          bound (int)     è l'indice successivo all'ultima parte di competenza
+     *
+     *   Representation invariant:
+     *      parts != null && 0 <= from <= bound <= parts.size
+     *      && for each(i) in [from, bound) : parts[i] != null
+     *
+     */
+
+    private final List<Spliterator<E>> parts;
+    private final int bound;
+    private final int characteristics;
+    private int from;
+
+    ConcatSpliterator(List<Spliterator<E>> parts) {
+        this(parts, 0, parts.size());
+    }
+
+    private ConcatSpliterator(List<Spliterator<E>> parts, int from, int bound) {
+        this.parts = parts;
+        this.from = from;
+        this.bound = bound;
+        int characteristics = ORDERED | NONNULL | IMMUTABLE | SIZED | SUBSIZED;
+        for (int i = from; i < bound; i++)
+            characteristics &= parts.get(i).characteristics();
+        this.characteristics = characteristics;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super E> action) {
+        for (; from < bound; from++)
+            if (parts.get(from).tryAdvance(action))
+                return true;
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super E> action) {
+        for (; from < bound; from++)
+            parts.get(from).forEachRemaining(action);
+    }
+
+    @Override
+    public Spliterator<E> trySplit() {
+        if (bound - from == 1)
+            return parts.get(from).trySplit();
+        int mid = (from + bound) >>> 1;
+        if (mid <= from)
+            return null;
+        Spliterator<E> prefix = new ConcatSpliterator<>(parts, from, mid);
+        from = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        long size = 0;
+        for (int i = from; i < bound; i++)
+            size += parts.get(i).estimateSize();
+        return size;
+    }
+
+    @Override
+    public int characteristics() {
+        return characteristics;
+    }
+}
@@ -0,0 +1,275 @@
+package app;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+public final class ContentArena {
+
+    /*
+     *   Overview:
+     *      Arena fuori dallo heap in cui vengono salvati i contenuti dei posts (vedi OffHeapData.java).
+     *      Ogni stringa è codificata in UTF-8 e copiata, preceduta dalla capacità del posto
+     *      e dalla propria lunghezza, in una serie di blocchi di memoria diretta
+     *      (ByteBuffer.allocateDirect), che il garbage collector non deve copiare né visitare.
+     *      In cambio della stringa si restituisce un handle (long) che ne indica blocco e posizione;
+     *      la stringa viene ricostruita solo quando richiesta, mentre compare la confronta
+     *      con un'altra leggendone direttamente i byte, senza allocazioni.
+     *      Lo spazio di un contenuto che non serve più viene restituito con free e finisce
+     *      in una lista di posti liberi, divisa per capacità: store riusa il posto più piccolo
+     *      che contiene la nuova stringa, se non ne spreca più della metà, ed altrimenti
+     *      accoda la stringa all'ultimo blocco. Tutti i blocchi sono liberati quando l'arena
+     *      non è più raggiungibile.
+     *      La scrittura è sincronizzata, la lettura è senza lock: i blocchi sono pubblicati
+     *      tramite un array volatile. Un posto liberato può essere riscritto mentre qualcuno
+     *      lo legge: chi libera un contenuto deve garantire che nessuno usi più il risultato
+     *      di quella lettura (vedi OffHeapData.release), e la lettura stessa non fallisce.
+     *
+     *   Abstraction function:
+     *      <chunks, count, position, free, freeBytes>, dove:
+     *          chunks (array)  sono i blocchi di memoria diretta, di cui i primi count in uso
+     *          position (int)  è la prima posizione libera dell'ultimo blocco
+     *          free (map)      associa ad ogni capacità gli handle dei posti liberi di quella capacità
+     *          freeBytes (long) è la somma delle capacità dei posti liberi
+     *      handle(chunk, offset) = chunk << 32 | offset, dove in chunks[chunk] a partire da offset
+     *          si trovano la capacità del posto (int), la lunghezza (int) ed i byte UTF-8 della stringa
+     *
+     *   Representation invariant:
+     *      chunks != null && 0 < count <= chunks.length
+     *      && 0 <= position <= chunks[count - 1].capacity
+     *      && free != null && for each(capacity, handles) in free : handles != {}
+     *      && freeBytes = sum(capacity * handles.size) per (capacity, handles) in free
+     *
+     */
+
+    public static final int DEFAULT_CHUNK_BYTES = 1 << 20;
+
+    // Capacità del posto e lunghezza della stringa
+    private static final int HEADER = 2 * Integer.BYTES;
+
+    private final int chunkBytes;
+    private volatile ByteBuffer[] chunks;
+    private int count;
+    private int position;
+    private final TreeMap<Integer, ArrayDeque<Long>> free;
+    private long freeBytes;
+
+    /**
+     * Costruttore della classe ContentArena, con blocchi da DEFAULT_CHUNK_BYTES byte
+     */
+    public ContentArena() {
+        this(DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * Costruttore della classe ContentArena
+     *
+     * @param chunkBytes dimensione di un blocco; i contenuti più grandi hanno un blocco dedicato
+     * @throws IllegalArgumentException se chunkBytes non è positivo
+     */
+    public ContentArena(int chunkBytes) {
+        if (chunkBytes <= 0)
+            throw new IllegalArgumentException();
+        this.chunkBytes = chunkBytes;
+        this.chunks = new ByteBuffer[]{ByteBuffer.allocateDirect(chunkBytes)};
+        this.count = 1;
+        this.position = 0;
+        this.free = new TreeMap<>();
+        this.freeBytes = 0;
+    }
+
+    /**
+     * Copia una stringa nell'arena, riusando se possibile lo spazio di un contenuto liberato
+     *
+     * @param string la stringa da salvare
+     * @return (handle) l'handle con cui rileggere la stringa
+     * @modifies this
+     */
+    public synchronized long store(String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        int size = HEADER + bytes.length;
+        long handle = this.reuse(size);
+        if (handle < 0)
+            handle = this.append(size);
+        ByteBuffer chunk = chunks[(int) (handle >>> 32)];
+        int offset = (int) handle;
+        chunk.putInt(offset + Integer.BYTES, bytes.length);
+        chunk.put(offset + HEADER, bytes);
+        return handle;
+    }
+
+    /**
+     * Restituisce all'arena lo spazio di una stringa, che potrà essere riusato da store
+     *
+     * @param handle l'handle restituito da store, non ancora liberato
+     * @modifies this
+     * @effects la stringa di handle non può più essere letta
+     */
+    public synchronized void free(long handle) {
+        int capacity = chunks[(int) (handle >>> 32)].getInt((int) handle);
+        this.free.computeIfAbsent(capacity, c -> new ArrayDeque<>()).push(handle);
+        this.freeBytes += capacity;
+    }
+
+    /**
+     * Ricostruisce una stringa salvata nell'arena
+     *
+     * @param handle l'handle restituito da store
+     * @return (string) una nuova stringa uguale a quella salvata
+     */
+    public String load(long handle) {
+        ByteBuffer chunk = chunks[(int) (handle >>> 32)];
+        int start = (int) handle + HEADER;
+        byte[] bytes = new byte[end(chunk, handle) - start];
+        chunk.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Confronta una stringa salvata nell'arena con un'altra stringa, senza ricostruirla
+     *
+     * @param handle l'handle restituito da store
+     * @param string la stringa con cui confrontare
+     * @return (result) un intero con lo stesso segno di load(handle).compareTo(string)
+     */
+    public int compare(long handle, String string) {
+        ByteBuffer chunk = chunks[(int) (handle >>> 32)];
+        int at = (int) handle + HEADER;
+        int end = end(chunk, handle);
+        int low = 0;
+        for (int i = 0; ; i++) {
+            int unit;
+            if (low != 0) {
+                unit = low;
+                low = 0;
+            } else if (at < end) {
+                int width = width(chunk, at, end);
+                int codePoint = codePoint(chunk, at, width);
+                at += width;
+                unit = unit(codePoint);
+                if (unit != codePoint)
+                    low = Character.lowSurrogate(codePoint);
+            } else
+                return i < string.length() ? -1 : 0;
+            if (i == string.length())
+                return 1;
+            if (unit != string.charAt(i))
+                return unit - string.charAt(i);
+        }
+    }
+
+    /**
+     * Confronta due stringhe salvate in un'arena, senza ricostruirle
+     *
+     * @param handle      l'handle restituito da store
+     * @param other       l'arena che contiene l'altra stringa, anche this
+     * @param otherHandle l'handle dell'altra stringa, restituito da other.store
+     * @return (result) un intero con lo stesso segno di load(handle).compareTo(other.load(otherHandle))
+     */
+    public int compare(long handle, ContentArena other, long otherHandle) {
+        ByteBuffer chunk = chunks[(int) (handle >>> 32)];
+        ByteBuffer otherChunk = other.chunks[(int) (otherHandle >>> 32)];
+        int at = (int) handle + HEADER;
+        int otherAt = (int) otherHandle + HEADER;
+        int end = end(chunk, handle);
+        int otherEnd = end(otherChunk, otherHandle);
+        while (at < end && otherAt < otherEnd) {
+            int width = width(chunk, at, end);
+            int otherWidth = width(otherChunk, otherAt, otherEnd);
+            int codePoint = codePoint(chunk, at, width);
+            int otherCodePoint = codePoint(otherChunk, otherAt, otherWidth);
+            if (codePoint != otherCodePoint) {
+                // String.compareTo confronta le unità UTF-16: contano i surrogati, non i code point
+                int unit = unit(codePoint);
+                int otherUnit = unit(otherCodePoint);
+                return unit != otherUnit ? unit - otherUnit : codePoint - otherCodePoint;
+            }
+            at += width;
+            otherAt += otherWidth;
+        }
+        return Boolean.compare(at < end, otherAt < otherEnd);
+    }
+
+    /**
+     * Numero di byte fuori dallo heap riservati dall'arena
+     *
+     * @return (bytes) somma delle capacità dei blocchi
+     */
+    public synchronized long reservedBytes() {
+        long bytes = 0;
+        for (int i = 0; i < count; i++)
+            bytes += chunks[i].capacity();
+        return bytes;
+    }
+
+    /**
+     * Numero di byte liberati con free e non ancora riusati
+     *
+     * @return (bytes) somma delle capacità dei posti liberi
+     */
+    public synchronized long freeBytes() {
+        return freeBytes;
+    }
+
+    // Prende dalla lista dei posti liberi il più piccolo che contiene size byte, oppure restituisce -1
+    private long reuse(int size) {
+        Map.Entry<Integer, ArrayDeque<Long>> fit = this.free.ceilingEntry(size);
+        if (fit == null || fit.getKey() - size > size)
+            return -1;
+        long handle = fit.getValue().pop();
+        if (fit.getValue().isEmpty())
+            this.free.remove(fit.getKey());
+        this.freeBytes -= fit.getKey();
+        return handle;
+    }
+
+    // Riserva un nuovo posto da size byte in fondo all'ultimo blocco, o in un nuovo blocco
+    private long append(int size) {
+        ByteBuffer chunk = chunks[count - 1];
+        if (chunk.capacity() - position < size) {
+            chunk = ByteBuffer.allocateDirect(Math.max(chunkBytes, size));
+            ByteBuffer[] grown = chunks;
+            if (count == grown.length)
+                grown = Arrays.copyOf(grown, count * 2);
+            grown[count++] = chunk;
+            position = 0;
+            // Il blocco va pubblicato prima di restituire l'handle, che può essere letto senza lock
+            chunks = grown;
+        }
+        int offset = position;
+        chunk.putInt(offset, size);
+        position += size;
+        return (long) (count - 1) << 32 | offset;
+    }
+
+    // Fine dei byte della stringa, limitata alla capacità del posto, che non cambia mai:
+    // la lunghezza invece può essere riscritta durante la lettura, se il posto viene riusato
+    private static int end(ByteBuffer chunk, long handle) {
+        int offset = (int) handle;
+        int length = chunk.getInt(offset + Integer.BYTES);
+        return offset + HEADER + Math.max(0, Math.min(length, chunk.getInt(offset) - HEADER));
+    }
+
+    // Numero di byte della sequenza UTF-8 che inizia in at, senza superare end
+    private static int width(ByteBuffer chunk, int at, int end) {
+        int lead = chunk.get(at) & 0xFF;
+        int width = lead < 0x80 ? 1 : lead < 0xE0 ? 2 : lead < 0xF0 ? 3 : 4;
+        return Math.min(width, end - at);
+    }
+
+    // Decodifica il code point di width byte che inizia in at
+    private static int codePoint(ByteBuffer chunk, int at, int width) {
+        int codePoint = chunk.get(at) & (width == 1 ? 0xFF : 0xFF >> (width + 1));
+        for (int i = 1; i < width; i++)
+            codePoint = codePoint << 6 | (chunk.get(at + i) & 0x3F);
+        return codePoint;
+    }
+
+    // Prima unità UTF-16 di un code point: lui stesso, o il suo surrogato alto
+    private static int unit(int codePoint) {
+        return codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT ? codePoint : Character.highSurrogate(codePoint);
+    }
+}
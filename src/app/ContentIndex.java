@@ -0,0 +1,315 @@
+package app;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+public class ContentIndex<E extends Data> {
+
+    /*
+     *   Overview:
+     *      Indice invertito sul contenuto dei posts, per cercare i posts che contengono
+     *      delle parole senza leggere il contenuto di ogni post. Il contenuto viene diviso
+     *      in termini (tokenize: sequenze di lettere e cifre, in minuscolo) ed ogni termine
+     *      è associato alla lista dei posts che lo contengono (posting list).
+     *      Ogni post riceve un identificativo intero crescente; una posting list è un array
+     *      di byte in cui, per ogni post, sono scritti la differenza tra il suo identificativo
+     *      e quello precedente (delta) ed il numero di occorrenze del termine, entrambi
+     *      come varint (7 bit per byte, l'ottavo indica se il numero continua): per i termini
+     *      frequenti le differenze sono piccole ed occupano quasi sempre un solo byte.
+     *      Un post inserito più volte è indicizzato una sola volta e conta le proprie copie.
+     *      La rimozione è pigra: l'identificativo del post viene solo segnato come rimosso,
+     *      e le posting list dei suoi termini, ottenuti ritokenizzando il contenuto che non cambia,
+     *      ne contano una voce morta in più, così che le statistiche delle ricerche restino esatte.
+     *      Gli identificativi dei posts rimossi non vengono riusati e, quando sono più di quelli
+     *      in uso, l'indice viene ricostruito da capo riscrivendo tutte le posting list.
+     *      Una ricerca (vedi Query) legge solo le posting list dei suoi termini, per cui costa
+     *      quanto la loro lunghezza (voci morte comprese), più l'ordinamento dei risultati.
+     *
+     *   Abstraction function:
+     *      <postings, documents, posts, dead>, dove:
+     *          postings (map)      associa ad ogni termine la sua posting list
+     *                                  <bytes, length, count, dead, last>
+     *          documents (map)     associa ad ogni post indicizzato <id, copies>
+     *          posts (list)        associa ad ogni identificativo il suo post, null se rimosso
+     *          dead (int)          è il numero di identificativi rimossi
+     *
+     *   Representation invariant:
+     *      postings != null && documents != null && posts != null
+     *      && for each(term, list) in postings : list.count > list.dead
+     *          && gli identificativi di list sono crescenti e list.last è l'ultimo
+     *          && list.dead == #{ id in list | posts[id] == null }
+     *      && for each(post, document) in documents : posts[document.id] == post && document.copies > 0
+     *      && dead == #(null in posts)
+     *      && for each(id, post) in posts : post != null =>
+     *          for each(term) in tokenize(post.content) : id in postings[term]
+     *
+     */
+
+    private static final int COMPACT_THRESHOLD = 64;
+
+    private Map<String, Postings> postings;
+    private Map<E, Document> documents;
+    private List<E> posts;
+    private int dead;
+
+    /**
+     * Costruttore della classe ContentIndex
+     */
+    public ContentIndex() {
+        this.postings = new HashMap<>();
+        this.documents = new HashMap<>();
+        this.posts = new ArrayList<>();
+        this.dead = 0;
+    }
+
+    /**
+     * Divide un testo in termini: le sequenze massimali di lettere e cifre, in minuscolo
+     *
+     * @param text il testo da dividere
+     * @return (terms) i termini del testo nell'ordine in cui compaiono, con le ripetizioni
+     */
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); ) {
+            int codePoint = i < text.length() ? text.codePointAt(i) : ' ';
+            if (Character.isLetterOrDigit(codePoint)) {
+                if (start < 0)
+                    start = i;
+            } else if (start >= 0) {
+                terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+            i += i < text.length() ? Character.charCount(codePoint) : 1;
+        }
+        return terms;
+    }
+
+    /**
+     * Numero di posts distinti presenti nell'indice
+     *
+     * @return (size)
+     */
+    public int size() {
+        return this.documents.size();
+    }
+
+    /**
+     * Aggiunge un post all'indice, se è già presente ne incrementa le copie
+     *
+     * @param post il post da aggiungere
+     * @modifies this
+     * @effects post(this) = pre(this) U {post}
+     */
+    public void add(E post) {
+        Document document = this.documents.get(post);
+        if (document != null) {
+            document.copies++;
+            return;
+        }
+        int id = this.posts.size();
+        this.posts.add(post);
+        this.documents.put(post, new Document(id));
+        for (Map.Entry<String, Integer> term : frequencies(post).entrySet())
+            this.postings.computeIfAbsent(term.getKey(), t -> new Postings()).append(id, term.getValue());
+    }
+
+    /**
+     * Rimuove una copia del post dall'indice; l'ultima copia segna il post come rimosso
+     * e lo conta come voce morta nelle posting list dei suoi termini, senza riscriverle
+     *
+     * @param post il post da rimuovere
+     * @return (bool) true se il post era presente
+     * @modifies this
+     * @effects post(this) = pre(this) \ {post}
+     */
+    public boolean remove(E post) {
+        Document document = this.documents.get(post);
+        if (document == null)
+            return false;
+        if (--document.copies > 0)
+            return true;
+        this.documents.remove(post);
+        for (String term : frequencies(post).keySet()) {
+            Postings list = this.postings.get(term);
+            if (++list.dead == list.count)
+                this.postings.remove(term);
+        }
+        this.posts.set(document.id, null);
+        this.dead++;
+        if (this.dead > COMPACT_THRESHOLD && this.dead > this.documents.size())
+            this.compact();
+        return true;
+    }
+
+    /**
+     * Aggiunge ad una ricerca i posts dell'indice che contengono almeno uno dei suoi termini
+     * e soddisfano filter, insieme alle statistiche dei termini nell'indice
+     *
+     * @param query  la ricerca
+     * @param filter i posts che possono comparire nei risultati
+     * @modifies query
+     */
+    public void collect(Query<E> query, Predicate<? super E> filter) {
+        query.documents += this.documents.size();
+        for (int i = 0; i < query.terms.length; i++) {
+            Postings list = this.postings.get(query.terms[i]);
+            if (list == null)
+                continue;
+            query.frequencies[i] += list.count - list.dead;
+            int position = 0;
+            int id = -1;
+            while (position < list.length) {
+                long delta = readVarint(list.bytes, position);
+                position = (int) (delta >>> 32);
+                long occurrences = readVarint(list.bytes, position);
+                position = (int) (occurrences >>> 32);
+                id += (int) delta;
+                E post = this.posts.get(id);
+                if (post != null && filter.test(post))
+                    query.hits.computeIfAbsent(post, p -> new int[query.terms.length])[i] += (int) occurrences;
+            }
+        }
+    }
+
+    // Riassegna gli identificativi ai soli posts presenti, riscrivendo tutte le posting list
+    private void compact() {
+        List<E> live = new ArrayList<>(this.documents.size());
+        for (E post : this.posts)
+            if (post != null)
+                live.add(post);
+        Map<E, Document> previous = this.documents;
+        this.postings = new HashMap<>();
+        this.documents = new HashMap<>();
+        this.posts = new ArrayList<>(live.size());
+        this.dead = 0;
+        for (E post : live) {
+            this.add(post);
+            this.documents.get(post).copies = previous.get(post).copies;
+        }
+    }
+
+    // Numero di occorrenze di ogni termine nel contenuto del post
+    private static Map<String, Integer> frequencies(Data post) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : tokenize(post.getContent()))
+            frequencies.merge(term, 1, Integer::sum);
+        return frequencies;
+    }
+
+    /**
+     * Scrive un intero non negativo come varint
+     *
+     * @return (position) la posizione successiva all'ultimo byte scritto
+     */
+    private static int writeVarint(byte[] bytes, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * Legge un varint
+     *
+     * @return (result) la posizione successiva al varint nei 32 bit alti, il valore nei 32 bassi
+     */
+    private static long readVarint(byte[] bytes, int position) {
+        int value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = bytes[position++];
+            value |= (current & 0x7F) << shift;
+            shift += 7;
+        } while (current < 0);
+        return (long) position << 32 | (value & 0xFFFFFFFFL);
+    }
+
+    // Identificativo e numero di copie di un post indicizzato
+    private static final class Document {
+        final int id;
+        int copies;
+
+        Document(int id) {
+            this.id = id;
+            this.copies = 1;
+        }
+    }
+
+    // Posting list di un termine, codificata con delta e varint, con il numero di voci di posts rimossi
+    private static final class Postings {
+        // Un varint di un int occupa al più 5 byte
+        private static final int MAX_ENTRY_BYTES = 10;
+
+        byte[] bytes = new byte[8];
+        int length;
+        int count;
+        int dead;
+        int last = -1;
+
+        void append(int id, int occurrences) {
+            if (this.length + MAX_ENTRY_BYTES > this.bytes.length)
+                this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.length + MAX_ENTRY_BYTES));
+            this.length = writeVarint(this.bytes, this.length, id - this.last);
+            this.length = writeVarint(this.bytes, this.length, occurrences);
+            this.last = id;
+            this.count++;
+        }
+    }
+
+    /**
+     * Ricerca di alcune parole in uno o più indici (ad esempio quelli delle categorie
+     * visibili ad un amico). Gli indici aggiungono i posts trovati con collect,
+     * dopodiché ranked li ordina per rilevanza (tf-idf): ogni termine contribuisce
+     * con (1 + ln(occorrenze)) * ln(1 + posts / posts con il termine), per cui contano
+     * di più i termini rari e ripetuti. A parità di rilevanza vengono prima i posts più recenti
+     */
+    public static final class Query<E extends Data> {
+        private final String[] terms;
+        private final int[] frequencies;
+        private final Map<E, int[]> hits;
+        private int documents;
+
+        /**
+         * Costruttore della classe Query
+         *
+         * @param text le parole da cercare, divise in termini con tokenize
+         */
+        public Query(String text) {
+            this.terms = new LinkedHashSet<>(tokenize(text)).toArray(new String[0]);
+            this.frequencies = new int[this.terms.length];
+            this.hits = new HashMap<>();
+            this.documents = 0;
+        }
+
+        /**
+         * Posts trovati, ordinati per rilevanza
+         *
+         * @return (list) una nuova lista con i posts che contengono almeno un termine della ricerca
+         */
+        public List<E> ranked() {
+            double[] weights = new double[this.terms.length];
+            for (int i = 0; i < this.terms.length; i++)
+                weights[i] = Math.log(1 + this.documents / (double) Math.max(1, this.frequencies[i]));
+            List<Map.Entry<E, Double>> scored = new ArrayList<>(this.hits.size());
+            for (Map.Entry<E, int[]> hit : this.hits.entrySet()) {
+                double score = 0;
+                for (int i = 0; i < this.terms.length; i++)
+                    if (hit.getValue()[i] > 0)
+                        score += (1 + Math.log(hit.getValue()[i])) * weights[i];
+                scored.add(Map.entry(hit.getKey(), score));
+            }
+            scored.sort((a, b) -> {
+                int result = Double.compare(b.getValue(), a.getValue());
+                return result != 0 ? result : Long.compare(b.getKey().getTimestamp(), a.getKey().getTimestamp());
+            });
+            List<E> ranked = new ArrayList<>(scored.size());
+            for (Map.Entry<E, Double> entry : scored)
+                ranked.add(entry.getKey());
+            return ranked;
+        }
+    }
+}
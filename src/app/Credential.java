@@ -0,0 +1,112 @@
+package app;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+final class Credential {
+
+    /*
+     *   Overview:
+     *      Password salvata in forma di hash salato: PBKDF2 con HMAC-SHA256 ed un numero elevato
+     *      di iterazioni, per rendere costoso ogni tentativo di indovinarla. Il numero di iterazioni
+     *      è scelto alla creazione e conservato nella credenziale, così che cambiarlo (ad esempio
+     *      per test e benchmark, vedi Board.setPasswordIterations) non invalidi le credenziali
+     *      esistenti. La verifica ricalcola l'hash e lo confronta in tempo costante.
+     *      Per le password già verificate fornisce inoltre una chiave di cache economica
+     *      (SHA-256 della password con un segreto casuale, il pepper, diverso per ogni credenziale):
+     *      le chiavi calcolate per una credenziale non coincidono mai con quelle di un'altra,
+     *      per cui una cache di password verificate non sopravvive ad un cambio di password.
+     *
+     *   Abstraction function:
+     *      <salt, iterations, hash, pepper>, dove:
+     *          salt (bytes)        è il sale casuale usato per l'hash
+     *          iterations (int)    è il numero di iterazioni di PBKDF2
+     *          hash (bytes)        è PBKDF2(password, salt, iterations)
+     *          pepper (bytes)      è il segreto casuale usato per le chiavi di cache
+     *
+     *   Representation invariant:
+     *      salt.length == SALT_BYTES && iterations > 0
+     *      && hash.length == HASH_BITS / 8 && pepper.length == SALT_BYTES
+     *
+     */
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    // Numero di iterazioni raccomandato per PBKDF2 con HMAC-SHA256
+    static final int DEFAULT_ITERATIONS = 210_000;
+    private static final int HASH_BITS = 256;
+    private static final int SALT_BYTES = 16;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final byte[] salt;
+    private final int iterations;
+    private final byte[] hash;
+    private final byte[] pepper;
+
+    private Credential(byte[] salt, int iterations, byte[] hash, byte[] pepper) {
+        this.salt = salt;
+        this.iterations = iterations;
+        this.hash = hash;
+        this.pepper = pepper;
+    }
+
+    /**
+     * Crea la credenziale di una password, con sale e pepper nuovi
+     *
+     * @param password   la password
+     * @param iterations numero di iterazioni di PBKDF2, positivo
+     * @return (credential)
+     */
+    static Credential of(String password, int iterations) {
+        byte[] salt = random();
+        return new Credential(salt, iterations, hash(password, salt, iterations), random());
+    }
+
+    /**
+     * Verifica una password ricalcolandone l'hash (operazione lenta)
+     *
+     * @param password la password da verificare
+     * @return (bool) true se la password è quella della credenziale
+     */
+    boolean matches(String password) {
+        return MessageDigest.isEqual(this.hash, hash(password, this.salt, this.iterations));
+    }
+
+    /**
+     * Chiave di cache di una password per questa credenziale (operazione veloce)
+     *
+     * @param password la password
+     * @return (key) SHA-256(pepper || password)
+     */
+    ByteBuffer cacheKey(String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(this.pepper);
+            return ByteBuffer.wrap(digest.digest(password.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] hash(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static byte[] random() {
+        byte[] bytes = new byte[SALT_BYTES];
+        RANDOM.nextBytes(bytes);
+        return bytes;
+    }
+}
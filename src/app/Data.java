@@ -3,8 +3,12 @@ package app;
 import app.exception.EmptyFieldException;
 import app.exception.ItemNotFoundException;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Data implements Comparable<Data> {
 
@@ -15,27 +19,52 @@ public class Data implements Comparable<Data> {
      *      alcuni campi che permettono la personalizzazione del post, nonché una funzione
      *      (display) per visualizzare il contenuto in un formato pseudo-JSON ed una funziona
      *      che permette di aggiungere o rimouvere un like al post stesso.
+     *      I like possono essere inseriti da più thread contemporaneamente senza lock.
+     *      Chi mette like è rappresentato dal suo identificativo nella tabella dei simboli
+     *      globale LIKERS (vedi Symbols.java), condivisa da tutte le board perché un post
+     *      può sopravvivere alla board in cui è stato pubblicato, ed i like sono un array di int
+     *      immutabile pubblicato tramite un AtomicReference: il toggle costruisce il nuovo array
+     *      e lo installa con una compare-and-set, riprovando se un altro thread lo ha preceduto.
+     *      L'array contiene gli identificativi due volte, prima ordinati (per la ricerca binaria)
+     *      e poi nell'ordine di inserimento (per getLikes), per cui ogni like occupa 8 byte
+     *      ed il numero di like, letto dalla lunghezza dell'array, è sempre quello di un insieme
+     *      di like realmente esistito.
+     *      Il timestamp è espresso in microsecondi dall'epoca UNIX ed è letto da un orologio monotono
+     *      condiviso (now): due posts creati dalla stessa JVM hanno sempre timestamp distinti
+     *      e crescenti, anche se creati nello stesso istante o se l'orologio di sistema torna indietro.
      *
      *   Abstraction function:
      *      <author, content, category, timestamp, likes>, dove:
      *          author (string)     è il nome del proprietario della board, che pubblica il post
      *          content (string)    è il contenuto del post
      *          category (string)   è la categoria a cui il post è associato
-     *          timestamp (long)    è una rappresentazione in formato UNIX-like del momento in cui è stato creato il post
-     *          likes (list)        è una lista delle persone che hanno messo like al post
+     *          timestamp (long)    è il momento in cui è stato creato il post, in microsecondi dall'epoca UNIX
+     *          likes (array)       contiene gli identificativi in LIKERS delle persone che hanno messo
+     *                                  like al post: in [0, n) in ordine crescente, in [n, 2n)
+     *                                  nell'ordine di inserimento dei like, dove 2n è la sua lunghezza
      *
      *   Representation invariant:
      *      author != "" && content != "" && category != ""
-     *      && int(timestamp) && timestamp > 0 && timestmap < 2^31
-     *      && for each(friend) in likes : name(friend) != "" && unique
+     *      && timestamp > 0
+     *      && likes != null && likes.get().length % 2 == 0
+     *      && for each(i) in [1, n) : likes[i - 1] < likes[i]
+     *      && {likes[0, n)} == {likes[n, 2n)}
+     *      && for each(id) in likes : LIKERS.name(id) != ""
      *
      */
 
+    // Ultimo timestamp assegnato dall'orologio monotono
+    private static final AtomicLong clock = new AtomicLong();
+
     private final String author;
     private final String content;
     private final String category;
     private final long timestamp;
-    private List<String> likes;
+    // Tabella dei nomi di chi mette like, condivisa da tutti i posts
+    private static final Symbols LIKERS = new Symbols();
+    private static final int[] NO_LIKES = new int[0];
+
+    private AtomicReference<int[]> likes;
 
     /**
      * Costruttore della classe Data
@@ -48,14 +77,58 @@ public class Data implements Comparable<Data> {
     public Data(String author, String content, String category)
             throws EmptyFieldException {
 
+        this(author, content, category, now());
+    }
+
+    /**
+     * Orologio monotono con cui vengono creati i posts: legge l'ora di sistema in microsecondi
+     * e la porta ad un microsecondo dopo l'ultimo valore restituito se non è già maggiore
+     *
+     * @return (timestamp) un timestamp in microsecondi, maggiore di tutti quelli restituiti finora
+     */
+    public static long now() {
+        Instant instant = Instant.now();
+        long micros = instant.getEpochSecond() * 1_000_000L + instant.getNano() / 1_000L;
+        return clock.updateAndGet(last -> Math.max(last + 1, micros));
+    }
+
+    /**
+     * Costruttore della classe Data che ripristina un post con il suo timestamp originale,
+     * usato per ricostruire una board da un log o da uno snapshot
+     *
+     * @param author    è il nome del proprietario della board, che pubblica il post
+     * @param content   è il contenuto del post
+     * @param category  è il nome della categoria che si vuole associare al post
+     * @param timestamp è il momento in cui il post era stato creato
+     * @throws EmptyFieldException se almeno uno dei tre parametri stringa è vuoto
+     */
+    Data(String author, String content, String category, long timestamp)
+            throws EmptyFieldException {
+
         if (author.isBlank() || content.isBlank() || category.isBlank())
             throw new EmptyFieldException();
 
         this.author = author;
         this.content = content;
         this.category = category;
-        this.timestamp = System.currentTimeMillis() / 1000L;
-        this.likes = new ArrayList<>();
+        this.timestamp = timestamp;
+        this.likes = new AtomicReference<>(NO_LIKES);
+    }
+
+    /**
+     * Costruttore per le sottoclassi che salvano altrove author, content e category
+     * (vedi OffHeapData) e ne ridefiniscono i getter: i campi restano null
+     *
+     * @param likesOf   post di cui condividere i like, come nel costruttore di copia,
+     *                  oppure null per un post senza like
+     * @param timestamp è il momento in cui il post è stato creato
+     */
+    Data(Data likesOf, long timestamp) {
+        this.author = null;
+        this.content = null;
+        this.category = null;
+        this.timestamp = timestamp;
+        this.likes = likesOf == null ? new AtomicReference<>(NO_LIKES) : likesOf.likes;
     }
 
     /**
@@ -66,9 +139,9 @@ public class Data implements Comparable<Data> {
     public Data(Data data) {
         if (data == null)
             throw new NullPointerException();
-        this.author = data.author;
-        this.content = data.content;
-        this.category = data.category;
+        this.author = data.getAuthor();
+        this.content = data.getContent();
+        this.category = data.getCategory();
         this.timestamp = data.timestamp;
         this.likes = data.likes;
     }
@@ -101,7 +174,7 @@ public class Data implements Comparable<Data> {
     }
 
     /**
-     * Getter per il tempo di creazione del post in formato UNIX
+     * Getter per il tempo di creazione del post in microsecondi dall'epoca UNIX
      *
      * @return (timestamp)
      */
@@ -112,19 +185,35 @@ public class Data implements Comparable<Data> {
     /**
      * Getter per il numero di like del post
      *
-     * @return (likesCounter) usa la funzione .size() della lista di likes
+     * @return (likesCounter) letto dalla lunghezza dell'array dei like, senza lock
      */
     public int getLikesCounter() {
-        return likes.size();
+        return likes.get().length / 2;
     }
 
     /**
      * Getter per la lista dei like del post
      *
-     * @return (likes) ritorna una copia della lista di likes
+     * @return (likes) ritorna una lista con i likes, nell'ordine in cui sono stati inseriti
      */
     public List<String> getLikes() {
-        return new ArrayList<>(likes);
+        int[] ids = likes.get();
+        List<String> friends = new ArrayList<>(ids.length / 2);
+        for (int i = ids.length / 2; i < ids.length; i++)
+            friends.add(LIKERS.name(ids[i]));
+        return friends;
+    }
+
+    /**
+     * Verifica se un amico ha messo like al post
+     *
+     * @param friend nome dell'amico
+     * @return (bool) true se friend ha messo like al post
+     */
+    public boolean hasLike(String friend) {
+        int id = LIKERS.lookup(friend);
+        int[] ids = likes.get();
+        return id >= 0 && Arrays.binarySearch(ids, 0, ids.length / 2, id) >= 0;
     }
 
     /**
@@ -137,34 +226,59 @@ public class Data implements Comparable<Data> {
     }
 
     /**
-     * Aggiunge un like al post da parte dell'amico indicato, se non è già presente
+     * Aggiunge un like al post da parte dell'amico indicato, se non è già presente,
+     * altrimenti lo rimuove. Il toggle è atomico anche se invocato da più thread
      *
      * @param friend nome dell'amico che vuole mettere like
      * @throws EmptyFieldException se friend è una stringa vuota
      * @modifies this.likes
-     * @effects (post(this.likes) = pre(this.likes) U {friend}) || removeLike(friend)
+     * @effects (post(this.likes) = pre(this.likes) U {friend}) || post(this.likes) = pre(this.likes) \ {friend}
      */
     public void addLike(String friend)
             throws EmptyFieldException {
 
         if (friend.isBlank())
             throw new EmptyFieldException();
-        if (this.likes.contains(friend))
-            this.removeLike(friend);
-        else
-            this.likes.add(friend);
+        int id = LIKERS.intern(friend);
+        // Se un altro thread cambia i like nel frattempo, si riprova sul nuovo array
+        int[] current;
+        do {
+            current = this.likes.get();
+        } while (!this.likes.compareAndSet(current, toggle(current, id)));
     }
 
     /**
-     * Rimuove il like di friend se questo è presente
+     * Costruisce l'array dei like dopo il toggle di un identificativo
      * E' un metodo privato chiamato da addLike
      *
-     * @param friend il nome dell'amico
-     * @modifies this.likes
-     * @effects post(this.likes) = pre(this.likes) \ {friend}
+     * @param ids l'array dei like corrente, che non viene modificato
+     * @param id  l'identificativo di chi mette o toglie il like
+     * @return (toggled) il nuovo array dei like
      */
-    private void removeLike(String friend) {
-        this.likes.remove(friend);
+    private static int[] toggle(int[] ids, int id) {
+        int n = ids.length / 2;
+        int position = Arrays.binarySearch(ids, 0, n, id);
+        if (position < 0) {
+            // Inserimento: id nella parte ordinata ed in coda a quella in ordine di inserimento
+            int at = -position - 1;
+            int[] toggled = new int[ids.length + 2];
+            System.arraycopy(ids, 0, toggled, 0, at);
+            toggled[at] = id;
+            System.arraycopy(ids, at, toggled, at + 1, ids.length - at);
+            toggled[toggled.length - 1] = id;
+            return toggled;
+        }
+        if (n == 1)
+            return NO_LIKES;
+        // Rimozione: id esce da entrambe le parti
+        int[] toggled = new int[ids.length - 2];
+        System.arraycopy(ids, 0, toggled, 0, position);
+        System.arraycopy(ids, position + 1, toggled, position, n - position - 1);
+        int out = n - 1;
+        for (int i = n; i < ids.length; i++)
+            if (ids[i] != id)
+                toggled[out++] = ids[i];
+        return toggled;
     }
 
     /**
@@ -193,10 +307,46 @@ public class Data implements Comparable<Data> {
     public int compareTo(Data post) {
         int result = post.getLikesCounter() - this.getLikesCounter();
         if (result == 0)
-            return (post.getContent().compareTo(this.getContent()) < 0) ? 1 : -1;
+            return (post.compareContent(this) < 0) ? 1 : -1;
         return result;
     }
 
+    /**
+     * Confronta il contenuto del post con quello di un altro post, come getContent().compareTo.
+     * Le sottoclassi che ricostruiscono il contenuto ad ogni lettura (vedi OffHeapData)
+     * lo ridefiniscono per confrontare senza allocazioni
+     *
+     * @param post il post con cui confrontare
+     * @return (result) un intero con il segno di this.getContent().compareTo(post.getContent())
+     */
+    int compareContent(Data post) {
+        return -post.compareContent(this.getContent());
+    }
+
+    /**
+     * Confronta il contenuto del post con una stringa, come getContent().compareTo
+     *
+     * @param content la stringa con cui confrontare
+     * @return (result) un intero con il segno di this.getContent().compareTo(content)
+     */
+    int compareContent(String content) {
+        return this.getContent().compareTo(content);
+    }
+
+    /**
+     * Notifica al post che una board lo ha inserito: le board chiamano retain ad ogni inserimento
+     * e release ad ogni rimozione, anche quando lo stesso post è inserito più volte.
+     * Data non ne fa nulla; OffHeapData li conta per liberare il contenuto nell'arena
+     */
+    void retain() {
+    }
+
+    /**
+     * Notifica al post che una board lo ha rimosso (vedi retain)
+     */
+    void release() {
+    }
+
     /**
      * Permette di restituire una copia del dato quando richiesto
      *
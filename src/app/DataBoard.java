@@ -2,58 +2,173 @@ package app;
 
 import app.exception.*;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface DataBoard<E extends Data> {
 
     // Tutte le funzioni vengono eseguite correttamente
-    // se e solo se vengono rispettati i controlli di identità
+    // se e solo se vengono rispettati i controlli di identità.
+    // Le funzioni protette accettano la password oppure una sessione
+    // ottenuta con Board.login, che evita di verificare la password ad ogni chiamata
 
     // Crea una categoria di dati
     public void createCategory(String category, String passw)
             throws UnauthorizedException, EmptyFieldException, DuplicateItemException;
+    public void createCategory(String category, Session session)
+            throws UnauthorizedException, EmptyFieldException, DuplicateItemException;
 
     // Rimuove una categoria di dati
     public void removeCategory(String category, String passw)
             throws UnauthorizedException, EmptyFieldException, ItemNotFoundException;
+    public void removeCategory(String category, Session session)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException;
 
     // Aggiunge un amico ad una categoria di dati
     public void addFriend(String category, String passw, String friend)
             throws UnauthorizedException, EmptyFieldException, ItemNotFoundException;
+    public void addFriend(String category, Session session, String friend)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException;
 
     // Rimuove un amico da una categoria di dati
     public void removeFriend(String category, String passw, String friend)
             throws UnauthorizedException, EmptyFieldException, ItemNotFoundException;
+    public void removeFriend(String category, Session session, String friend)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException;
 
     // Inserisce un dato in bacheca
     public boolean put(String passw, E dato, String categoria)
             throws UnauthorizedException, EmptyFieldException, ItemNotFoundException;
+    public boolean put(Session session, E dato, String categoria)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException;
+
+    // Inserisce in bacheca tutti i dati di una collezione nella stessa categoria,
+    // autenticandosi una sola volta
+    public boolean putAll(String passw, Collection<? extends E> dati, String categoria)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException;
+    public boolean putAll(Session session, Collection<? extends E> dati, String categoria)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException;
 
     // Restituisce una copia del dato in bacheca
     public E get(String passw, E dato)
             throws UnauthorizedException, EmptyFieldException, ItemNotFoundException;
+    public E get(Session session, E dato)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException;
 
     // Rimuove il dato dalla bacheca
     public E remove(String passw, E dato)
             throws UnauthorizedException, EmptyFieldException, ItemNotFoundException;
+    public E remove(Session session, E dato)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException;
 
     // Aggiunge un like ad un dato
     void insertLike(String friend, E data)
             throws EmptyFieldException, ItemNotFoundException, NotAllowedException;
 
+    // Aggiunge un like da parte di un amico a tutti i dati di una collezione:
+    // se un dato non esiste o l'amico non può vederlo non viene aggiunto nessun like
+    void likeAll(String friend, Collection<? extends E> data)
+            throws EmptyFieldException, ItemNotFoundException, NotAllowedException;
+
     // Crea la lista dei dati in bacheca di una determinata categoria
     public List<E> getDataCategory(String passw, String category)
             throws UnauthorizedException, EmptyFieldException, ItemNotFoundException;
+    public List<E> getDataCategory(Session session, String category)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException;
+
+    // Restituisce una pagina di al più limit dati di una categoria, in ordine di pubblicazione,
+    // a partire dal cursore della pagina precedente (null per la prima pagina)
+    public Page<E> getDataCategory(String passw, String category, String cursor, int limit)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException;
+    public Page<E> getDataCategory(Session session, String category, String cursor, int limit)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException;
+
+    // Crea la lista dei dati in bacheca creati a partire dall'istante since (incluso),
+    // in ordine di timestamp (vedi Data.now)
+    public List<E> getDataSince(String passw, long since)
+            throws UnauthorizedException, EmptyFieldException;
+    public List<E> getDataSince(Session session, long since)
+            throws UnauthorizedException, EmptyFieldException;
+
+    // Crea la lista dei dati in bacheca creati nell'intervallo [from, to), in ordine di timestamp
+    public List<E> getDataBetween(String passw, long from, long to)
+            throws UnauthorizedException, EmptyFieldException;
+    public List<E> getDataBetween(Session session, long from, long to)
+            throws UnauthorizedException, EmptyFieldException;
+
+    // Cerca tra i dati in bacheca di una determinata categoria quelli che contengono
+    // almeno una delle parole di query, ordinati per rilevanza
+    public List<E> searchCategory(String passw, String category, String query)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException;
+    public List<E> searchCategory(Session session, String category, String query)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException;
+
+    // Cerca tra i dati in bacheca condivisi con l'amico <friend> quelli che contengono
+    // almeno una delle parole di query, ordinati per rilevanza
+    public List<E> searchFriend(String friend, String query)
+            throws EmptyFieldException;
 
     // Restituisce un iteratore (senza remove) che genera tutti i dati
     // in bacheca ordinati rispetto al numero di like
     public Iterator<E> getIterator(String passw)
             throws UnauthorizedException, EmptyFieldException;
+    public Iterator<E> getIterator(Session session)
+            throws UnauthorizedException, EmptyFieldException;
+
+    // Restituisce un iteratore (senza remove) che genera i primi k dati
+    // in bacheca ordinati rispetto al numero di like
+    public Iterator<E> getTopIterator(String passw, int k)
+            throws UnauthorizedException, EmptyFieldException;
+    public Iterator<E> getTopIterator(Session session, int k)
+            throws UnauthorizedException, EmptyFieldException;
+
+    // Restituisce una pagina di al più limit dati in bacheca ordinati rispetto al numero di like,
+    // a partire dal cursore della pagina precedente (null per la prima pagina)
+    public Page<E> getPage(String passw, String cursor, int limit)
+            throws UnauthorizedException, EmptyFieldException;
+    public Page<E> getPage(Session session, String cursor, int limit)
+            throws UnauthorizedException, EmptyFieldException;
 
     // Restituisce un iteratore (senza remove) che genera tutti i dati
     // in bacheca condivisi con l'amico <friend>
     public Iterator<E> getFriendIterator(String friend)
             throws EmptyFieldException;
 
+    // Restituisce un iteratore (senza remove) che genera tutti i dati in bacheca condivisi
+    // con l'amico <friend> in ordine di pubblicazione, dal più recente se <newestFirst>
+    public Iterator<E> getFriendIterator(String friend, boolean newestFirst)
+            throws EmptyFieldException;
+
+    // Restituisce un iteratore (senza remove) che genera tutti i dati in bacheca condivisi
+    // con l'amico <friend> ordinati rispetto al numero di like
+    public Iterator<E> getFriendRankingIterator(String friend)
+            throws EmptyFieldException;
+
+    // Restituisce una pagina di al più limit dati in bacheca condivisi con l'amico <friend>,
+    // a partire dal cursore della pagina precedente (null per la prima pagina)
+    public Page<E> getFriendPage(String friend, String cursor, int limit)
+            throws EmptyFieldException;
+
+    // Restituisce gli ultimi limit dati in bacheca condivisi con l'amico <friend>, dal più recente
+    public List<E> getTimeline(String friend, int limit)
+            throws EmptyFieldException;
+
+    // Restituisce uno stream (anche parallelo) di tutti i dati in bacheca
+    public Stream<E> stream(String passw)
+            throws UnauthorizedException, EmptyFieldException;
+    public Stream<E> stream(Session session)
+            throws UnauthorizedException, EmptyFieldException;
+
+    // Restituisce uno stream (anche parallelo) dei dati in bacheca di una categoria
+    public Stream<E> categoryStream(String passw, String category)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException;
+    public Stream<E> categoryStream(Session session, String category)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException;
+
+    // Restituisce uno stream (anche parallelo) dei dati in bacheca condivisi con l'amico <friend>
+    public Stream<E> friendStream(String friend)
+            throws EmptyFieldException;
+
 }
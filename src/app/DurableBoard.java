@@ -0,0 +1,764 @@
+package app;
+
+import app.exception.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+public class DurableBoard extends Board<Data> implements Closeable {
+
+    /*
+     *   Overview:
+     *       Board persistente: avvolge una qualsiasi implementazione di Board (Board1, Board2, Board3)
+     *       e registra ogni operazione che ne modifica lo stato (categorie, amici, posts e like)
+     *       in un write-ahead log (vedi Journal.java). Il record di ogni operazione viene prima
+     *       codificato, così che un errore di codifica non modifichi nulla; l'operazione viene poi
+     *       eseguita sulla board avvolta e, solo se va a buon fine, aggiunta al log: nel log finiscono
+     *       quindi solo operazioni valide, che rieseguite nello stesso ordine ricostruiscono
+     *       lo stesso stato. All'avvio il log viene rieseguito sulla board avvolta, che deve essere vuota.
+     *       Le fsync sono raggruppate dal log (commit di gruppo), per cui un crash può perdere
+     *       al più le operazioni degli ultimi syncInterval millisecondi; sync() forza il commit.
+     *       I posts non hanno un'identità testuale (due posts con gli stessi campi sono diversi),
+     *       per cui ad ogni post inserito viene assegnato un identificativo numerico,
+     *       usato dai record di rimozione e di like per riferirsi allo stesso oggetto.
+     *       La password non viene registrata nel log: va fornita ad ogni avvio.
+     *       Autenticazione e sessioni sono quelle della board avvolta, per cui questa board
+     *       non ha una propria credenziale e non ricalcola l'hash della password.
+     *       Per non rieseguire un log sempre più lungo, periodicamente (ogni checkpointRecords record,
+     *       oppure su richiesta con checkpoint) lo stato viene salvato in una fotografia
+     *       (vedi Snapshot.java) accanto al log, nel file <log>.snapshot, ed il log viene accorciato.
+     *       Il checkpoint non rallenta le scritture: la modifica che lo avvia fotografa soltanto
+     *       la board (in O(1) per ogni feed) e registra nel log un record di checkpoint con il numero
+     *       (epoch) della nuova fotografia, che viene scritta da un thread in background mentre
+     *       le modifiche proseguono; al termine dal log si eliminano solo i record che precedono
+     *       quello di checkpoint. Le epoch non si ripetono mai: all'avvio si ripristina la fotografia,
+     *       si ignorano i record che precedono il suo record di checkpoint e si rieseguono quelli
+     *       successivi, mentre i record di checkpoint mai completati non interrompono il log.
+     *       Così un crash durante la scrittura della fotografia o prima dell'accorciamento del log
+     *       non perde operazioni e non ne fa rieseguire di già contenute nella fotografia.
+     *       La fotografia legge i like dei posts mentre viene scritta, per cui può contenere anche
+     *       like successivi al record di checkpoint: per questo i like sono registrati con il loro
+     *       stato finale (ADD_LIKE, REMOVE_LIKE), e rieseguirli su una fotografia che li contiene già
+     *       non cambia nulla. Per lo stesso motivo, durante un checkpoint gli id dei posts rimossi
+     *       restano registrati (retired) finché la fotografia non è stata scritta.
+     *       Le modifiche sono serializzate sulla board, per mantenere lo stesso ordine
+     *       tra board avvolta e log; le letture sono inoltrate senza sincronizzazione.
+     *
+     *   Abstract Function:
+     *      <delegate, journal, snapshot, epoch, lastEpoch, records, checkpointing, ids, posts, retired, nextId>, dove:
+     *          delegate (board)    è la board che contiene lo stato
+     *          journal (log)       è il log su cui vengono registrate le modifiche
+     *          snapshot (path)     è il percorso dell'ultima fotografia della board
+     *          epoch (long)        è il numero dell'ultima fotografia, 0 se non ce ne sono
+     *          lastEpoch (long)    è il numero più alto assegnato ad una fotografia, anche non completata
+     *          records (long)      è il numero di record nel log dall'ultimo record di checkpoint
+     *          checkpointing (future)  è la scrittura in background della fotografia in corso, null se non ce n'è una
+     *          ids (map)           associa ad ogni post presente nella board (per identità)
+     *                                  la coppia <id, numero di copie inserite>
+     *          posts (map)         associa ad ogni id il post corrispondente
+     *          retired (list)      sono i posts rimossi durante il checkpoint in corso, di cui si conserva l'id
+     *          nextId (long)       è il prossimo identificativo da assegnare
+     *
+     *   Representation Invariant:
+     *      delegate != null && journal != null && snapshot != null && ids != null && posts != null
+     *      && retired != null && 0 <= epoch <= lastEpoch && records >= 0
+     *      && (checkpointing == null => records <= checkpointRecords && retired == empty)
+     *      && for each(post, <id, copies>) in ids : posts[id] == post && id < nextId
+     *          && (copies > 0 || post in retired)
+     *      && #ids == #posts
+     *
+     */
+
+    // Intervallo predefinito tra due commit di gruppo del log
+    public static final long DEFAULT_SYNC_INTERVAL_MS = 10;
+    // Numero predefinito di record nel log dopo cui salvare una fotografia
+    public static final long DEFAULT_CHECKPOINT_RECORDS = 1 << 20;
+
+    private final Board<Data> delegate;
+    private final Journal journal;
+    private final Path snapshot;
+    private final long checkpointRecords;
+    private final ExecutorService checkpointer;
+    private long epoch;
+    private long lastEpoch;
+    private long records;
+    private boolean stale;
+    private CompletableFuture<Void> checkpointing;
+    private final Map<Data, long[]> ids;
+    private final Map<Long, Data> posts;
+    private final List<Data> retired;
+    private long nextId;
+
+    /**
+     * Costruttore di board persistente con intervallo di commit predefinito
+     *
+     * @param delegate board vuota su cui ricostruire e mantenere lo stato
+     * @param password password del proprietario della board
+     * @param log      percorso del file di log, creato se non esiste
+     * @throws EmptyFieldException   se la password è vuota
+     * @throws UnauthorizedException se la password non è quella della board avvolta
+     * @throws IOException           se il log non può essere letto o aperto
+     */
+    public DurableBoard(Board<Data> delegate, String password, Path log)
+            throws EmptyFieldException, UnauthorizedException, IOException {
+        this(delegate, password, log, DEFAULT_SYNC_INTERVAL_MS, DEFAULT_CHECKPOINT_RECORDS);
+    }
+
+    /**
+     * Costruttore di board persistente: ripristina l'ultima fotografia, riesegue il log
+     * sulla board avvolta e lo apre in append
+     *
+     * @param delegate          board vuota su cui ricostruire e mantenere lo stato
+     * @param password          password del proprietario della board
+     * @param log               percorso del file di log, creato se non esiste
+     * @param syncIntervalMs    intervallo in millisecondi tra due commit di gruppo
+     * @param checkpointRecords numero di record nel log dopo cui salvare una fotografia
+     * @throws EmptyFieldException   se la password è vuota
+     * @throws UnauthorizedException se la password non è quella della board avvolta
+     * @throws IOException           se il log o la fotografia non possono essere letti o aperti
+     */
+    public DurableBoard(Board<Data> delegate, String password, Path log, long syncIntervalMs, long checkpointRecords)
+            throws EmptyFieldException, UnauthorizedException, IOException {
+
+        super(delegate.getOwner());
+        delegate.authentication(password);
+        if (checkpointRecords <= 0)
+            throw new IllegalArgumentException();
+
+        this.delegate = delegate;
+        this.snapshot = log.resolveSibling(log.getFileName() + ".snapshot");
+        this.checkpointRecords = checkpointRecords;
+        this.ids = new IdentityHashMap<>();
+        this.posts = new HashMap<>();
+        this.retired = new ArrayList<>();
+        this.nextId = 1;
+        this.epoch = 0;
+        if (Files.exists(this.snapshot))
+            this.epoch = Snapshot.read(this.snapshot, delegate, password, (id, post) -> {
+                this.track(post, id);
+                this.nextId = Math.max(this.nextId, id + 1);
+            });
+
+        // Un log senza record di checkpoint appartiene all'epoch 0
+        this.lastEpoch = this.epoch;
+        this.stale = this.epoch != 0;
+        this.records = Journal.replay(log, record -> this.apply(record, password));
+        this.journal = new Journal(log, syncIntervalMs);
+        this.checkpointer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "board-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (this.stale) {
+            // Il log è già contenuto nella fotografia: lo si ricomincia
+            this.journal.truncate();
+            this.journal.append(Journal.CHECKPOINT, this.epoch, 0);
+            this.journal.sync();
+            this.records = 0;
+        }
+    }
+
+    /**
+     * Riesegue un record del log sulla board avvolta
+     *
+     * @param record   il record da rieseguire
+     * @param password password del proprietario della board
+     * @throws IllegalStateException se il record non è applicabile alla board
+     * @modifies this.delegate, this.ids, this.posts, this.nextId
+     */
+    private void apply(Journal.Record record, String password) {
+        String[] args = record.args;
+        if (record.op == Journal.CHECKPOINT) {
+            // Un checkpoint successivo alla fotografia non è stato completato: il log prosegue
+            if (record.id <= this.epoch)
+                this.stale = record.id != this.epoch;
+            this.lastEpoch = Math.max(this.lastEpoch, record.id);
+            return;
+        }
+        if (this.stale)
+            return;
+        try {
+            switch (record.op) {
+                case Journal.CREATE_CATEGORY:
+                    delegate.createCategory(args[0], password);
+                    break;
+                case Journal.REMOVE_CATEGORY:
+                    delegate.removeCategory(args[0], password);
+                    break;
+                case Journal.ADD_FRIEND:
+                    delegate.addFriend(args[0], password, args[1]);
+                    break;
+                case Journal.REMOVE_FRIEND:
+                    delegate.removeFriend(args[0], password, args[1]);
+                    break;
+                case Journal.PUT:
+                    Data post = posts.get(record.id);
+                    if (post == null)
+                        post = new Data(args[0], args[1], args[2], record.timestamp);
+                    delegate.put(password, post, args[3]);
+                    this.track(post, record.id);
+                    this.nextId = Math.max(this.nextId, record.id + 1);
+                    break;
+                case Journal.REMOVE:
+                    Data removed = this.post(record.id);
+                    delegate.remove(password, removed);
+                    this.untrack(removed);
+                    break;
+                case Journal.LIKE:
+                    delegate.insertLike(args[0], this.post(record.id));
+                    break;
+                case Journal.ADD_LIKE:
+                case Journal.REMOVE_LIKE:
+                    Data liked = this.post(record.id);
+                    if (liked.hasLike(args[0]) != (record.op == Journal.ADD_LIKE))
+                        delegate.insertLike(args[0], liked);
+                    break;
+                default:
+                    throw new IllegalStateException("Operazione sconosciuta nel log: " + record.op);
+            }
+        } catch (UnauthorizedException | EmptyFieldException | DuplicateItemException
+                | ItemNotFoundException | NotAllowedException e) {
+            throw new IllegalStateException("Log non applicabile alla board", e);
+        }
+    }
+
+    private Data post(long id) {
+        Data post = posts.get(id);
+        if (post == null)
+            throw new IllegalStateException("Post sconosciuto nel log: " + id);
+        return post;
+    }
+
+    // Registra una copia in più del post, assegnandogli l'id se è la prima
+    private void track(Data post, long id) {
+        long[] entry = ids.computeIfAbsent(post, p -> new long[]{id, 0});
+        entry[1]++;
+        posts.put(entry[0], post);
+    }
+
+    // Registra una copia in meno del post, dimenticandone l'id quando non ne restano,
+    // ma solo dopo il checkpoint in corso, la cui fotografia può contenere ancora il post
+    private void untrack(Data post) {
+        long[] entry = ids.get(post);
+        if (entry != null && --entry[1] == 0) {
+            if (this.checkpointing != null)
+                this.retired.add(post);
+            else
+                this.forget(post, entry);
+        }
+    }
+
+    private void forget(Data post, long[] entry) {
+        ids.remove(post);
+        posts.remove(entry[0]);
+    }
+
+    // Registra un record nel log, salvando una fotografia se il log è diventato troppo lungo
+    private void log(byte[] record) {
+        this.append(record);
+        this.checkpointIfFull();
+    }
+
+    // Registra un record nel log senza mai salvare una fotografia, usato dalle operazioni
+    // in blocco: la fotografia va salvata solo dopo aver registrato tutto il blocco
+    private void append(byte[] record) {
+        try {
+            journal.append(record);
+            records++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Avvia un checkpoint se il log è diventato troppo lungo e non ce n'è già uno in corso
+    private void checkpointIfFull() {
+        try {
+            if (records >= checkpointRecords && checkpointing == null)
+                this.startCheckpoint();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Codifica l'inserimento di un post con l'id che gli sarà assegnato
+    private static byte[] putRecord(Data post, long id, String category) {
+        return Journal.encode(Journal.PUT, id, post.getTimestamp(),
+                post.getAuthor(), post.getContent(), post.getCategory(), category);
+    }
+
+    // Codifica un'operazione su un post già registrato, oppure null se il post non ha un id
+    private byte[] postRecord(byte op, Data post, String... args) {
+        long[] entry = ids.get(post);
+        return entry != null ? Journal.encode(op, entry[0], 0, args) : null;
+    }
+
+    // Codifica un like con lo stato che avrà dopo il toggle
+    private byte[] likeRecord(Data post, String friend, boolean liked) {
+        return this.postRecord(liked ? Journal.ADD_LIKE : Journal.REMOVE_LIKE, post, friend);
+    }
+
+    /**
+     * Salva lo stato della board in una nuova fotografia ed accorcia il log,
+     * che da quel momento contiene solo le operazioni successive. Se è in corso un checkpoint
+     * avviato in precedenza lo si attende, e poi se ne avvia uno nuovo; le modifiche
+     * della board proseguono durante la scrittura della fotografia
+     *
+     * @throws IOException se la fotografia o il log non possono essere scritti
+     * @modifies this.epoch, this.records, this.journal
+     */
+    public void checkpoint()
+            throws IOException {
+
+        CompletableFuture<Void> running;
+        synchronized (this) {
+            running = this.checkpointing;
+        }
+        if (running != null)
+            running.exceptionally(e -> null).join();
+        synchronized (this) {
+            // Un checkpoint avviato nel frattempo contiene già tutte le modifiche precedenti
+            running = this.checkpointing != null ? this.checkpointing : this.startCheckpoint();
+        }
+        try {
+            running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException)
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Fotografa la board, registra nel log il record di checkpoint ed avvia in background
+     * la scrittura della fotografia: il costo per il chiamante non dipende dal numero di posts
+     *
+     * @return (checkpointing) la scrittura della fotografia
+     * @throws IOException se il record di checkpoint non può essere registrato
+     * @modifies this.lastEpoch, this.records, this.checkpointing, this.journal
+     */
+    private CompletableFuture<Void> startCheckpoint()
+            throws IOException {
+
+        // Il numero viene consumato anche se il checkpoint fallisce, così le epoch non si ripetono
+        long next = ++this.lastEpoch;
+        long mark = this.journal.append(Journal.CHECKPOINT, next, 0);
+        Snapshot.Capture capture = Snapshot.capture(delegate);
+        this.records = 0;
+        this.checkpointing = CompletableFuture.runAsync(() -> this.writeCheckpoint(capture, next, mark), checkpointer);
+        return this.checkpointing;
+    }
+
+    /**
+     * Scrive la fotografia di un checkpoint ed elimina dal log i record che precedono
+     * il suo record di checkpoint. Eseguito in background: il monitor della board viene preso
+     * solo per leggere a blocchi i posts fotografati ed alla fine del checkpoint.
+     * Se la scrittura fallisce il log resta intero, ed il checkpoint verrà ritentato
+     *
+     * @param capture la board fotografata
+     * @param next    numero della nuova fotografia
+     * @param mark    posizione del record di checkpoint nel log
+     * @throws UncheckedIOException se la fotografia o il log non possono essere scritti
+     * @modifies this.epoch, this.checkpointing, this.ids, this.posts, this.retired, this.journal
+     */
+    private void writeCheckpoint(Snapshot.Capture capture, long next, long mark) {
+        try {
+            // Il record di checkpoint deve essere su disco prima della fotografia
+            this.journal.sync();
+            Snapshot.write(capture, next, post -> ids.get(post)[0], this, snapshot);
+            synchronized (this) {
+                this.epoch = next;
+            }
+            this.journal.truncateBefore(mark);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            synchronized (this) {
+                this.checkpointing = null;
+                for (Data post : this.retired) {
+                    long[] entry = ids.get(post);
+                    if (entry != null && entry[1] == 0)
+                        this.forget(post, entry);
+                }
+                this.retired.clear();
+            }
+        }
+    }
+
+    /**
+     * Verifica di autenticazione, sulla password della board avvolta
+     *
+     * @see Board#authentication(String)
+     */
+    @Override
+    public boolean authentication(String password)
+            throws EmptyFieldException, UnauthorizedException {
+        return delegate.authentication(password);
+    }
+
+    /**
+     * Resetta la password della board avvolta
+     *
+     * @see Board#resetPassword(String, String)
+     */
+    @Override
+    public void resetPassword(String currentPassword, String newPassword)
+            throws EmptyFieldException, SamePasswordException, UnauthorizedException {
+        delegate.resetPassword(currentPassword, newPassword);
+    }
+
+    /**
+     * Apre una sessione sulla board avvolta, che verifica le sessioni al posto di questa board
+     *
+     * @see Board#login(String)
+     */
+    @Override
+    public Session login(String password)
+            throws EmptyFieldException, UnauthorizedException {
+        return delegate.login(password);
+    }
+
+    @Override
+    public void logout(Session session) {
+        delegate.logout(session);
+    }
+
+    @Override
+    public void setSessionLimits(long sessionIdleMs, int maxSessions) {
+        delegate.setSessionLimits(sessionIdleMs, maxSessions);
+    }
+
+    @Override
+    Session authorize(String password)
+            throws EmptyFieldException, UnauthorizedException {
+        return delegate.authorize(password);
+    }
+
+    /**
+     * Crea una nuova categoria e la registra nel log
+     *
+     * @see DataBoard#createCategory(String, Session)
+     */
+    @Override
+    public synchronized void createCategory(String category, Session session)
+            throws UnauthorizedException, EmptyFieldException, DuplicateItemException {
+
+        byte[] record = Journal.encode(Journal.CREATE_CATEGORY, 0, 0, category);
+        delegate.createCategory(category, session);
+        this.log(record);
+    }
+
+    /**
+     * Rimuove una categoria e registra la rimozione nel log
+     *
+     * @see DataBoard#removeCategory(String, Session)
+     */
+    @Override
+    public synchronized void removeCategory(String category, Session session)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        byte[] record = Journal.encode(Journal.REMOVE_CATEGORY, 0, 0, category);
+        delegate.removeCategory(category, session);
+        this.log(record);
+    }
+
+    /**
+     * Aggiunge un amico ad una categoria e lo registra nel log
+     *
+     * @see DataBoard#addFriend(String, Session, String)
+     */
+    @Override
+    public synchronized void addFriend(String category, Session session, String friend)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        byte[] record = Journal.encode(Journal.ADD_FRIEND, 0, 0, category, friend);
+        delegate.addFriend(category, session, friend);
+        this.log(record);
+    }
+
+    /**
+     * Rimuove un amico da una categoria e registra la rimozione nel log
+     *
+     * @see DataBoard#removeFriend(String, Session, String)
+     */
+    @Override
+    public synchronized void removeFriend(String category, Session session, String friend)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        byte[] record = Journal.encode(Journal.REMOVE_FRIEND, 0, 0, category, friend);
+        delegate.removeFriend(category, session, friend);
+        this.log(record);
+    }
+
+    /**
+     * Inserisce un post nel feed e lo registra nel log insieme al suo id
+     *
+     * @see DataBoard#put(Session, Data, String)
+     */
+    @Override
+    public synchronized boolean put(Session session, Data post, String category)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        long[] entry = ids.get(post);
+        long id = entry != null ? entry[0] : nextId;
+        byte[] record = putRecord(post, id, category);
+        boolean result = delegate.put(session, post, category);
+        this.track(post, id);
+        this.nextId = Math.max(this.nextId, id + 1);
+        this.log(record);
+        return result;
+    }
+
+    /**
+     * Inserisce in blocco dei posts nel feed e registra ogni inserimento nel log
+     *
+     * @see DataBoard#putAll(Session, Collection, String)
+     */
+    @Override
+    public synchronized boolean putAll(Session session, Collection<? extends Data> posts, String category)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        // Gli id dei nuovi posts sono assegnati in ordine, una sola volta per post anche se ripetuto
+        long[] assigned = new long[posts.size()];
+        byte[][] records = new byte[posts.size()][];
+        Map<Data, Long> fresh = new IdentityHashMap<>();
+        long next = nextId;
+        int i = 0;
+        for (Data post : posts) {
+            long[] entry = ids.get(post);
+            Long id = entry != null ? Long.valueOf(entry[0]) : fresh.get(post);
+            if (id == null) {
+                id = next++;
+                fresh.put(post, id);
+            }
+            assigned[i] = id;
+            records[i++] = putRecord(post, id, category);
+        }
+
+        boolean result = delegate.putAll(session, posts, category);
+        i = 0;
+        for (Data post : posts) {
+            this.track(post, assigned[i]);
+            this.append(records[i++]);
+        }
+        this.nextId = next;
+        this.checkpointIfFull();
+        return result;
+    }
+
+    @Override
+    public Data get(Session session, Data post)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+        return delegate.get(session, post);
+    }
+
+    /**
+     * Rimuove un post dal feed e registra la rimozione nel log
+     *
+     * @see DataBoard#remove(Session, Data)
+     */
+    @Override
+    public synchronized Data remove(Session session, Data post)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+
+        byte[] record = this.postRecord(Journal.REMOVE, post);
+        Data removed = delegate.remove(session, post);
+        if (record != null) {
+            this.log(record);
+            this.untrack(post);
+        }
+        return removed;
+    }
+
+    /**
+     * Aggiunge (o toglie) un like ad un post e lo registra nel log
+     *
+     * @see DataBoard#insertLike(String, Data)
+     */
+    @Override
+    public synchronized void insertLike(String friend, Data post)
+            throws EmptyFieldException, ItemNotFoundException, NotAllowedException {
+
+        byte[] record = this.likeRecord(post, friend, !post.hasLike(friend));
+        delegate.insertLike(friend, post);
+        if (record != null)
+            this.log(record);
+    }
+
+    /**
+     * Aggiunge (o toglie) un like a più posts e registra ogni like nel log
+     *
+     * @see DataBoard#likeAll(String, Collection)
+     */
+    @Override
+    public synchronized void likeAll(String friend, Collection<? extends Data> posts)
+            throws EmptyFieldException, ItemNotFoundException, NotAllowedException {
+
+        // Un post ripetuto riceve un toggle per ogni occorrenza
+        List<byte[]> records = new ArrayList<>(posts.size());
+        Map<Data, Boolean> liked = new IdentityHashMap<>();
+        for (Data post : posts) {
+            boolean state = !liked.getOrDefault(post, post.hasLike(friend));
+            liked.put(post, state);
+            byte[] record = this.likeRecord(post, friend, state);
+            if (record != null)
+                records.add(record);
+        }
+        delegate.likeAll(friend, posts);
+        for (byte[] record : records)
+            this.append(record);
+        this.checkpointIfFull();
+    }
+
+    @Override
+    public List<Data> getDataCategory(Session session, String category)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+        return delegate.getDataCategory(session, category);
+    }
+
+    @Override
+    public Page<Data> getDataCategory(Session session, String category, String cursor, int limit)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+        return delegate.getDataCategory(session, category, cursor, limit);
+    }
+
+    @Override
+    public List<Data> getDataSince(Session session, long since)
+            throws UnauthorizedException, EmptyFieldException {
+        return delegate.getDataSince(session, since);
+    }
+
+    @Override
+    public List<Data> getDataBetween(Session session, long from, long to)
+            throws UnauthorizedException, EmptyFieldException {
+        return delegate.getDataBetween(session, from, to);
+    }
+
+    @Override
+    public List<Data> searchCategory(Session session, String category, String query)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+        return delegate.searchCategory(session, category, query);
+    }
+
+    @Override
+    public Iterator<Data> getIterator(Session session)
+            throws UnauthorizedException, EmptyFieldException {
+        return delegate.getIterator(session);
+    }
+
+    @Override
+    public Iterator<Data> getTopIterator(Session session, int k)
+            throws UnauthorizedException, EmptyFieldException {
+        return delegate.getTopIterator(session, k);
+    }
+
+    @Override
+    public Page<Data> getPage(Session session, String cursor, int limit)
+            throws UnauthorizedException, EmptyFieldException {
+        return delegate.getPage(session, cursor, limit);
+    }
+
+    @Override
+    public Iterator<Data> getFriendIterator(String friend)
+            throws EmptyFieldException {
+        return delegate.getFriendIterator(friend);
+    }
+
+    @Override
+    public Iterator<Data> getFriendIterator(String friend, boolean newestFirst)
+            throws EmptyFieldException {
+        return delegate.getFriendIterator(friend, newestFirst);
+    }
+
+    @Override
+    public Iterator<Data> getFriendRankingIterator(String friend)
+            throws EmptyFieldException {
+        return delegate.getFriendRankingIterator(friend);
+    }
+
+    @Override
+    public Page<Data> getFriendPage(String friend, String cursor, int limit)
+            throws EmptyFieldException {
+        return delegate.getFriendPage(friend, cursor, limit);
+    }
+
+    @Override
+    public List<Data> getTimeline(String friend, int limit)
+            throws EmptyFieldException {
+        return delegate.getTimeline(friend, limit);
+    }
+
+    @Override
+    public List<Data> searchFriend(String friend, String query)
+            throws EmptyFieldException {
+        return delegate.searchFriend(friend, query);
+    }
+
+    @Override
+    public Stream<Data> stream(Session session)
+            throws UnauthorizedException, EmptyFieldException {
+        return delegate.stream(session);
+    }
+
+    @Override
+    public Stream<Data> categoryStream(Session session, String category)
+            throws UnauthorizedException, EmptyFieldException, ItemNotFoundException {
+        return delegate.categoryStream(session, category);
+    }
+
+    @Override
+    public Stream<Data> friendStream(String friend)
+            throws EmptyFieldException {
+        return delegate.friendStream(friend);
+    }
+
+    @Override
+    void forEachCategory(BiConsumer<String, Set<String>> action) {
+        delegate.forEachCategory(action);
+    }
+
+    @Override
+    Iterator<Map.Entry<String, Data>> postSnapshot() {
+        return delegate.postSnapshot();
+    }
+
+    /**
+     * Rende persistenti su disco tutte le operazioni registrate finora,
+     * senza attendere il prossimo commit di gruppo
+     *
+     * @throws IOException se la sincronizzazione fallisce
+     */
+    public void sync()
+            throws IOException {
+        journal.sync();
+    }
+
+    /**
+     * Attende il checkpoint in corso, poi sincronizza e chiude il log;
+     * la board avvolta resta utilizzabile in sola memoria
+     *
+     * @throws IOException se la chiusura fallisce
+     */
+    @Override
+    public void close()
+            throws IOException {
+        CompletableFuture<Void> running;
+        synchronized (this) {
+            running = this.checkpointing;
+        }
+        // Un checkpoint fallito non perde nulla: il log è ancora intero
+        if (running != null)
+            running.exceptionally(e -> null).join();
+        checkpointer.shutdown();
+        journal.close();
+    }
+}
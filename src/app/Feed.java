@@ -0,0 +1,492 @@
+package app;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+public class Feed<E> implements Iterable<E> {
+
+    /*
+     *   Overview:
+     *      Struttura di appoggio che mantiene una sequenza ordinata (per inserimento) di posts,
+     *      ammettendo duplicati, con accesso ad un post specifico in tempo costante.
+     *      I posts sono salvati in una lista di slot; accanto alla lista è mantenuto un indice
+     *      che associa ad ogni post le posizioni (slot) in cui compare. Ogni slot ha inoltre
+     *      un numero di sequenza crescente, che permette di fondere più feed (ad esempio quelli
+     *      delle singole categorie) rispettando l'ordine di pubblicazione. La rimozione non sposta
+     *      gli elementi ma lascia una "lapide" (null) nello slot, che viene recuperata
+     *      da una compattazione periodica della lista.
+     *      Il feed può fornire fotografie (snapshot) in O(1): una fotografia condivide la lista
+     *      degli slot e ne ricorda la lunghezza, per cui gli inserimenti in coda non la toccano;
+     *      la prima rimozione successiva ad una fotografia copia la lista (copy-on-write).
+     *      I cursori possono visitare gli slot anche a ritroso, dal post più recente,
+     *      e più cursori di feed con numeri di sequenza distinti si fondono con merge.
+     *
+     *   Abstraction function:
+     *      <slots, seqs, nextSeq, index, size, shared>, dove:
+     *          slots (list)    è la lista dei posts in ordine di inserimento, dove null indica
+     *                              uno slot il cui post è stato rimosso
+     *          seqs (array)    è il numero di sequenza associato ad ogni slot
+     *          nextSeq (long)  è il minimo numero di sequenza assegnabile al prossimo post
+     *          index (map)     associa ad ogni post la coda (crescente) degli slot in cui compare
+     *          size (int)      è il numero di posts effettivamente presenti
+     *          shared (bool)   indica se la lista degli slot è condivisa con una fotografia
+     *
+     *   Representation invariant:
+     *      slots != null && seqs != null && index != null
+     *      && size == #{ i | slots[i] != null }
+     *      && for each(i) in [1, slots.size) : seqs[i - 1] < seqs[i] < nextSeq
+     *      && for each(post, queue) in index : queue != empty
+     *          && for each(i) in queue : slots[i] == post, in ordine crescente
+     *      && for each(i) | slots[i] != null : i in index[slots[i]]
+     *
+     */
+
+    // Soglia minima di lapidi prima di compattare la lista
+    private static final int MIN_TOMBSTONES = 32;
+
+    private ArrayList<E> slots;
+    private long[] seqs;
+    private long nextSeq;
+    private Map<E, Deque<Integer>> index;
+    private int size;
+    private boolean shared;
+
+    /**
+     * Costruttore della classe Feed
+     */
+    public Feed() {
+        this.slots = new ArrayList<>();
+        this.seqs = new long[16];
+        this.nextSeq = 0;
+        this.index = new HashMap<>();
+        this.size = 0;
+        this.shared = false;
+    }
+
+    /**
+     * Numero di posts presenti nel feed
+     *
+     * @return (size)
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Aggiunge un post in coda al feed, anche se è già presente,
+     * assegnandogli il numero di sequenza successivo all'ultimo
+     *
+     * @param post il post da aggiungere
+     * @return (seq) il numero di sequenza assegnato al post
+     * @modifies this.slots, this.seqs, this.nextSeq, this.index
+     * @effects post(this.slots) = pre(this.slots) + [post]
+     */
+    public long add(E post) {
+        long seq = this.nextSeq;
+        this.add(post, seq);
+        return seq;
+    }
+
+    /**
+     * Aggiunge un post in coda al feed con un numero di sequenza scelto dal chiamante
+     *
+     * @param post il post da aggiungere
+     * @param seq  numero di sequenza, non minore di nextSeq
+     * @modifies this.slots, this.seqs, this.nextSeq, this.index
+     * @effects post(this.slots) = pre(this.slots) + [post]
+     * @throws IllegalArgumentException se seq è minore di nextSeq
+     */
+    public void add(E post, long seq) {
+        if (post == null)
+            throw new NullPointerException();
+        if (seq < this.nextSeq)
+            throw new IllegalArgumentException();
+        int slot = this.slots.size();
+        if (slot == this.seqs.length)
+            this.seqs = Arrays.copyOf(this.seqs, slot * 2);
+        this.index.computeIfAbsent(post, p -> new ArrayDeque<>()).addLast(slot);
+        this.slots.add(post);
+        this.seqs[slot] = seq;
+        this.nextSeq = seq + 1;
+        this.size++;
+    }
+
+    /**
+     * Prepara il feed a ricevere altri posts senza riallocare la lista degli slot,
+     * usato prima degli inserimenti in blocco
+     *
+     * @param additional numero di posts che si prevede di aggiungere
+     * @modifies this.slots, this.seqs
+     */
+    public void ensureCapacity(int additional) {
+        int capacity = this.slots.size() + additional;
+        this.slots.ensureCapacity(capacity);
+        if (capacity > this.seqs.length)
+            this.seqs = Arrays.copyOf(this.seqs, capacity);
+    }
+
+    /**
+     * Controlla se un post è presente nel feed
+     *
+     * @param post il post da cercare
+     * @return (bool) true se il post compare almeno una volta
+     */
+    public boolean contains(E post) {
+        return this.index.containsKey(post);
+    }
+
+    /**
+     * Restituisce la prima occorrenza del post nel feed
+     *
+     * @param post il post da cercare
+     * @return (post) il post contenuto nel feed, oppure (null) se non è presente
+     */
+    public E get(E post) {
+        Deque<Integer> positions = this.index.get(post);
+        return positions == null ? null : this.slots.get(positions.peekFirst());
+    }
+
+    /**
+     * Rimuove la prima occorrenza del post dal feed, lasciando una lapide nello slot
+     *
+     * @param post il post da rimuovere
+     * @return (bool) true se il post era presente ed è stato rimosso
+     * @modifies this.slots, this.index, this.shared
+     * @effects post(this.slots) = pre(this.slots) \ {first(post)}
+     */
+    public boolean remove(E post) {
+        Deque<Integer> positions = this.index.get(post);
+        if (positions == null)
+            return false;
+        if (this.shared) {
+            // La lista è letta da una fotografia: la si copia prima di scriverci
+            this.slots = new ArrayList<>(this.slots);
+            this.shared = false;
+        }
+        this.slots.set(positions.pollFirst(), null);
+        if (positions.isEmpty())
+            this.index.remove(post);
+        this.size--;
+
+        int tombstones = this.slots.size() - this.size;
+        if (tombstones >= MIN_TOMBSTONES && tombstones > this.size)
+            this.compact();
+        return true;
+    }
+
+    /**
+     * Iteratore (senza remove) sui posts del feed, in ordine di inserimento.
+     * Il feed non va modificato finché l'iteratore è in uso, altrimenti si usi snapshot
+     *
+     * @return (iterator)
+     */
+    @Override
+    public Cursor iterator() {
+        return new Cursor(this.slots, this.seqs, 0, this.slots.size());
+    }
+
+    /**
+     * Iteratore (senza remove) sui posts del feed con numero di sequenza maggiore di afterSeq,
+     * posizionato con una ricerca binaria sui numeri di sequenza degli slot.
+     * Il feed non va modificato finché l'iteratore è in uso
+     *
+     * @param afterSeq numero di sequenza dopo cui iniziare
+     * @return (iterator)
+     */
+    public Cursor iterator(long afterSeq) {
+        return new Cursor(this.slots, this.seqs, this.search(afterSeq), this.slots.size());
+    }
+
+    /**
+     * Iteratore (senza remove) sui posts del feed con numero di sequenza minore di beforeSeq,
+     * dal più recente al meno recente, posizionato con una ricerca binaria sui numeri di sequenza.
+     * Il feed non va modificato finché l'iteratore è in uso
+     *
+     * @param beforeSeq numero di sequenza prima di cui iniziare, Long.MAX_VALUE per l'ultimo post
+     * @return (iterator)
+     */
+    public Cursor before(long beforeSeq) {
+        return new Cursor(this.slots, this.seqs, 0, this.search(beforeSeq - 1), true);
+    }
+
+    // Primo slot con numero di sequenza maggiore di seq (ricerca binaria)
+    private int search(long seq) {
+        int low = 0, high = this.slots.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.seqs[mid] <= seq)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Iteratore (senza remove) sugli ultimi n posts del feed, in ordine di inserimento,
+     * posizionato scorrendo gli slot a ritroso: costa O(n), più le lapidi incontrate.
+     * Il feed non va modificato finché l'iteratore è in uso
+     *
+     * @param n numero massimo di posts
+     * @return (iterator)
+     */
+    public Cursor tail(int n) {
+        int from = this.slots.size();
+        int found = 0;
+        while (from > 0 && found < n) {
+            from--;
+            if (this.slots.get(from) != null)
+                found++;
+        }
+        return new Cursor(this.slots, this.seqs, from, this.slots.size());
+    }
+
+    /**
+     * Pagina di al più limit posts, in ordine di inserimento, con numero di sequenza
+     * maggiore di afterSeq; costa O(log n + limit), più gli slot vuoti o scartati dal filtro
+     *
+     * @param afterSeq numero di sequenza dopo cui iniziare
+     * @param limit    numero massimo di posts della pagina
+     * @param filter   condizione che i posts devono rispettare
+     * @param tag      tipo di interrogazione da codificare nel cursore
+     * @return (page) la pagina, il cui cursore è il numero di sequenza dell'ultimo post visitato
+     * @throws IllegalArgumentException se limit non è positivo
+     */
+    public Page<E> page(long afterSeq, int limit, Predicate<? super E> filter, String tag) {
+        Page.checkLimit(limit);
+        Cursor cursor = this.iterator(afterSeq);
+        List<E> items = new ArrayList<>(Math.min(limit, this.size));
+        long last = afterSeq;
+        while (items.size() < limit && cursor.hasNext()) {
+            last = cursor.peekSeq();
+            E post = cursor.next();
+            if (filter.test(post))
+                items.add(post);
+        }
+        return new Page<>(items, cursor.hasNext() ? Page.cursor(tag, last) : null);
+    }
+
+    /**
+     * Iteratore (senza remove) su una fotografia del feed, creata in O(1),
+     * che non risente delle modifiche successive del feed
+     *
+     * @return (iterator)
+     * @modifies this.shared
+     */
+    public Cursor snapshot() {
+        this.shared = true;
+        return new Cursor(this.slots, this.seqs, 0, this.slots.size());
+    }
+
+    /**
+     * Iteratore (senza remove) su una fotografia del feed, creata in O(1) come in snapshot,
+     * che visita i posts dal più recente al meno recente
+     *
+     * @return (iterator)
+     * @modifies this.shared
+     */
+    public Cursor reverseSnapshot() {
+        this.shared = true;
+        return new Cursor(this.slots, this.seqs, 0, this.slots.size(), true);
+    }
+
+    /**
+     * Fonde in modo pigro dei cursori su feed diversi, i cui numeri di sequenza sono distinti
+     * (ad esempio i feed delle categorie di una board), in ordine di pubblicazione:
+     * ogni post costa O(log k), con k cursori
+     *
+     * @param cursors  i cursori da fondere, tutti nella stessa direzione
+     * @param reversed true se i cursori visitano i feed a ritroso
+     * @param <E>      tipo dei posts
+     * @return (iterator) iteratore (senza remove) ordinato per numero di sequenza,
+     * decrescente se reversed
+     */
+    public static <E> Iterator<E> merge(Collection<Feed<E>.Cursor> cursors, boolean reversed) {
+        Comparator<Feed<E>.Cursor> bySeq = Comparator.comparingLong(c -> c.peekSeq());
+        PriorityQueue<Feed<E>.Cursor> heads = new PriorityQueue<>(Math.max(1, cursors.size()),
+                reversed ? bySeq.reversed() : bySeq);
+        for (Feed<E>.Cursor cursor : cursors)
+            if (cursor.hasNext())
+                heads.add(cursor);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Feed<E>.Cursor cursor = heads.poll();
+                E post = cursor.next();
+                if (cursor.hasNext())
+                    heads.add(cursor);
+                return post;
+            }
+        };
+    }
+
+    /**
+     * Spliterator su una fotografia del feed, creata in O(1) come in snapshot.
+     * Si divide a metà dell'intervallo di slot senza copiare nulla e salta le lapidi.
+     * Se la fotografia non contiene lapidi le due metà hanno dimensione esatta (SIZED e SUBSIZED),
+     * altrimenti la dimensione è solo stimata: le lapidi vengono eliminate dalla compattazione
+     * di remove, mai dalla lettura, per cui lo spliterator non modifica né copia il feed
+     *
+     * @return (spliterator) ORDERED, NONNULL, IMMUTABLE
+     * @modifies this.shared
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        this.shared = true;
+        return new Slice<>(this.slots, 0, this.slots.size(), this.slots.size() == this.size);
+    }
+
+    // Intervallo [from, bound) della lista degli slot di una fotografia
+    private static final class Slice<E> implements Spliterator<E> {
+        private final List<E> slots;
+        private final int bound;
+        private final boolean exact;
+        private int from;
+
+        Slice(List<E> slots, int from, int bound, boolean exact) {
+            this.slots = slots;
+            this.from = from;
+            this.bound = bound;
+            this.exact = exact;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            while (from < bound) {
+                E post = slots.get(from++);
+                if (post != null) {
+                    action.accept(post);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            for (int i = from; i < bound; i++) {
+                E post = slots.get(i);
+                if (post != null)
+                    action.accept(post);
+            }
+            from = bound;
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            int mid = (from + bound) >>> 1;
+            if (mid <= from)
+                return null;
+            Slice<E> prefix = new Slice<>(slots, from, mid, exact);
+            from = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return bound - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE | (exact ? SIZED | SUBSIZED : 0);
+        }
+    }
+
+    /**
+     * Iteratore sugli slot [from, bound) del feed, in avanti o a ritroso, che permette
+     * di leggere il numero di sequenza del prossimo post senza consumarlo,
+     * usato per fondere più feed tra loro
+     */
+    public class Cursor implements Iterator<E> {
+        private final List<E> slots;
+        private final long[] seqs;
+        private final int from;
+        private final int bound;
+        private final boolean reversed;
+        private int slot;
+
+        private Cursor(List<E> slots, long[] seqs, int from, int bound) {
+            this(slots, seqs, from, bound, false);
+        }
+
+        private Cursor(List<E> slots, long[] seqs, int from, int bound, boolean reversed) {
+            this.slots = slots;
+            this.seqs = seqs;
+            this.from = from;
+            this.bound = bound;
+            this.reversed = reversed;
+            this.slot = reversed ? retreat(bound - 1) : advance(from);
+        }
+
+        private int advance(int slot) {
+            while (slot < bound && slots.get(slot) == null)
+                slot++;
+            return slot;
+        }
+
+        private int retreat(int slot) {
+            while (slot >= from && slots.get(slot) == null)
+                slot--;
+            return slot;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return reversed ? slot >= from : slot < bound;
+        }
+
+        /**
+         * Numero di sequenza del prossimo post
+         *
+         * @return (seq)
+         * @throws NoSuchElementException se non ci sono altri posts
+         */
+        public long peekSeq() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return seqs[slot];
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            E post = slots.get(slot);
+            slot = reversed ? retreat(slot - 1) : advance(slot + 1);
+            return post;
+        }
+    }
+
+    /**
+     * Elimina le lapidi dalla lista degli slot e ricostruisce l'indice
+     *
+     * @modifies this.slots, this.seqs, this.index, this.shared
+     * @effects post(this.slots) = pre(this.slots) \ {null}
+     */
+    private void compact() {
+        ArrayList<E> compacted = new ArrayList<>(this.size);
+        long[] compactedSeqs = new long[Math.max(16, this.size)];
+        Map<E, Deque<Integer>> reindexed = new HashMap<>();
+        for (int i = 0; i < this.slots.size(); i++) {
+            E post = this.slots.get(i);
+            if (post != null) {
+                reindexed.computeIfAbsent(post, p -> new ArrayDeque<>()).addLast(compacted.size());
+                compactedSeqs[compacted.size()] = this.seqs[i];
+                compacted.add(post);
+            }
+        }
+        this.slots = compacted;
+        this.seqs = compactedSeqs;
+        this.index = reindexed;
+        this.shared = false;
+    }
+}
@@ -0,0 +1,171 @@
+package app;
+
+import app.exception.EmptyFieldException;
+
+import java.util.*;
+
+public final class FeedAggregator {
+
+    /*
+     *   Overview:
+     *      Costruisce il feed aggregato di un amico che segue più board, fondendo i feed
+     *      che ogni board condivide con lui (getFriendIterator) in un unico iteratore.
+     *      La fusione è a k vie: un heap contiene il prossimo post di ogni sorgente, per cui
+     *      il primo post è pronto dopo O(k log k) confronti ed ogni post successivo costa O(log k),
+     *      dove k è il numero di sorgenti, senza mai ordinare l'insieme di tutti i posts.
+     *      merge fonde sorgenti già ordinate ed è completamente pigra.
+     *      timeline parte dalle board: per NEWEST ed OLDEST ogni board fornisce già i posts
+     *      condivisi con l'amico in ordine di pubblicazione, in avanti o a ritroso
+     *      (getFriendIterator(friend, newestFirst)), per cui anche il feed aggregato è pigro
+     *      e leggerne i primi posts non costa la lettura dell'intero feed delle board.
+     *      Tra board diverse l'ordine è quello dei timestamp, che all'interno di una board
+     *      coincide con l'ordine di pubblicazione quando i posts sono pubblicati man mano che
+     *      vengono creati. Per MOST_LIKED ogni board fornisce i posts condivisi con l'amico
+     *      in ordine di classifica (getFriendRankingIterator), per cui anche questo feed è pigro.
+     *      I like cambiano durante la lettura: il numero di like di ogni post viene letto una sola
+     *      volta, quando il post entra nell'heap, così che le chiavi nell'heap non cambino.
+     *      Un like inserito durante la lettura può quindi spostare un post rispetto all'ordine per like.
+     *
+     */
+
+    private FeedAggregator() {
+    }
+
+    /**
+     * Ordine dei posts nel feed aggregato
+     */
+    public enum Order {
+        // Dal più recente al meno recente
+        NEWEST,
+        // Dal meno recente al più recente, come l'ordine di pubblicazione
+        OLDEST,
+        // Per numero di like decrescente e poi per contenuto, come Data.compareTo
+        MOST_LIKED
+    }
+
+    /**
+     * Fonde in modo pigro delle sorgenti, ognuna già ordinata secondo order
+     *
+     * @param sources le sorgenti da fondere
+     * @param order   l'ordine comune delle sorgenti
+     * @param <E>     tipo dei posts
+     * @return (iterator) iteratore immutabile (senza la remove) ordinato secondo order;
+     * a parità di ordine i posts seguono l'ordine delle sorgenti
+     */
+    public static <E> Iterator<E> merge(List<? extends Iterator<? extends E>> sources, Comparator<? super E> order) {
+        PriorityQueue<Head<E>> heads = new PriorityQueue<>(Math.max(1, sources.size()), (a, b) -> {
+            int result = order.compare(a.next, b.next);
+            return result != 0 ? result : Integer.compare(a.source, b.source);
+        });
+        for (int i = 0; i < sources.size(); i++) {
+            Iterator<? extends E> source = sources.get(i);
+            if (source.hasNext())
+                heads.add(new Head<>(source, i));
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Head<E> head = heads.poll();
+                E post = head.next;
+                if (head.advance())
+                    heads.add(head);
+                return post;
+            }
+        };
+    }
+
+    /**
+     * Feed aggregato di un amico su più board, ordinato secondo order
+     *
+     * @param boards le board seguite dall'amico
+     * @param friend nome dell'amico
+     * @param order  ordine del feed aggregato
+     * @param <E>    tipo dei posts
+     * @return (iterator) iteratore immutabile (senza la remove) sui posts condivisi con friend
+     * @throws EmptyFieldException se il campo friend è vuoto
+     */
+    public static <E extends Data> Iterator<E> timeline(Collection<? extends DataBoard<? extends E>> boards,
+                                                        String friend, Order order)
+            throws EmptyFieldException {
+
+        if (friend.isBlank())
+            throw new EmptyFieldException();
+        if (order != Order.MOST_LIKED) {
+            boolean newestFirst = order == Order.NEWEST;
+            List<Iterator<? extends E>> sources = new ArrayList<>(boards.size());
+            for (DataBoard<? extends E> board : boards)
+                sources.add(board.getFriendIterator(friend, newestFirst));
+            Comparator<E> byTimestamp = Comparator.comparingLong(Data::getTimestamp);
+            return merge(sources, newestFirst ? byTimestamp.reversed() : byTimestamp);
+        }
+        Comparator<Entry<E>> comparator = (a, b) -> {
+            int result = Integer.compare(b.likes, a.likes);
+            return result != 0 ? result : a.post.compareContent(b.post);
+        };
+        List<Iterator<Entry<E>>> sources = new ArrayList<>(boards.size());
+        for (DataBoard<? extends E> board : boards) {
+            Iterator<? extends E> posts = board.getFriendRankingIterator(friend);
+            sources.add(new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return posts.hasNext();
+                }
+
+                @Override
+                public Entry<E> next() {
+                    return new Entry<>(posts.next());
+                }
+            });
+        }
+        Iterator<Entry<E>> merged = merge(sources, comparator);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return merged.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return merged.next().post;
+            }
+        };
+    }
+
+    // Post con il numero di like, che può cambiare, letto quando il post entra nell'heap
+    private static final class Entry<E extends Data> {
+        final E post;
+        final int likes;
+
+        Entry(E post) {
+            this.post = post;
+            this.likes = post.getLikesCounter();
+        }
+    }
+
+    // Prossimo elemento di una sorgente, con l'indice della sorgente per gli spareggi
+    private static final class Head<E> {
+        final Iterator<? extends E> posts;
+        final int source;
+        E next;
+
+        Head(Iterator<? extends E> posts, int source) {
+            this.posts = posts;
+            this.source = source;
+            this.next = posts.next();
+        }
+
+        boolean advance() {
+            if (!posts.hasNext())
+                return false;
+            next = posts.next();
+            return true;
+        }
+    }
+}
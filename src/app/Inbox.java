@@ -0,0 +1,109 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.List;
+
+final class Inbox<E> {
+
+    /*
+     *   Overview:
+     *      Casella di un amico per la modalità fan-out-on-write delle board: un buffer circolare
+     *      di capacità fissa che contiene gli ultimi posts condivisi con l'amico, in ordine
+     *      di pubblicazione. Ogni inserimento in una categoria spinge il post nelle caselle
+     *      dei suoi amici, in O(1) per amico; quando la casella è piena il post più vecchio
+     *      viene scartato. La lettura degli ultimi n posts costa O(n).
+     *      La casella ricorda se ha mai scartato dei posts (truncated): in caso contrario
+     *      contiene tutti i posts visibili all'amico.
+     *
+     *   Abstraction function:
+     *      <posts, head, count, truncated>, dove:
+     *          posts (array)       è il buffer circolare
+     *          head (int)          è la posizione in cui scrivere il prossimo post
+     *          count (int)         è il numero di posts presenti, che terminano in head - 1
+     *          truncated (bool)    indica se almeno un post è stato scartato
+     *
+     *   Representation invariant:
+     *      posts != null && posts.length > 0
+     *      && 0 <= head < posts.length && 0 <= count <= posts.length
+     *      && (count < posts.length => !truncated)
+     *
+     */
+
+    private final Object[] posts;
+    private int head;
+    private int count;
+    private boolean truncated;
+
+    /**
+     * Costruttore della classe Inbox
+     *
+     * @param capacity numero massimo di posts contenuti
+     * @throws IllegalArgumentException se capacity non è positiva
+     */
+    Inbox(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException();
+        this.posts = new Object[capacity];
+    }
+
+    /**
+     * Aggiunge un post come il più recente, scartando il più vecchio se la casella è piena
+     *
+     * @param post il post da aggiungere
+     * @modifies this
+     */
+    void push(E post) {
+        posts[head] = post;
+        head = (head + 1) % posts.length;
+        if (count < posts.length)
+            count++;
+        else
+            truncated = true;
+    }
+
+    /**
+     * Segna la casella come incompleta, quando è stata riempita con i soli ultimi posts
+     * di un feed che ne contiene di più
+     *
+     * @modifies this.truncated
+     */
+    void markTruncated() {
+        truncated = true;
+    }
+
+    /**
+     * Numero di posts presenti
+     *
+     * @return (count)
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Indica se la casella ha scartato dei posts, e quindi non li contiene più tutti
+     *
+     * @return (truncated)
+     */
+    boolean truncated() {
+        return truncated;
+    }
+
+    /**
+     * Ultimi posts della casella, dal più recente
+     *
+     * @param limit numero massimo di posts
+     * @return (list) al più limit posts, dal più recente al meno recente
+     */
+    List<E> latest(int limit) {
+        int n = Math.min(limit, count);
+        List<E> latest = new ArrayList<>(n);
+        for (int i = 1; i <= n; i++) {
+            // Il buffer è un Object[] (gli array generici non si possono creare), ma add vi scrive solo E
+            @SuppressWarnings("unchecked")
+            E post = (E) posts[Math.floorMod(head - i, posts.length)];
+            latest.add(post);
+        }
+        return latest;
+    }
+}
@@ -0,0 +1,411 @@
+package app;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+public class Journal implements Closeable {
+
+    /*
+     *   Overview:
+     *      Log binario append-only (write-ahead log) delle operazioni che modificano una board.
+     *      Ogni record è scritto nel formato <length, body, crc32>, dove body contiene
+     *      <op, id, timestamp, #args, args...>, dove ogni argomento è scritto come la sua lunghezza
+     *      (int) seguita dai suoi byte UTF-8, per cui non ha limiti di dimensione.
+     *      Un record può essere codificato (encode) prima di eseguire l'operazione che descrive,
+     *      così che un errore di codifica non lasci la board ed il log disallineati.
+     *      I record vengono accumulati in un buffer in memoria e resi persistenti su disco
+     *      (write + fsync) a gruppi: un thread in background esegue il commit ogni syncInterval
+     *      millisecondi, se ci sono record non ancora sincronizzati, così le scritture
+     *      non pagano una fsync ciascuna. I buffer sono due: il commit scambia quello pieno
+     *      con quello vuoto e scrive il primo senza tenere il lock del log, per cui gli append
+     *      proseguono nel secondo durante la fsync. Se un commit fallisce l'errore viene
+     *      conservato e rilanciato da ogni append e sync successivo, così che nessuna scrittura
+     *      venga considerata riuscita dopo aver perso dei record.
+     *      Ogni append restituisce la posizione del record nel file, per cui il log si può
+     *      accorciare eliminando solo i record che precedono una certa posizione (truncateBefore):
+     *      la coda viene copiata in un nuovo file che sostituisce atomicamente il log,
+     *      mentre gli append proseguono nel buffer in memoria.
+     *      In lettura (replay) ci si ferma al primo record incompleto o corrotto,
+     *      che corrisponde ad una scrittura interrotta da un crash, e si tronca il file
+     *      in quel punto, così che i record aggiunti in seguito restino leggibili.
+     *
+     *   Abstraction function:
+     *      <path, channel, length, pending, spare, failure, flusher>, dove:
+     *          path (path)         è il percorso del file di log
+     *          channel (channel)   è il canale del file di log, aperto in append
+     *          length (long)       è la lunghezza del log, contando anche i record non ancora su disco
+     *          pending (stream)    è il buffer in cui vengono scritti i nuovi record
+     *          spare (stream)      è il buffer in scrittura su disco durante un commit
+     *          failure (exception) è l'errore dell'ultimo commit fallito, null se non ce ne sono
+     *          flusher (executor)  è il thread che esegue il commit di gruppo
+     *
+     *   Representation invariant:
+     *      channel != null && pending != null && spare != null && flusher != null
+     *      && pending != spare && length == channel.size + pending.size + spare.size
+     *      && failure == null && pending.size == 0 => tutti i record scritti sono su disco
+     *      && pending e length sono protetti da this, spare e channel da flushLock
+     *
+     */
+
+    // Codici delle operazioni registrate nel log
+    public static final byte CREATE_CATEGORY = 1;
+    public static final byte REMOVE_CATEGORY = 2;
+    public static final byte ADD_FRIEND = 3;
+    public static final byte REMOVE_FRIEND = 4;
+    public static final byte PUT = 5;
+    public static final byte REMOVE = 6;
+    // Toggle di un like, scritto dai log precedenti ad ADD_LIKE e REMOVE_LIKE
+    public static final byte LIKE = 7;
+    // Inizio di un checkpoint: id è il numero della fotografia, che contiene i record precedenti
+    public static final byte CHECKPOINT = 8;
+    // Like con il suo stato finale: rieseguirli su una fotografia che li contiene già non cambia nulla
+    public static final byte ADD_LIKE = 9;
+    public static final byte REMOVE_LIKE = 10;
+
+    /**
+     * Record letto dal log
+     */
+    public static final class Record {
+        public final byte op;
+        public final long id;
+        public final long timestamp;
+        public final String[] args;
+
+        Record(byte op, long id, long timestamp, String[] args) {
+            this.op = op;
+            this.id = id;
+            this.timestamp = timestamp;
+            this.args = args;
+        }
+    }
+
+    private final Path path;
+    private FileChannel channel;
+    private OutputStream channelOut;
+    private long length;
+    private final Object flushLock;
+    private final ScheduledExecutorService flusher;
+    private ByteArrayOutputStream pending;
+    private ByteArrayOutputStream spare;
+    private IOException failure;
+
+    /**
+     * Apre (o crea) un log in append
+     *
+     * @param path           percorso del file di log
+     * @param syncIntervalMs intervallo in millisecondi tra due commit di gruppo
+     * @throws IOException se il file non può essere aperto
+     */
+    public Journal(Path path, long syncIntervalMs)
+            throws IOException {
+
+        if (syncIntervalMs <= 0)
+            throw new IllegalArgumentException();
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.channelOut = Channels.newOutputStream(channel);
+        this.length = channel.size();
+        this.flushLock = new Object();
+        this.pending = new ByteArrayOutputStream(1 << 16);
+        this.spare = new ByteArrayOutputStream(1 << 16);
+        this.failure = null;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "journal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(() -> {
+            try {
+                this.sync();
+            } catch (IOException e) {
+                // sync ha conservato l'errore, che verrà rilanciato dal prossimo append o sync
+            }
+        }, syncIntervalMs, syncIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Codifica un record nel formato del log <length, body, crc32>, senza scriverlo
+     *
+     * @param op        codice dell'operazione
+     * @param id        identificativo del post coinvolto (0 se non serve)
+     * @param timestamp timestamp del post coinvolto (0 se non serve)
+     * @param args      argomenti testuali dell'operazione, al più 255
+     * @return (record) i byte del record, da passare ad append
+     * @throws IllegalArgumentException se gli argomenti sono più di 255
+     */
+    public static byte[] encode(byte op, long id, long timestamp, String... args) {
+        if (args.length > 0xFF)
+            throw new IllegalArgumentException();
+        byte[][] encoded = new byte[args.length][];
+        int length = Byte.BYTES + Long.BYTES + Long.BYTES + Byte.BYTES;
+        for (int i = 0; i < args.length; i++) {
+            encoded[i] = args[i].getBytes(StandardCharsets.UTF_8);
+            length += Integer.BYTES + encoded[i].length;
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + length + Integer.BYTES);
+        record.putInt(length);
+        record.put(op);
+        record.putLong(id);
+        record.putLong(timestamp);
+        record.put((byte) args.length);
+        for (byte[] arg : encoded) {
+            record.putInt(arg.length);
+            record.put(arg);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), Integer.BYTES, length);
+        record.putInt((int) crc.getValue());
+        return record.array();
+    }
+
+    /**
+     * Aggiunge un record al log; il record diventa persistente al prossimo commit di gruppo
+     *
+     * @param op        codice dell'operazione
+     * @param id        identificativo del post coinvolto (0 se non serve)
+     * @param timestamp timestamp del post coinvolto (0 se non serve)
+     * @param args      argomenti testuali dell'operazione
+     * @return (position) la posizione del record nel log
+     * @throws IOException se un commit precedente è fallito
+     * @modifies this.pending, this.length
+     */
+    public long append(byte op, long id, long timestamp, String... args)
+            throws IOException {
+        return this.append(encode(op, id, timestamp, args));
+    }
+
+    /**
+     * Aggiunge un record già codificato al log; il record diventa persistente al prossimo
+     * commit di gruppo
+     *
+     * @param record il record restituito da encode
+     * @return (position) la posizione del record nel log
+     * @throws IOException se un commit precedente è fallito
+     * @modifies this.pending, this.length
+     */
+    public synchronized long append(byte[] record)
+            throws IOException {
+
+        this.checkFailure();
+        this.pending.write(record);
+        this.length += record.length;
+        return this.length - record.length;
+    }
+
+    /**
+     * Rende persistenti su disco tutti i record scritti finora (write + fsync); durante
+     * la scrittura gli append possono proseguire nell'altro buffer
+     *
+     * @throws IOException se la sincronizzazione fallisce, o è fallita in precedenza
+     * @modifies this.pending, this.spare, this.failure
+     */
+    public void sync()
+            throws IOException {
+
+        synchronized (this.flushLock) {
+            ByteArrayOutputStream batch;
+            synchronized (this) {
+                this.checkFailure();
+                if (this.pending.size() == 0)
+                    return;
+                batch = this.pending;
+                this.pending = this.spare;
+                this.spare = batch;
+            }
+            try {
+                batch.writeTo(this.channelOut);
+                this.channel.force(false);
+            } catch (IOException e) {
+                synchronized (this) {
+                    this.failure = e;
+                }
+                throw e;
+            } finally {
+                batch.reset();
+            }
+        }
+    }
+
+    // Rilancia l'errore dell'ultimo commit fallito, se c'è
+    private synchronized void checkFailure()
+            throws IOException {
+
+        if (this.failure != null)
+            throw new IOException("commit del log fallito", this.failure);
+    }
+
+    /**
+     * Tronca il log, ad esempio dopo averne salvato il contenuto in uno snapshot
+     *
+     * @throws IOException se l'operazione fallisce
+     * @modifies this
+     * @effects post(this) = []
+     */
+    public void truncate()
+            throws IOException {
+
+        synchronized (this.flushLock) {
+            synchronized (this) {
+                this.checkFailure();
+                this.pending.reset();
+                this.channel.truncate(0);
+                this.channel.force(true);
+                this.length = 0;
+            }
+        }
+    }
+
+    /**
+     * Elimina i record che precedono una posizione, ad esempio quelli già contenuti in uno snapshot.
+     * I record già su disco da quella posizione in poi vengono copiati in un nuovo file,
+     * che sostituisce atomicamente il log; durante la copia gli append proseguono in memoria
+     * e solo i commit di gruppo attendono
+     *
+     * @param position posizione di un record restituita da append, già resa persistente da sync
+     * @throws IOException              se l'operazione fallisce
+     * @throws IllegalArgumentException se la posizione non è nella parte del log già su disco
+     * @modifies this
+     * @effects post(this) = pre(this) senza i record che precedono position
+     */
+    public void truncateBefore(long position)
+            throws IOException {
+
+        synchronized (this.flushLock) {
+            this.checkFailure();
+            long size = this.channel.size();
+            if (position < 0 || position > size)
+                throw new IllegalArgumentException();
+            Path temp = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+            try (FileChannel in = FileChannel.open(this.path, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                         StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (long copied = position; copied < size; )
+                    copied += in.transferTo(copied, size - copied, out);
+                out.force(true);
+            }
+            Files.move(temp, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.channel.close();
+            this.channel = FileChannel.open(this.path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            this.channelOut = Channels.newOutputStream(this.channel);
+            synchronized (this) {
+                this.length -= position;
+            }
+        }
+    }
+
+    /**
+     * Sincronizza i record pendenti e chiude il log
+     *
+     * @throws IOException se la chiusura fallisce
+     */
+    @Override
+    public void close()
+            throws IOException {
+
+        // Il commit in corso non va interrotto: l'interruzione chiuderebbe il canale
+        this.flusher.shutdown();
+        try {
+            this.flusher.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            this.sync();
+        } finally {
+            synchronized (this.flushLock) {
+                this.channel.close();
+            }
+        }
+    }
+
+    /**
+     * Rilegge in ordine tutti i record completi di un log, troncando l'eventuale
+     * coda incompleta o corrotta
+     *
+     * @param path   percorso del file di log
+     * @param action azione da eseguire su ogni record
+     * @return (count) il numero di record letti
+     * @throws IOException se il file non può essere letto
+     */
+    public static long replay(Path path, Consumer<Record> action)
+            throws IOException {
+
+        if (!Files.exists(path))
+            return 0;
+        long count = 0;
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            while (true) {
+                byte[] body;
+                int checksum;
+                try {
+                    int length = in.readInt();
+                    if (length < 0)
+                        break;
+                    body = in.readNBytes(length);
+                    if (body.length < length)
+                        break;
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(body);
+                if ((int) crc.getValue() != checksum)
+                    break;
+                Record record = decode(body);
+                if (record == null)
+                    break;
+                action.accept(record);
+                valid += Integer.BYTES + body.length + Integer.BYTES;
+                count++;
+            }
+        }
+        if (Files.size(path) > valid)
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        return count;
+    }
+
+    /**
+     * Decodifica il corpo di un record
+     *
+     * @param body il corpo del record, con checksum già verificato
+     * @return (record) il record, oppure null se il corpo non è ben formato
+     */
+    private static Record decode(byte[] body) {
+        ByteBuffer in = ByteBuffer.wrap(body);
+        try {
+            byte op = in.get();
+            long id = in.getLong();
+            long timestamp = in.getLong();
+            String[] args = new String[in.get() & 0xFF];
+            for (int i = 0; i < args.length; i++) {
+                int length = in.getInt();
+                if (length < 0 || length > in.remaining())
+                    return null;
+                args[i] = new String(body, in.position(), length, StandardCharsets.UTF_8);
+                in.position(in.position() + length);
+            }
+            return in.hasRemaining() ? null : new Record(op, id, timestamp, args);
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+}
@@ -2,8 +2,20 @@ package app;
 
 import app.exception.*;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class Main {
 
@@ -35,9 +47,376 @@ public class Main {
             System.exit(-2);
         }
 
+        System.out.println("\nTest terza implementazione di Board...");
+        Board3<Data> board3 = new Board3<>(username, password);
+        try {
+            doTest(board3);
+        } catch (TestFailException e) {
+            System.out.println("Unrecoverable error! Check your tests.");
+            System.exit(-2);
+        }
+
+        System.out.println("\nTest BoardRegistry...");
+        try {
+            doRegistryTest();
+        } catch (TestFailException e) {
+            System.out.println("Unrecoverable error! Check your tests.");
+            System.exit(-2);
+        }
+
+        System.out.println("\nTest FeedAggregator...");
+        try {
+            doAggregatorTest();
+        } catch (TestFailException e) {
+            System.out.println("Unrecoverable error! Check your tests.");
+            System.exit(-2);
+        }
+
+        System.out.println("\nTest caselle fan-out-on-write...");
+        try {
+            doInboxTest();
+        } catch (TestFailException e) {
+            System.out.println("Unrecoverable error! Check your tests.");
+            System.exit(-2);
+        }
+
+        System.out.println("\nTest persistenza (log e fotografie)...");
+        try {
+            doDurabilityTest();
+        } catch (TestFailException e) {
+            System.out.println("Unrecoverable error! Check your tests.");
+            System.exit(-2);
+        }
+
         System.out.println("\n#== Test completato ==#");
     }
 
+    private static void doDurabilityTest() throws TestFailException {
+
+        // Durability
+        System.out.println("\n+ Durability:");
+        Path directory;
+        try {
+            directory = Files.createTempDirectory("pr2-durability");
+        } catch (IOException e) {
+            throw new TestFailException();
+        }
+        for (int kind = 1; kind <= 2; kind++) {
+            String name = "Board" + kind;
+            Path log = directory.resolve(name + ".log");
+            Path snapshot = directory.resolve(name + ".log.snapshot");
+            List<String> expected;
+
+            // replay
+            try {
+                DurableBoard board = openDurable(kind, log);
+                board.createCategory("Sport", password);
+                board.createCategory("Cinema", password);
+                board.addFriend("Sport", password, "Giulia");
+                board.addFriend("Cinema", password, "Marco");
+                Data shared = new Data(username, "<Shared>", "Sport");
+                board.put(password, shared, "Sport");
+                // Lo stesso post inserito più volte deve restare un unico oggetto dopo il replay
+                board.put(password, shared, "Sport");
+                board.putAll(password, List.of(new Data(username, "<Film>", "Cinema"), new Data(username, "<Trailer>", "Cinema")), "Cinema");
+                board.insertLike("Giulia", shared);
+                board.likeAll("Marco", board.getDataCategory(password, "Cinema"));
+                expected = dumpDurable(board);
+                board.close();
+
+                board = openDurable(kind, log);
+                if (!dumpDurable(board).equals(expected)) throw new TestFailException();
+                List<Data> copies = board.getDataCategory(password, "Sport");
+                if (copies.size() != 2 || copies.get(0) != copies.get(1)) throw new TestFailException();
+                board.remove(password, copies.get(0));
+                if (board.getDataCategory(password, "Sport").get(0).getLikesCounter() != 1) throw new TestFailException();
+                expected = dumpDurable(board);
+                board.close();
+                System.out.println("\t+ replay (" + name + "): ✅");
+            } catch (IOException | EmptyFieldException | DuplicateItemException | ItemNotFoundException
+                    | UnauthorizedException | NotAllowedException | IllegalStateException | TestFailException e) {
+                System.out.println("\t+ replay (" + name + "): ❌");
+                continue;
+            }
+
+            // replay->coda corrotta
+            try {
+                long valid = Files.size(log);
+                byte[] corrupt = Journal.encode(Journal.CREATE_CATEGORY, 0, 0, "Corrupt");
+                corrupt[corrupt.length - 1] ^= 1;
+                Files.write(log, corrupt, StandardOpenOption.APPEND);
+                // Scrittura interrotta: la lunghezza annuncia più byte di quelli presenti
+                Files.write(log, new byte[]{0, 0, 0, 50, 1, 2}, StandardOpenOption.APPEND);
+                DurableBoard board = openDurable(kind, log);
+                if (!dumpDurable(board).equals(expected) || Files.size(log) != valid) throw new TestFailException();
+                board.createCategory("Corrupt", password);
+                board.close();
+                board = openDurable(kind, log);
+                board.getDataCategory(password, "Corrupt");
+                board.removeCategory("Corrupt", password);
+                board.close();
+                System.out.println("\t+ replay->coda corrotta (" + name + "): ✅");
+            } catch (IOException | EmptyFieldException | DuplicateItemException | ItemNotFoundException
+                    | UnauthorizedException | IllegalStateException | TestFailException e) {
+                System.out.println("\t+ replay->coda corrotta (" + name + "): ❌");
+            }
+
+            // checkpoint
+            try {
+                Path stale = directory.resolve(name + ".stale");
+                Files.copy(log, stale);
+                DurableBoard board = openDurable(kind, log);
+                board.checkpoint();
+                List<String> checkpointed = dumpDurable(board);
+                board.put(password, new Data(username, "<After>", "Cinema"), "Cinema");
+                expected = dumpDurable(board);
+                board.close();
+                board = openDurable(kind, log);
+                if (!dumpDurable(board).equals(expected)) throw new TestFailException();
+                board.close();
+
+                // Crash tra fotografia e troncamento: il log dell'epoch precedente va ignorato
+                Files.copy(stale, log, StandardCopyOption.REPLACE_EXISTING);
+                board = openDurable(kind, log);
+                if (!dumpDurable(board).equals(checkpointed)) throw new TestFailException();
+                board.close();
+                board = openDurable(kind, log);
+                if (!dumpDurable(board).equals(checkpointed)) throw new TestFailException();
+                board.close();
+                System.out.println("\t+ checkpoint (" + name + "): ✅");
+            } catch (IOException | EmptyFieldException | ItemNotFoundException | UnauthorizedException
+                    | IllegalStateException | TestFailException e) {
+                System.out.println("\t+ checkpoint (" + name + "): ❌");
+            }
+
+            // snapshot
+            try {
+                DurableBoard board = openDurable(kind, log);
+                board.createCategory("Temp", password);
+                board.addFriend("Temp", password, "Giulia");
+                Data temp = new Data(username, "<Temp>", "Temp");
+                board.put(password, temp, "Temp");
+                board.insertLike("Giulia", temp);
+                board.removeCategory("Temp", password);
+                board.checkpoint();
+                expected = dumpDurable(board);
+                board.close();
+                // Senza log il ripristino legge solo la fotografia
+                Files.delete(log);
+                board = openDurable(kind, log);
+                List<String> restored = dumpDurable(board);
+                board.close();
+                // Board1 mantiene i posts delle categorie rimosse, con i loro likes
+                if (!restored.equals(expected)
+                        || (kind == 1) != restored.contains("<Temp>/Temp[Giulia]")
+                        || !restored.contains("<Film>/Cinema[Marco]"))
+                    throw new TestFailException();
+                System.out.println("\t+ snapshot (" + name + "): ✅");
+            } catch (IOException | EmptyFieldException | DuplicateItemException | ItemNotFoundException
+                    | UnauthorizedException | NotAllowedException | IllegalStateException | TestFailException e) {
+                System.out.println("\t+ snapshot (" + name + "): ❌");
+            }
+
+            for (Path file : List.of(log, snapshot, directory.resolve(name + ".stale")))
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    // Il file resta nella cartella temporanea
+                }
+        }
+    }
+
+    // Apre una board persistente sul log, ricostruendone lo stato
+    private static DurableBoard openDurable(int kind, Path log)
+            throws EmptyFieldException, UnauthorizedException, IOException {
+        Board<Data> delegate = kind == 1 ? new Board1<>(username, password) : new Board2<>(username, password);
+        return new DurableBoard(delegate, password, log);
+    }
+
+    // Stato osservabile di una board: contenuto, categoria e likes di ogni post, in ordine
+    private static List<String> dumpDurable(DataBoard<Data> board)
+            throws EmptyFieldException, UnauthorizedException {
+        List<String> dump = new ArrayList<>();
+        for (Iterator<Data> it = board.getIterator(password); it.hasNext(); ) {
+            Data post = it.next();
+            dump.add(post.getContent() + "/" + post.getCategory() + new TreeSet<>(post.getLikes()));
+        }
+        for (String friend : List.of("Giulia", "Marco"))
+            for (Iterator<Data> it = board.getFriendIterator(friend); it.hasNext(); )
+                dump.add(friend + ":" + it.next().getContent());
+        Collections.sort(dump);
+        return dump;
+    }
+
+    private static void doInboxTest() throws TestFailException {
+
+        // Inbox
+        System.out.println("\n+ Inbox:");
+        List<DataBoard<Data>> boards = new ArrayList<>();
+        try {
+            boards.add(new Board1<>("Luca", password, 3));
+            boards.add(new Board2<>("Sofia", password, 3));
+            boards.add(new Board3<>("Marco", password));
+        } catch (EmptyFieldException e) {
+            throw new TestFailException();
+        }
+        for (DataBoard<Data> board : boards) {
+            String name = board.getClass().getSimpleName();
+            try {
+                List<Data> shared = new ArrayList<>();
+                for (String category : List.of("Sport", "Cinema", "Private"))
+                    board.createCategory(category, password);
+                board.addFriend("Sport", password, "Giulia");
+                board.addFriend("Cinema", password, "Giulia");
+                for (int i = 0; i < 9; i++) {
+                    String category = List.of("Sport", "Cinema", "Private").get(i % 3);
+                    Data post = new Data("Luca", "<Inbox" + i + ">", category);
+                    board.put(password, post, category);
+                    if (!category.equals("Private"))
+                        shared.add(0, post);
+                    // La prima lettura crea la casella, le successive la trovano aggiornata dai put
+                    if (i % 4 == 1 && !board.getTimeline("Giulia", 2).equals(shared.subList(0, Math.min(2, shared.size()))))
+                        throw new TestFailException();
+                }
+                if (!board.getTimeline("Giulia", 3).equals(shared.subList(0, 3))
+                        || !board.getTimeline("Giulia", 10).equals(shared)
+                        || !board.getTimeline("Nessuno", 3).isEmpty())
+                    throw new TestFailException();
+                board.remove(password, shared.remove(0));
+                if (!board.getTimeline("Giulia", 3).equals(shared.subList(0, 3))) throw new TestFailException();
+                board.removeFriend("Cinema", password, "Giulia");
+                shared.removeIf(post -> post.getCategory().equals("Cinema"));
+                if (!board.getTimeline("Giulia", 10).equals(shared)) throw new TestFailException();
+                System.out.println("\t+ getTimeline (" + name + "): ✅");
+            } catch (EmptyFieldException | DuplicateItemException | ItemNotFoundException | UnauthorizedException | TestFailException e) {
+                System.out.println("\t+ getTimeline (" + name + "): ❌");
+            }
+
+            // getTimeline->IllegalArgument
+            try {
+                board.getTimeline("Giulia", 0);
+                System.out.println("\t+ getTimeline->IllegalArgument (" + name + "): ❌");
+            } catch (IllegalArgumentException e) {
+                System.out.println("\t+ getTimeline->IllegalArgument (" + name + "): ✅");
+            } catch (EmptyFieldException e) {
+                System.out.println("\t+ getTimeline->IllegalArgument (" + name + "): ❌");
+            }
+        }
+    }
+
+    private static void doAggregatorTest() throws TestFailException {
+
+        // Timeline
+        System.out.println("\n+ Timeline:");
+        List<DataBoard<Data>> boards = new ArrayList<>();
+        List<Data> published = new ArrayList<>();
+        try {
+            boards.add(new Board1<>("Luca", password));
+            boards.add(new Board2<>("Sofia", password));
+            boards.add(new Board3<>("Marco", password));
+            for (DataBoard<Data> board : boards) {
+                board.createCategory("Timeline", password);
+                board.addFriend("Timeline", password, "Giulia");
+                board.addFriend("Timeline", password, "Fan0");
+                board.addFriend("Timeline", password, "Fan1");
+                board.createCategory("Private", password);
+            }
+            // Coppie di posts consecutivi, su board diverse, hanno lo stesso numero di like
+            for (int i = 0; i < 6; i++) {
+                DataBoard<Data> board = boards.get(i % boards.size());
+                Data post = new Data("Luca", "<Timeline" + (5 - i) + ">", "Timeline");
+                board.put(password, post, "Timeline");
+                for (int like = 0; like < (5 - i) / 2; like++)
+                    board.insertLike("Fan" + like, post);
+                board.put(password, new Data("Luca", "<Private" + i + ">", "Private"), "Private");
+                published.add(post);
+            }
+        } catch (EmptyFieldException | DuplicateItemException | ItemNotFoundException | UnauthorizedException
+                | NotAllowedException e) {
+            throw new TestFailException();
+        }
+
+        // timeline
+        try {
+            List<Data> oldest = new ArrayList<>(published);
+            List<Data> newest = new ArrayList<>(published);
+            Collections.reverse(newest);
+            List<Data> liked = new ArrayList<>(published);
+            liked.sort(Comparator.comparingInt(Data::getLikesCounter).reversed().thenComparing(Data::getContent));
+            if (!timeline(boards, FeedAggregator.Order.NEWEST).equals(newest)
+                    || !timeline(boards, FeedAggregator.Order.OLDEST).equals(oldest)
+                    || !timeline(boards, FeedAggregator.Order.MOST_LIKED).equals(liked)) throw new TestFailException();
+            System.out.println("\t+ timeline: ✅");
+        } catch (EmptyFieldException | TestFailException e) {
+            System.out.println("\t+ timeline: ❌");
+        }
+    }
+
+    private static List<Data> timeline(List<DataBoard<Data>> boards, FeedAggregator.Order order)
+            throws EmptyFieldException {
+        List<Data> posts = new ArrayList<>();
+        FeedAggregator.timeline(boards, "Giulia", order).forEachRemaining(posts::add);
+        return posts;
+    }
+
+    private static void doRegistryTest() throws TestFailException {
+
+        // Registry
+        System.out.println("\n+ Registry:");
+        List<String> owners = List.of("Luca", "Giulia", "Sofia", "Alessandro", "Marco", "Chiara");
+        try (BoardRegistry<Data> registry = new BoardRegistry<>(3, Board1::new)) {
+
+            // register/submit
+            try {
+                List<CompletableFuture<Void>> pending = new ArrayList<>();
+                for (String owner : owners)
+                    pending.add(registry.register(owner, password).thenCompose(v -> registry.submit(owner, board -> {
+                        board.createCategory("Registry", password);
+                        board.put(password, new Data(owner, "<" + owner + ">", "Registry"), "Registry");
+                        return null;
+                    })));
+                CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+                for (String owner : owners)
+                    if (!registry.call(owner, board -> board.getDataCategory(password, "Registry").get(0).getAuthor()).equals(owner))
+                        throw new TestFailException();
+                if (registry.size().join() != owners.size()) throw new TestFailException();
+                System.out.println("\t+ submit: ✅");
+            } catch (Exception e) {
+                System.out.println("\t+ submit: ❌");
+            }
+
+            // register->DuplicateItem
+            try {
+                registry.call("Luca", board -> null);
+                registry.register("Luca", password).join();
+                System.out.println("\t\t+ DuplicateItem: ❌");
+            } catch (CompletionException e) {
+                System.out.println(e.getCause() instanceof DuplicateItemException ? "\t\t+ DuplicateItem: ✅" : "\t\t+ DuplicateItem: ❌");
+            } catch (Exception e) {
+                System.out.println("\t\t+ DuplicateItem: ❌");
+            }
+
+            // unregister->Unauthorized
+            try {
+                registry.unregister("Luca", wrongPassword).join();
+                System.out.println("\t\t+ Unauthorized: ❌");
+            } catch (CompletionException e) {
+                System.out.println(e.getCause() instanceof UnauthorizedException ? "\t\t+ Unauthorized: ✅" : "\t\t+ Unauthorized: ❌");
+            }
+
+            // unregister
+            try {
+                registry.unregister("Luca", password).join();
+                registry.call("Luca", board -> null);
+                System.out.println("\t+ unregister: ❌");
+            } catch (ItemNotFoundException e) {
+                System.out.println("\t+ unregister: ✅");
+            } catch (Exception e) {
+                System.out.println("\t+ unregister: ❌");
+            }
+        }
+    }
+
     private static void doTest(Board<Data> board) throws TestFailException {
 
         // Categories
@@ -476,6 +855,27 @@ public class Main {
             System.out.println("\t\t+ EmptyField: ✅");
         }
 
+        // getTopIterator
+        try {
+            Iterator<Data> topIterator = board.getTopIterator(password, 2);
+            if (topIterator.next().getLikesCounter() != 2) throw new TestFailException();
+            if (topIterator.next().getLikesCounter() != 1) throw new TestFailException();
+            if (topIterator.hasNext()) throw new TestFailException();
+            System.out.println("\t+ getTopIterator: ✅");
+        } catch (EmptyFieldException | UnauthorizedException | TestFailException e) {
+            System.out.println("\t+ getTopIterator: ❌");
+        }
+
+        // getTopIterator->Unauthorized
+        try {
+            board.getTopIterator(wrongPassword, 2);
+            System.out.println("\t\t+ Unauthorized: ❌");
+        } catch (EmptyFieldException e) {
+            System.out.println("\t\t+ Unauthorized: ❌");
+        } catch (UnauthorizedException e) {
+            System.out.println("\t\t+ Unauthorized: ✅");
+        }
+
         // getFriendIterator
         try {
             Iterator<Data> friendIterator = board.getFriendIterator("Danila");
@@ -494,6 +894,362 @@ public class Main {
             System.out.println("\t\t+ EmptyField: ✅");
         }
 
+        // Batch
+        System.out.println("\n+ Batch:");
+        List<Data> batch = new ArrayList<>();
+        try {
+            board.createCategory("Batch", password);
+            board.addFriend("Batch", password, "Giulia");
+            for (int i = 0; i < 3; i++)
+                batch.add(new Data(username, "<Batch" + i + ">", "Batch"));
+        } catch (UnauthorizedException | EmptyFieldException | DuplicateItemException | ItemNotFoundException e) {
+            throw new TestFailException();
+        }
+
+        // putAll
+        try {
+            board.putAll(password, batch, "Batch");
+            if (board.getDataCategory(password, "Batch").size() != 3) throw new TestFailException();
+            System.out.println("\t+ putAll: ✅");
+        } catch (EmptyFieldException | ItemNotFoundException | UnauthorizedException | TestFailException e) {
+            System.out.println("\t+ putAll: ❌");
+        }
+
+        // putAll->ItemNotFound
+        try {
+            board.putAll(password, batch, "Videogames");
+            System.out.println("\t\t+ ItemNotFound: ❌");
+        } catch (EmptyFieldException | UnauthorizedException e) {
+            System.out.println("\t\t+ ItemNotFound: ❌");
+        } catch (ItemNotFoundException e) {
+            System.out.println("\t\t+ ItemNotFound: ✅");
+        }
+
+        // likeAll
+        try {
+            board.likeAll("Giulia", batch.subList(0, 2));
+            if (batch.get(0).getLikesCounter() != 1 || batch.get(1).getLikesCounter() != 1
+                    || batch.get(2).getLikesCounter() != 0) throw new TestFailException();
+            System.out.println("\t+ likeAll: ✅");
+        } catch (EmptyFieldException | ItemNotFoundException | NotAllowedException | TestFailException e) {
+            System.out.println("\t+ likeAll: ❌");
+        }
+
+        // likeAll->NotAllowed, senza like parziali
+        try {
+            board.likeAll("Sofia", batch);
+            System.out.println("\t\t+ NotAllowed: ❌");
+        } catch (EmptyFieldException | ItemNotFoundException e) {
+            System.out.println("\t\t+ NotAllowed: ❌");
+        } catch (NotAllowedException e) {
+            if (batch.get(2).getLikesCounter() == 0)
+                System.out.println("\t\t+ NotAllowed: ✅");
+            else
+                System.out.println("\t\t+ NotAllowed: ❌");
+        }
+
+        // Pages
+        System.out.println("\n+ Pages:");
+
+        // getDataCategory (paginata)
+        try {
+            Page<Data> first = board.getDataCategory(password, "Batch", null, 2);
+            Page<Data> second = board.getDataCategory(password, "Batch", first.getNextCursor(), 2);
+            if (first.getItems().size() != 2 || !first.hasNext() || second.getItems().size() != 1
+                    || second.hasNext() || second.getItems().get(0) != batch.get(2)) throw new TestFailException();
+            System.out.println("\t+ getDataCategory: ✅");
+        } catch (EmptyFieldException | ItemNotFoundException | UnauthorizedException | TestFailException e) {
+            System.out.println("\t+ getDataCategory: ❌");
+        }
+
+        // getPage
+        try {
+            List<Data> ranked = new ArrayList<>();
+            board.getIterator(password).forEachRemaining(ranked::add);
+            List<Data> paged = new ArrayList<>();
+            String cursor = null;
+            do {
+                Page<Data> page = board.getPage(password, cursor, 1);
+                paged.addAll(page.getItems());
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+            if (!paged.equals(ranked)) throw new TestFailException();
+            System.out.println("\t+ getPage: ✅");
+        } catch (EmptyFieldException | UnauthorizedException | TestFailException e) {
+            System.out.println("\t+ getPage: ❌");
+        }
+
+        // getFriendPage
+        try {
+            List<Data> shared = new ArrayList<>();
+            board.getFriendIterator("Giulia").forEachRemaining(shared::add);
+            List<Data> paged = new ArrayList<>();
+            String cursor = null;
+            do {
+                Page<Data> page = board.getFriendPage("Giulia", cursor, 2);
+                paged.addAll(page.getItems());
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+            if (paged.size() != shared.size() || !shared.containsAll(paged)) throw new TestFailException();
+            System.out.println("\t+ getFriendPage: ✅");
+        } catch (EmptyFieldException | TestFailException e) {
+            System.out.println("\t+ getFriendPage: ❌");
+        }
+
+        // getPage->IllegalArgument
+        try {
+            board.getPage(password, null, 0);
+            System.out.println("\t\t+ IllegalArgument: ❌");
+        } catch (EmptyFieldException | UnauthorizedException e) {
+            System.out.println("\t\t+ IllegalArgument: ❌");
+        } catch (IllegalArgumentException e) {
+            System.out.println("\t\t+ IllegalArgument: ✅");
+        }
+
+        // Streams
+        System.out.println("\n+ Streams:");
+
+        // stream
+        try {
+            List<Data> all = new ArrayList<>();
+            board.getIterator(password).forEachRemaining(all::add);
+            // Dopo le rimozioni il feed può contenere lapidi: la dimensione è esatta solo se dichiarata
+            Spliterator<Data> spliterator = board.stream(password).spliterator();
+            if ((spliterator.hasCharacteristics(Spliterator.SIZED) && spliterator.estimateSize() != all.size())
+                    || board.stream(password).parallel().count() != all.size()
+                    || board.stream(password).parallel().mapToInt(Data::getLikesCounter).sum()
+                    != all.stream().mapToInt(Data::getLikesCounter).sum()) throw new TestFailException();
+            System.out.println("\t+ stream: ✅");
+        } catch (EmptyFieldException | UnauthorizedException | TestFailException e) {
+            System.out.println("\t+ stream: ❌");
+        }
+
+        // categoryStream
+        try {
+            if (board.categoryStream(password, "Batch").parallel().count() != 3) throw new TestFailException();
+            System.out.println("\t+ categoryStream: ✅");
+        } catch (EmptyFieldException | ItemNotFoundException | UnauthorizedException | TestFailException e) {
+            System.out.println("\t+ categoryStream: ❌");
+        }
+
+        // categoryStream->ItemNotFound
+        try {
+            board.categoryStream(password, "Videogames");
+            System.out.println("\t\t+ ItemNotFound: ❌");
+        } catch (EmptyFieldException | UnauthorizedException e) {
+            System.out.println("\t\t+ ItemNotFound: ❌");
+        } catch (ItemNotFoundException e) {
+            System.out.println("\t\t+ ItemNotFound: ✅");
+        }
+
+        // friendStream
+        try {
+            List<Data> shared = new ArrayList<>();
+            board.getFriendIterator("Giulia").forEachRemaining(shared::add);
+            if (board.friendStream("Giulia").parallel().count() != shared.size()) throw new TestFailException();
+            System.out.println("\t+ friendStream: ✅");
+        } catch (EmptyFieldException | TestFailException e) {
+            System.out.println("\t+ friendStream: ❌");
+        }
+
+        // Time
+        System.out.println("\n+ Time:");
+
+        // getDataSince
+        try {
+            List<Data> all = board.getDataSince(password, Long.MIN_VALUE);
+            long count = board.stream(password).count();
+            for (int i = 1; i < all.size(); i++)
+                if (all.get(i - 1).getTimestamp() >= all.get(i).getTimestamp()) throw new TestFailException();
+            long since = Data.now();
+            Data recent = new Data(username, "<Recent>", "Batch");
+            board.put(password, recent, "Batch");
+            if (all.size() != count || !board.getDataSince(password, since).equals(List.of(recent)))
+                throw new TestFailException();
+            board.remove(password, recent);
+            if (!board.getDataSince(password, since).isEmpty()) throw new TestFailException();
+            System.out.println("\t+ getDataSince: ✅");
+        } catch (EmptyFieldException | ItemNotFoundException | UnauthorizedException | TestFailException e) {
+            System.out.println("\t+ getDataSince: ❌");
+        }
+
+        // getDataBetween
+        try {
+            List<Data> all = board.getDataSince(password, Long.MIN_VALUE);
+            Data middle = all.get(all.size() / 2);
+            List<Data> before = board.getDataBetween(password, Long.MIN_VALUE, middle.getTimestamp());
+            List<Data> after = board.getDataBetween(password, middle.getTimestamp(), Long.MAX_VALUE);
+            if (!before.equals(all.subList(0, all.size() / 2)) || after.get(0) != middle
+                    || before.size() + after.size() != all.size()) throw new TestFailException();
+            System.out.println("\t+ getDataBetween: ✅");
+        } catch (EmptyFieldException | UnauthorizedException | TestFailException e) {
+            System.out.println("\t+ getDataBetween: ❌");
+        }
+
+        // getDataBetween->IllegalArgument
+        try {
+            board.getDataBetween(password, 1, 0);
+            System.out.println("\t\t+ IllegalArgument: ❌");
+        } catch (EmptyFieldException | UnauthorizedException e) {
+            System.out.println("\t\t+ IllegalArgument: ❌");
+        } catch (IllegalArgumentException e) {
+            System.out.println("\t\t+ IllegalArgument: ✅");
+        }
+
+        // Search
+        System.out.println("\n+ Search:");
+
+        // searchCategory
+        try {
+            Data black = new Data(username, "Gatto nero, gatto fortunato!", "Batch");
+            Data dog = new Data(username, "Un cane nero", "Batch");
+            board.put(password, black, "Batch");
+            board.put(password, dog, "Batch");
+            List<Data> cats = board.searchCategory(password, "Batch", "GATTO");
+            List<Data> both = board.searchCategory(password, "Batch", "nero gatto");
+            board.remove(password, black);
+            List<Data> dogs = board.searchCategory(password, "Batch", "gatto cane");
+            board.remove(password, dog);
+            if (!cats.equals(List.of(black)) || !both.equals(List.of(black, dog)) || !dogs.equals(List.of(dog))
+                    || !board.searchCategory(password, "Batch", "nero").isEmpty()) throw new TestFailException();
+            System.out.println("\t+ searchCategory: ✅");
+        } catch (EmptyFieldException | ItemNotFoundException | UnauthorizedException | TestFailException e) {
+            System.out.println("\t+ searchCategory: ❌");
+        }
+
+        // searchFriend
+        try {
+            List<Data> shared = new ArrayList<>();
+            board.getFriendIterator("Giulia").forEachRemaining(shared::add);
+            String word = ContentIndex.tokenize(shared.get(0).getContent()).get(0);
+            List<Data> found = board.searchFriend("Giulia", word);
+            shared.removeIf(post -> !ContentIndex.tokenize(post.getContent()).contains(word));
+            if (found.size() != shared.size() || !shared.containsAll(found)) throw new TestFailException();
+            System.out.println("\t+ searchFriend: ✅");
+        } catch (EmptyFieldException | TestFailException e) {
+            System.out.println("\t+ searchFriend: ❌");
+        }
+
+        // searchCategory->EmptyField
+        try {
+            board.searchCategory(password, "Batch", " ");
+            System.out.println("\t\t+ EmptyField: ❌");
+        } catch (ItemNotFoundException | UnauthorizedException e) {
+            System.out.println("\t\t+ EmptyField: ❌");
+        } catch (EmptyFieldException e) {
+            System.out.println("\t\t+ EmptyField: ✅");
+        }
+
+        // OffHeap
+        System.out.println("\n+ OffHeap:");
+
+        // put/getDataCategory
+        try {
+            ContentArena arena = new ContentArena(64);
+            OffHeapData offHeap = new OffHeapData(arena, username, "<OffHeap " + "x".repeat(100) + ">", "OffHeap");
+            board.createCategory("OffHeap", password);
+            board.addFriend("OffHeap", password, "Giulia");
+            board.put(password, offHeap, "OffHeap");
+            board.insertLike("Giulia", offHeap);
+            List<Data> stored = board.getDataCategory(password, "OffHeap");
+            if (stored.size() != 1 || stored.get(0) != offHeap || offHeap.getLikesCounter() != 1
+                    || !offHeap.clone().getContent().equals("<OffHeap " + "x".repeat(100) + ">")
+                    || !offHeap.getCategory().equals("OffHeap")) throw new TestFailException();
+            System.out.println("\t+ put: ✅");
+        } catch (EmptyFieldException | DuplicateItemException | ItemNotFoundException | NotAllowedException
+                 | UnauthorizedException | TestFailException e) {
+            System.out.println("\t+ put: ❌");
+        }
+
+        // remove: lo spazio del contenuto torna all'arena, il post resta leggibile
+        try {
+            ContentArena arena = new ContentArena(64);
+            OffHeapData offHeap = new OffHeapData(arena, username, "<OffHeap removed>", "OffHeap");
+            board.put(password, offHeap, "OffHeap");
+            board.remove(password, offHeap);
+            long released = arena.freeBytes();
+            OffHeapData reused = new OffHeapData(arena, username, "<OffHeap reused!>", "OffHeap");
+            if (released == 0 || arena.freeBytes() != 0 || arena.reservedBytes() != 64
+                    || !offHeap.getContent().equals("<OffHeap removed>")
+                    || !reused.getContent().equals("<OffHeap reused!>")
+                    || offHeap.compareContent(reused) >= 0 || reused.compareContent(offHeap) <= 0
+                    || reused.compareContent("<OffHeap \uD83D\uDE00>") >= 0)
+                throw new TestFailException();
+            System.out.println("\t+ remove: ✅");
+        } catch (EmptyFieldException | ItemNotFoundException | UnauthorizedException | TestFailException e) {
+            System.out.println("\t+ remove: ❌");
+        }
+
+        // Sessions
+        System.out.println("\n+ Sessions:");
+        Session session = null;
+
+        // login
+        try {
+            session = board.login(password);
+            if (board.getDataCategory(session, "Batch").size() != 3) throw new TestFailException();
+            board.get(session, batch.get(0));
+            System.out.println("\t+ login: ✅");
+        } catch (EmptyFieldException | ItemNotFoundException | UnauthorizedException | TestFailException e) {
+            System.out.println("\t+ login: ❌");
+        }
+
+        // login->Unauthorized
+        try {
+            board.login(wrongPassword);
+            System.out.println("\t\t+ Unauthorized: ❌");
+        } catch (EmptyFieldException e) {
+            System.out.println("\t\t+ Unauthorized: ❌");
+        } catch (UnauthorizedException e) {
+            System.out.println("\t\t+ Unauthorized: ✅");
+        }
+
+        // logout
+        try {
+            board.logout(session);
+            board.getIterator(session);
+            System.out.println("\t+ logout: ❌");
+        } catch (EmptyFieldException e) {
+            System.out.println("\t+ logout: ❌");
+        } catch (UnauthorizedException e) {
+            System.out.println("\t+ logout: ✅");
+        }
+
+        // login->scadenza
+        try {
+            board.setSessionLimits(1, Board.DEFAULT_MAX_SESSIONS);
+            Session idle = board.login(password);
+            Thread.sleep(5);
+            board.getIterator(idle);
+            System.out.println("\t\t+ Expired: ❌");
+        } catch (EmptyFieldException | InterruptedException e) {
+            System.out.println("\t\t+ Expired: ❌");
+        } catch (UnauthorizedException e) {
+            System.out.println("\t\t+ Expired: ✅");
+        }
+
+        // login->limite
+        try {
+            board.setSessionLimits(Board.DEFAULT_SESSION_IDLE_MS, 2);
+            Session first = board.login(password);
+            Session second = board.login(password);
+            board.getIterator(first);
+            // La terza sessione chiude quella usata meno di recente, cioè second
+            Session third = board.login(password);
+            board.getIterator(first);
+            board.getIterator(third);
+            try {
+                board.getIterator(second);
+                System.out.println("\t\t+ Limit: ❌");
+            } catch (UnauthorizedException e) {
+                System.out.println("\t\t+ Limit: ✅");
+            }
+        } catch (EmptyFieldException | UnauthorizedException e) {
+            System.out.println("\t\t+ Limit: ❌");
+        } finally {
+            board.setSessionLimits(Board.DEFAULT_SESSION_IDLE_MS, Board.DEFAULT_MAX_SESSIONS);
+        }
+
         // Misc
         System.out.println("\n+ Misc:");
 
@@ -508,6 +1264,7 @@ public class Main {
 
         // resetPassword
         try {
+            session = board.login(password);
             board.resetPassword(password, newPassword);
             board.authentication(newPassword);
             System.out.println("\t+ resetPassword: ✅");
@@ -525,5 +1282,15 @@ public class Main {
             System.out.println("\t\t+ Unauthorized: ✅");
         }
 
+        // resetPassword->sessioni revocate
+        try {
+            board.getIterator(session);
+            System.out.println("\t\t+ Revoked: ❌");
+        } catch (EmptyFieldException e) {
+            System.out.println("\t\t+ Revoked: ❌");
+        } catch (UnauthorizedException e) {
+            System.out.println("\t\t+ Revoked: ✅");
+        }
+
     }
 }
@@ -0,0 +1,167 @@
+package app;
+
+import app.exception.EmptyFieldException;
+
+public class OffHeapData extends Data {
+
+    /*
+     *   Overview:
+     *      Post che tiene sullo heap solo dei riferimenti compatti ai propri campi testuali,
+     *      pensato per le board con molti posts (ad esempio Board1<OffHeapData> o Board2<OffHeapData>).
+     *      Il contenuto è copiato in un'arena fuori dallo heap (vedi ContentArena.java) e ricostruito
+     *      solo quando viene letto con getContent; le board lo confrontano per ordinare i posts
+     *      (compareContent) direttamente nell'arena, senza ricostruirlo. Autore e categoria,
+     *      che si ripetono tra moltissimi posts, sono sostituiti dalla loro istanza canonica
+     *      (String.intern), per cui tutti i posts condividono una sola copia di ogni nome
+     *      e la leggono senza allocazioni, dato che le board li consultano ad ogni operazione.
+     *      Le board contano gli inserimenti del post (retain e release, vedi Data.java):
+     *      quando l'ultima lo rimuove il contenuto viene spostato sullo heap (released) ed il suo
+     *      spazio restituito all'arena, così chi conserva ancora il post può continuare a leggerlo.
+     *      Una copia condivide con l'originale (owner) il contenuto, il conteggio ed i like.
+     *      Chi legge l'arena senza lock controlla released dopo la lettura: se nel frattempo
+     *      il contenuto è stato rilasciato, il posto può essere stato riusato, e si usa released.
+     *      Per il resto si comporta come Data: il confronto tra posts è per identità.
+     *
+     *   Abstraction function:
+     *      <arena, content, author, category> + Data, dove:
+     *          arena (arena)       è l'arena che contiene il contenuto
+     *          content (long)      è l'handle del contenuto nell'arena, se owner.released == null
+     *          author (string)     è l'istanza canonica del nome dell'autore
+     *          category (string)   è l'istanza canonica del nome della categoria
+     *          owner.released      è il contenuto, se è stato rilasciato
+     *          owner.boards (int)  è il numero di inserimenti del post, o di sue copie, nelle board
+     *
+     *   Representation invariant:
+     *      arena != null && owner != null && owner.owner == owner
+     *      && (owner.released == null ==> arena.load(content) != "") && owner.released != ""
+     *      && owner.boards >= 0
+     *      && author != "" && category != ""
+     *
+     */
+
+    private final OffHeapData owner;
+    private final ContentArena arena;
+    private final long content;
+    private final String author;
+    private final String category;
+    private volatile String released;
+    private int boards;
+
+    /**
+     * Costruttore della classe OffHeapData
+     *
+     * @param arena    arena in cui copiare il contenuto del post
+     * @param author   è il nome del proprietario della board, che pubblica il post
+     * @param content  è il contenuto del post
+     * @param category è il nome della categoria che si vuole associare al post
+     * @throws EmptyFieldException se almeno uno dei tre parametri è una stringa vuota
+     */
+    public OffHeapData(ContentArena arena, String author, String content, String category)
+            throws EmptyFieldException {
+
+        super(null, Data.now());
+        if (author.isBlank() || content.isBlank() || category.isBlank())
+            throw new EmptyFieldException();
+        this.owner = this;
+        this.arena = arena;
+        this.content = arena.store(content);
+        this.author = author.intern();
+        this.category = category.intern();
+    }
+
+    /**
+     * Costruttore di copia, che condivide con l'originale il contenuto nell'arena ed i like
+     *
+     * @param data è il dato che si vuole copiare
+     */
+    public OffHeapData(OffHeapData data) {
+        super(data, data.getTimestamp());
+        this.owner = data.owner;
+        this.arena = data.arena;
+        this.content = data.content;
+        this.author = data.author;
+        this.category = data.category;
+    }
+
+    @Override
+    public String getAuthor() {
+        return author;
+    }
+
+    /**
+     * Getter per il campo content del post, decodificato dall'arena ad ogni chiamata
+     * finché il post è in una board
+     *
+     * @return (content) il contenuto del post
+     */
+    @Override
+    public String getContent() {
+        String content = this.owner.released;
+        if (content == null) {
+            content = this.arena.load(this.content);
+            String released = this.owner.released;
+            if (released != null)
+                content = released;
+        }
+        return content;
+    }
+
+    @Override
+    int compareContent(Data post) {
+        if (!(post instanceof OffHeapData))
+            return this.compareContent(post.getContent());
+        OffHeapData other = (OffHeapData) post;
+        if (this.owner.released == null && other.owner.released == null) {
+            int result = this.arena.compare(this.content, other.arena, other.content);
+            if (this.owner.released == null && other.owner.released == null)
+                return result;
+        }
+        return this.compareContent(other.getContent());
+    }
+
+    @Override
+    int compareContent(String content) {
+        String released = this.owner.released;
+        if (released == null) {
+            int result = this.arena.compare(this.content, content);
+            released = this.owner.released;
+            if (released == null)
+                return result;
+        }
+        return released.compareTo(content);
+    }
+
+    @Override
+    void retain() {
+        synchronized (this.owner) {
+            this.owner.boards++;
+        }
+    }
+
+    /**
+     * Conta la rimozione del post da una board: se era l'ultimo inserimento, sposta il contenuto
+     * sullo heap e ne restituisce lo spazio all'arena
+     *
+     * @modifies this.owner, this.arena
+     */
+    @Override
+    void release() {
+        synchronized (this.owner) {
+            if (--this.owner.boards == 0 && this.owner.released == null) {
+                // released va pubblicato prima di liberare il posto, che da lì può essere riusato
+                this.owner.released = this.arena.load(this.content);
+                this.arena.free(this.content);
+            }
+        }
+    }
+
+    @Override
+    public String getCategory() {
+        return category;
+    }
+
+    @Override
+    public OffHeapData clone() {
+        return new OffHeapData(this);
+    }
+}
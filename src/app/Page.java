@@ -0,0 +1,152 @@
+package app;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public final class Page<E> implements Iterable<E> {
+
+    /*
+     *   Overview:
+     *      Pagina di risultati di una interrogazione paginata della board, insieme al cursore
+     *      da passare all'interrogazione successiva per ottenere la pagina seguente.
+     *      Il cursore è una stringa opaca che codifica la posizione dell'ultimo elemento
+     *      restituito (ad esempio il suo numero di sequenza, o la sua chiave in classifica),
+     *      non il suo indice: gli inserimenti e le rimozioni avvenute tra una pagina e l'altra
+     *      non fanno quindi saltare né ripetere gli elementi già presenti.
+     *      Un cursore è valido solo per l'interrogazione e la board che lo hanno prodotto.
+     *      I campi del cursore sono chiavi limitate (numeri, nomi di categoria), mai il contenuto
+     *      dei posts, e sono codificati come lunghezza (int) seguita dai byte UTF-8.
+     *
+     *   Abstraction function:
+     *      <items, next>, dove:
+     *          items (list)    sono gli elementi della pagina, nell'ordine dell'interrogazione
+     *          next (string)   è il cursore della pagina successiva, null se questa è l'ultima
+     *
+     *   Representation invariant:
+     *      items != null
+     *
+     */
+
+    private final List<E> items;
+    private final String next;
+
+    Page(List<E> items, String next) {
+        this.items = Collections.unmodifiableList(items);
+        this.next = next;
+    }
+
+    /**
+     * Elementi della pagina
+     *
+     * @return (items) lista immutabile degli elementi
+     */
+    public List<E> getItems() {
+        return items;
+    }
+
+    /**
+     * Cursore da passare all'interrogazione per ottenere la pagina successiva
+     *
+     * @return (cursor) il cursore, oppure (null) se non ci sono altre pagine
+     */
+    public String getNextCursor() {
+        return next;
+    }
+
+    /**
+     * Indica se esiste (o può esistere) una pagina successiva; l'ultima pagina
+     * di un'interrogazione filtrata può risultare vuota
+     *
+     * @return (bool) true se getNextCursor non è null
+     */
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return items.iterator();
+    }
+
+    /**
+     * Controlla la dimensione richiesta per una pagina
+     *
+     * @param limit numero massimo di elementi della pagina
+     * @throws IllegalArgumentException se limit non è positivo
+     */
+    static void checkLimit(int limit) {
+        if (limit <= 0)
+            throw new IllegalArgumentException();
+    }
+
+    /**
+     * Decodifica un cursore formato dal solo numero di sequenza dell'ultimo elemento restituito
+     *
+     * @param cursor il cursore, oppure null per la prima pagina
+     * @param tag    tipo di interrogazione atteso
+     * @return (seq) il numero di sequenza, oppure -1 se cursor è null
+     * @throws IllegalArgumentException se il cursore non è valido per l'interrogazione
+     */
+    static long afterSeq(String cursor, String tag) {
+        return cursor == null ? -1 : Long.parseLong(fields(cursor, tag, 1)[0]);
+    }
+
+    /**
+     * Codifica un cursore come stringa opaca
+     *
+     * @param tag    tipo di interrogazione a cui appartiene il cursore
+     * @param fields campi della posizione
+     * @return (cursor)
+     */
+    static String cursor(String tag, Object... fields) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeField(out, tag);
+            for (Object field : fields)
+                writeField(out, String.valueOf(field));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    private static void writeField(DataOutputStream out, String field)
+            throws IOException {
+        byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readField(DataInputStream in)
+            throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available())
+            throw new IllegalArgumentException("Cursore non valido");
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodifica un cursore prodotto da cursor
+     *
+     * @param cursor il cursore
+     * @param tag    tipo di interrogazione atteso
+     * @param count  numero di campi atteso
+     * @return (fields) i campi della posizione
+     * @throws IllegalArgumentException se il cursore non è valido per l'interrogazione
+     */
+    static String[] fields(String cursor, String tag, int count) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)))) {
+            if (!readField(in).equals(tag))
+                throw new IllegalArgumentException("Cursore di un'altra interrogazione");
+            String[] fields = new String[count];
+            for (int i = 0; i < count; i++)
+                fields[i] = readField(in);
+            if (in.available() > 0)
+                throw new IllegalArgumentException("Cursore non valido");
+            return fields;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cursore non valido", e);
+        }
+    }
+}
@@ -0,0 +1,481 @@
+package app;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+public class Ranking<E extends Data> implements Iterable<E> {
+
+    /*
+     *   Overview:
+     *      Struttura di appoggio che mantiene i posts di una board sempre ordinati
+     *      rispetto al numero di like (decrescente) e, a parità di like, rispetto
+     *      all'ordine lessicografico del contenuto, come in Data.compareTo.
+     *      L'ordinamento è mantenuto da un treap (albero binario di ricerca bilanciato
+     *      in modo probabilistico) in cui ogni nodo conosce la dimensione del proprio
+     *      sottoalbero, per cui inserimento, rimozione ed aggiornamento di un post
+     *      costano O(log n) e l'iterazione non richiede né copie né ordinamenti.
+     *      Ogni nodo memorizza il numero di like del post al momento dell'ultimo
+     *      aggiornamento: l'ordinamento cambia solo quando la board chiama update.
+     *      Il treap è persistente: i nodi sono immutabili ed ogni modifica copia solo
+     *      il cammino dalla radice ai nodi coinvolti (O(log n) nodi). Un iteratore cattura
+     *      la radice corrente in O(1) e genera quindi una fotografia consistente della
+     *      classifica, anche se la board viene modificata durante l'iterazione.
+     *      Un cursore (vedi Cursor) può partire da una chiave qualsiasi, raggiunta in O(log n),
+     *      e permette di leggere la chiave del prossimo post, per fondere più classifiche tra loro.
+     *
+     *   Abstraction function:
+     *      <root, nodes, bySeq>, dove:
+     *          root (node)     è la radice del treap, ogni nodo è una tupla
+     *                              <post, likes, seq, copies, priority, size>
+     *          nodes (map)     associa ad ogni post un nodo con la stessa chiave
+     *                              <likes, seq, copies, priority> di quello presente nell'albero
+     *          bySeq (map)     associa al numero di sequenza di ogni nodo il suo post,
+     *                              per ritrovare la posizione indicata da un cursore
+     *
+     *   Representation invariant:
+     *      nodes != null && bySeq != null
+     *      && for each(post, node) in nodes : bySeq[node.seq] == post && #bySeq == #nodes
+     *      && for each(node) in root : node in-order rispetta (likes desc, content asc, seq asc)
+     *          && node.priority >= children.priority
+     *          && node.size == node.copies + left.size + right.size
+     *          && node.copies > 0 && key(nodes[node.post]) == key(node)
+     *
+     */
+
+    private static final class Node<E> {
+        final E post;
+        final int likes;
+        final long seq;
+        final int copies;
+        final int priority;
+        final Node<E> left, right;
+        final int size;
+
+        Node(E post, int likes, long seq, int copies, int priority, Node<E> left, Node<E> right) {
+            this.post = post;
+            this.likes = likes;
+            this.seq = seq;
+            this.copies = copies;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = copies + size(left) + size(right);
+        }
+
+        Node(E post, int likes, long seq, int copies, int priority) {
+            this(post, likes, seq, copies, priority, null, null);
+        }
+
+        // Copia del nodo con figli diversi: i nodi non vengono mai modificati
+        Node<E> with(Node<E> left, Node<E> right) {
+            return new Node<>(post, likes, seq, copies, priority, left, right);
+        }
+    }
+
+    private Node<E> root;
+    private Map<E, Node<E>> nodes;
+    private Map<Long, E> bySeq;
+    private long nextSeq;
+
+    /**
+     * Costruttore della classe Ranking
+     */
+    public Ranking() {
+        this.root = null;
+        this.nodes = new HashMap<>();
+        this.bySeq = new HashMap<>();
+        this.nextSeq = 0;
+    }
+
+    /**
+     * Numero di posts (contando i duplicati) presenti nella classifica
+     *
+     * @return (size)
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Aggiunge un post alla classifica, se è già presente ne incrementa le occorrenze
+     *
+     * @param post il post da aggiungere
+     * @modifies this.root, this.nodes
+     * @effects post(this) = pre(this) U {post}
+     */
+    public void add(E post) {
+        Node<E> node = this.nodes.get(post);
+        if (node == null)
+            this.insert(new Node<>(post, post.getLikesCounter(), nextSeq++, 1, randomPriority()));
+        else {
+            this.delete(node);
+            this.insert(new Node<>(post, node.likes, node.seq, node.copies + 1, node.priority));
+        }
+    }
+
+    /**
+     * Rimuove un'occorrenza del post dalla classifica
+     *
+     * @param post il post da rimuovere
+     * @return (bool) true se il post era presente
+     * @modifies this.root, this.nodes
+     * @effects post(this) = pre(this) \ {post}
+     */
+    public boolean remove(E post) {
+        Node<E> node = this.nodes.get(post);
+        if (node == null)
+            return false;
+        this.delete(node);
+        if (node.copies > 1)
+            this.insert(new Node<>(post, node.likes, node.seq, node.copies - 1, node.priority));
+        return true;
+    }
+
+    /**
+     * Riposiziona il post in base al numero di like corrente
+     *
+     * @param post il post i cui like sono cambiati
+     * @modifies this.root, this.nodes
+     * @effects post(this[post].likes) = post.getLikesCounter()
+     */
+    public void update(E post) {
+        Node<E> node = this.nodes.get(post);
+        if (node == null || node.likes == post.getLikesCounter())
+            return;
+        this.delete(node);
+        this.insert(new Node<>(post, post.getLikesCounter(), node.seq, node.copies, node.priority));
+    }
+
+    /**
+     * Iteratore (senza remove) che genera i posts in ordine di classifica.
+     * L'iteratore lavora sulla fotografia della classifica al momento della creazione
+     *
+     * @return (iterator)
+     */
+    @Override
+    public Cursor iterator() {
+        Deque<Node<E>> stack = new ArrayDeque<>();
+        pushLeft(stack, this.root);
+        return new Cursor(stack, null, 0);
+    }
+
+    /**
+     * Cursore (senza remove) sulla fotografia della classifica, posizionato in O(log n)
+     * sul primo post con chiave (like, contenuto, seq) maggiore o uguale a quella indicata;
+     * se la chiave è proprio quella di un post, ne salta le prime skip copie
+     *
+     * @param likes   numero di like della chiave
+     * @param content contenuto della chiave
+     * @param seq     numero di sequenza della chiave, -1 per il primo post con like e contenuto indicati,
+     *                Long.MAX_VALUE per il primo post che li segue
+     * @param skip    numero di copie da saltare se la chiave è quella di un post
+     * @return (cursor)
+     */
+    public Cursor iterator(int likes, String content, long seq, int skip) {
+        Deque<Node<E>> stack = new ArrayDeque<>();
+        // Si impilano gli antenati del primo nodo con chiave >= (likes, content, seq)
+        for (Node<E> node = this.root; node != null; ) {
+            int cmp = compare(node, likes, content, seq);
+            if (cmp < 0)
+                node = node.right;
+            else {
+                stack.push(node);
+                if (cmp == 0)
+                    return new Cursor(stack, node, skip);
+                node = node.left;
+            }
+        }
+        return new Cursor(stack, null, 0);
+    }
+
+    /**
+     * Post con il numero di sequenza indicato
+     *
+     * @param seq numero di sequenza, letto da un cursore
+     * @return (post) il post, oppure null se non è (più) nella classifica
+     */
+    public E get(long seq) {
+        return this.bySeq.get(seq);
+    }
+
+    /**
+     * Iteratore (senza remove) che genera solo i primi k posts in ordine di classifica,
+     * senza visitare il resto dell'albero
+     *
+     * @param k numero massimo di posts da generare
+     * @return (iterator)
+     * @throws IllegalArgumentException se k è negativo
+     */
+    public Iterator<E> iterator(int k) {
+        if (k < 0)
+            throw new IllegalArgumentException();
+        Iterator<E> iterator = this.iterator();
+        return new Iterator<>() {
+            private int remaining = k;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0 && iterator.hasNext();
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                remaining--;
+                return iterator.next();
+            }
+        };
+    }
+
+    /**
+     * Iteratore (senza remove) che genera, in ordine di classifica, solo i posts che soddisfano filter.
+     * Come iterator() lavora sulla fotografia della classifica e la visita man mano che i posts
+     * vengono richiesti, per cui ogni post costa anche la visita dei posts scartati che lo precedono
+     *
+     * @param filter condizione che i posts generati devono soddisfare
+     * @return (iterator)
+     */
+    public Iterator<E> iterator(Predicate<? super E> filter) {
+        Iterator<E> iterator = this.iterator();
+        return new Iterator<>() {
+            private E next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && iterator.hasNext()) {
+                    E post = iterator.next();
+                    if (filter.test(post))
+                        next = post;
+                }
+                return next != null;
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                E post = next;
+                next = null;
+                return post;
+            }
+        };
+    }
+
+    /**
+     * Pagina di al più limit posts in ordine di classifica, a partire dalla posizione indicata
+     * dal cursore di una pagina precedente. Il cursore contiene like e numero di sequenza
+     * dell'ultimo post restituito, insieme al numero di sue copie già restituite, ma non il suo
+     * contenuto: il post viene ritrovato dal numero di sequenza e la pagina si trova scendendo
+     * nel treap fino alla chiave (like, contenuto, seq), in O(log n + limit).
+     * Inserimenti e rimozioni tra una pagina e l'altra non spostano le pagine successive,
+     * mentre un post i cui like cambiano cambia posizione, per cui può essere saltato o ripetuto.
+     * Se l'ultimo post restituito è stato rimosso la pagina riparte dal primo post con lo stesso
+     * numero di like, per cui alcuni posts possono essere ripetuti ma nessuno viene saltato
+     *
+     * @param cursor cursore della pagina precedente, oppure null per la prima pagina
+     * @param limit  numero massimo di posts della pagina
+     * @return (page)
+     * @throws IllegalArgumentException se limit non è positivo o il cursore non è valido
+     */
+    public Page<E> page(String cursor, int limit) {
+        Page.checkLimit(limit);
+        Cursor posts;
+        if (cursor == null)
+            posts = this.iterator();
+        else {
+            String[] fields = Page.fields(cursor, "ranking", 3);
+            int likes = Integer.parseInt(fields[0]);
+            long seq = Long.parseLong(fields[1]);
+            E last = this.bySeq.get(seq);
+            // Senza il post, la chiave più piccola con quei like: nessun nodo ha seq negativo
+            posts = last != null
+                    ? this.iterator(likes, last.getContent(), seq, Integer.parseInt(fields[2]))
+                    : this.iterator(likes, "", -1, 0);
+        }
+
+        List<E> items = new ArrayList<>(Math.min(limit, this.size()));
+        int likes = 0;
+        long seq = 0;
+        int emitted = 0;
+        while (items.size() < limit && posts.hasNext()) {
+            likes = posts.peekLikes();
+            seq = posts.peekSeq();
+            emitted = posts.peekEmitted() + 1;
+            items.add(posts.next());
+        }
+        return new Page<>(items, posts.hasNext() ? Page.cursor("ranking", likes, seq, emitted) : null);
+    }
+
+    /**
+     * Iteratore sulla fotografia della classifica che permette di leggere la chiave
+     * del prossimo post senza consumarlo, usato per riprendere una pagina e per fondere
+     * più classifiche tra loro
+     */
+    public final class Cursor implements Iterator<E> {
+        private final Deque<Node<E>> stack;
+        private Node<E> current;
+        private int emitted;
+
+        // stack contiene gli antenati del primo nodo da visitare; di resumed si saltano skip copie
+        private Cursor(Deque<Node<E>> stack, Node<E> resumed, int skip) {
+            this.stack = stack;
+            this.advance();
+            if (this.current != null && this.current == resumed) {
+                this.emitted = Math.min(skip, this.current.copies);
+                if (this.emitted == this.current.copies)
+                    this.advance();
+            }
+        }
+
+        private void advance() {
+            this.current = this.stack.poll();
+            this.emitted = 0;
+            if (this.current != null)
+                pushLeft(this.stack, this.current.right);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return current != null;
+        }
+
+        /**
+         * Prossimo post, senza consumarlo
+         *
+         * @return (post)
+         * @throws NoSuchElementException se non ci sono altri posts
+         */
+        public E peek() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return current.post;
+        }
+
+        /**
+         * Numero di like del prossimo post al momento della fotografia
+         *
+         * @return (likes)
+         * @throws NoSuchElementException se non ci sono altri posts
+         */
+        public int peekLikes() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return current.likes;
+        }
+
+        /**
+         * Numero di sequenza del prossimo post nella classifica
+         *
+         * @return (seq)
+         * @throws NoSuchElementException se non ci sono altri posts
+         */
+        public long peekSeq() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return current.seq;
+        }
+
+        /**
+         * Numero di copie del prossimo post già restituite
+         *
+         * @return (emitted)
+         * @throws NoSuchElementException se non ci sono altri posts
+         */
+        public int peekEmitted() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return emitted;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            E post = current.post;
+            if (++emitted == current.copies)
+                advance();
+            return post;
+        }
+    }
+
+    private static <E> void pushLeft(Deque<Node<E>> stack, Node<E> node) {
+        for (; node != null; node = node.left)
+            stack.push(node);
+    }
+
+    private void insert(Node<E> node) {
+        Node<E>[] parts = split(this.root, node, false);
+        this.root = merge(merge(parts[0], node), parts[1]);
+        this.nodes.put(node.post, node);
+        this.bySeq.put(node.seq, node.post);
+    }
+
+    private void delete(Node<E> node) {
+        Node<E>[] lower = split(this.root, node, false);
+        Node<E>[] upper = split(lower[1], node, true);
+        this.root = merge(lower[0], upper[1]);
+        this.nodes.remove(node.post);
+        this.bySeq.remove(node.seq);
+    }
+
+    // Divide il treap in (nodi < key, nodi >= key), oppure (nodi <= key, nodi > key) se inclusive
+    private static <E extends Data> Node<E>[] split(Node<E> tree, Node<E> key, boolean inclusive) {
+        if (tree == null) {
+            // Gli array generici non si possono creare: la coppia vuota contiene solo null
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Node<E>[] empty = (Node<E>[]) new Node[]{null, null};
+            return empty;
+        }
+        int cmp = compare(tree, key);
+        if (cmp < 0 || (inclusive && cmp == 0)) {
+            Node<E>[] parts = split(tree.right, key, inclusive);
+            parts[0] = tree.with(tree.left, parts[0]);
+            return parts;
+        } else {
+            Node<E>[] parts = split(tree.left, key, inclusive);
+            parts[1] = tree.with(parts[1], tree.right);
+            return parts;
+        }
+    }
+
+    // Unisce due treap, assumendo che ogni nodo di left preceda ogni nodo di right
+    private static <E> Node<E> merge(Node<E> left, Node<E> right) {
+        if (left == null)
+            return right;
+        if (right == null)
+            return left;
+        if (left.priority >= right.priority)
+            return left.with(left.left, merge(left.right, right));
+        else
+            return right.with(merge(left, right.left), right.right);
+    }
+
+    private static <E extends Data> int compare(Node<E> a, Node<E> b) {
+        int result = Integer.compare(b.likes, a.likes);
+        if (result == 0)
+            result = a.post.compareContent(b.post);
+        if (result == 0)
+            result = Long.compare(a.seq, b.seq);
+        return result;
+    }
+
+    // Confronta un nodo con una chiave <likes, content, seq> letta da un cursore
+    private static <E extends Data> int compare(Node<E> node, int likes, String content, long seq) {
+        int result = Integer.compare(likes, node.likes);
+        if (result == 0)
+            result = node.post.compareContent(content);
+        if (result == 0)
+            result = Long.compare(node.seq, seq);
+        return result;
+    }
+
+    private static <E> int size(Node<E> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int randomPriority() {
+        return ThreadLocalRandom.current().nextInt();
+    }
+}
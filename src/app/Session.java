@@ -0,0 +1,50 @@
+package app;
+
+public final class Session {
+
+    /*
+     *   Overview:
+     *      Sessione autenticata su una board, ottenuta con Board.login. E' un oggetto opaco:
+     *      contiene un identificativo e un token casuale segreto, che la board confronta
+     *      in tempo costante con quello registrato al login. Una sessione resta valida
+     *      finché non viene chiusa con Board.logout, finché la password della board non cambia
+     *      o finché non scade perché inutilizzata o chiusa dal limite di sessioni della board.
+     *
+     *   Abstraction function:
+     *      <board, id, token>, dove:
+     *          board (board)   è la board su cui la sessione è stata aperta
+     *          id (long)       è l'identificativo (non segreto) della sessione nella board
+     *          token (bytes)   è il segreto casuale della sessione
+     *
+     *   Representation invariant:
+     *      board != null && token != null && token.length > 0
+     *
+     */
+
+    private final Board<?> board;
+    private final long id;
+    private final byte[] token;
+
+    Session(Board<?> board, long id, byte[] token) {
+        this.board = board;
+        this.id = id;
+        this.token = token;
+    }
+
+    Board<?> board() {
+        return board;
+    }
+
+    long id() {
+        return id;
+    }
+
+    byte[] token() {
+        return token;
+    }
+
+    @Override
+    public String toString() {
+        return "Session{" + board.getOwner() + "#" + id + "}";
+    }
+}
@@ -0,0 +1,360 @@
+package app;
+
+import app.exception.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.ToLongFunction;
+
+public final class Snapshot {
+
+    /*
+     *   Overview:
+     *      Fotografia binaria compatta dell'intero stato di una board: categorie con i rispettivi amici,
+     *      posts (autore, contenuto, categoria, timestamp e like in ordine) e la categoria in cui
+     *      ogni copia di un post è archiviata. I nomi (autori, categorie, amici e like), che si ripetono,
+     *      sono scritti una sola volta in un dizionario in coda al file e nel corpo sono sostituiti
+     *      dal loro indice; il contenuto dei posts, quasi sempre diverso da post a post, è scritto
+     *      direttamente nel corpo, preceduto dalla sua lunghezza, per cui il dizionario in memoria
+     *      durante la scrittura contiene solo i nomi. Indici, lunghezze e identificativi
+     *      sono codificati come varint. Le fotografie della versione 1, con il contenuto
+     *      nel dizionario, restano leggibili.
+     *      Lo stato viene prima fotografato (capture), copiando categorie ed amici e prendendo
+     *      una fotografia in O(1) dei feed, e poi scritto (write), anche da un altro thread
+     *      mentre la board continua ad essere modificata.
+     *      Il file viene scritto in un solo passaggio su un file temporaneo, che al termine
+     *      sostituisce atomicamente la fotografia precedente: una fotografia è quindi sempre completa.
+     *      La lettura avviene tramite MappedByteBuffer, a finestre di al più WINDOW byte,
+     *      così da non copiare il file in memoria e da gestire anche file più grandi di 2GB.
+     *
+     *   Formato:
+     *      header      := MAGIC (int), VERSION (byte), epoch (long), dictOffset (long)
+     *      categories  := { nameId + 1, #friends, friendId* }* 0
+     *      posts       := { id, bucketId, [authorId, #bytes, content UTF-8, categoryId, timestamp (long),
+     *                          #likes, likeId*] se è la prima copia del post }* 0
+     *      dictionary  := #strings, { #bytes, bytes UTF-8 }*
+     *
+     */
+
+    private static final int MAGIC = 0x50523253; // "PR2S"
+    private static final byte VERSION = 2;
+    // Versione in cui anche il contenuto dei posts è nel dizionario
+    private static final byte DICTIONARY_CONTENT = 1;
+    private static final int HEADER = Integer.BYTES + Byte.BYTES + 2 * Long.BYTES;
+    private static final long WINDOW = 1L << 30;
+    // Numero di posts letti ad ogni acquisizione del monitor durante la scrittura
+    private static final int CHUNK = 1024;
+
+    private Snapshot() {
+    }
+
+    /**
+     * Fotografa lo stato di una board, per salvarlo in seguito con write anche da un altro thread.
+     * Categorie ed amici vengono copiati, i posts no: di ogni feed si prende una fotografia in O(1)
+     * (vedi Board.postSnapshot), per cui il costo non dipende dal numero di posts
+     *
+     * @param board la board da fotografare
+     * @return (capture) lo stato fotografato
+     */
+    public static Capture capture(Board<? extends Data> board) {
+        Map<String, List<String>> categories = new LinkedHashMap<>();
+        board.forEachCategory((category, friends) -> categories.put(category, new ArrayList<>(friends)));
+        return new Capture(categories, board.postSnapshot());
+    }
+
+    /**
+     * Salva uno stato fotografato con capture, sostituendo la fotografia eventualmente presente.
+     * I posts, i loro identificativi ed i loro like vengono letti a blocchi di CHUNK posts
+     * tenendo il monitor lock, con cui chi modifica la board si sincronizza: il file viene
+     * scritto senza tenerlo, per cui le modifiche della board proseguono durante la scrittura
+     *
+     * @param capture lo stato da salvare, restituito da capture
+     * @param epoch   numero della fotografia, restituito da read
+     * @param idOf    assegna ad ogni post un identificativo positivo, unico per identità
+     * @param lock    monitor da tenere mentre si leggono i posts
+     * @param path    percorso del file della fotografia
+     * @throws IOException se la scrittura fallisce
+     */
+    public static void write(Capture capture, long epoch, ToLongFunction<Data> idOf, Object lock, Path path)
+            throws IOException {
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            Map<String, Integer> dictionary = new HashMap<>();
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(epoch);
+            out.writeLong(0); // dictOffset, scritto alla fine
+
+            Writer writer = new Writer(out, dictionary);
+            writer.categories(capture.categories);
+            writer.posts(capture.posts, idOf, lock);
+
+            List<String> strings = new ArrayList<>(Collections.nCopies(dictionary.size(), null));
+            dictionary.forEach((string, id) -> strings.set(id, string));
+            out.flush();
+            long dictOffset = channel.position();
+            writeVarLong(out, strings.size());
+            for (String string : strings) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                writeVarLong(out, bytes.length);
+                out.write(bytes);
+            }
+            out.flush();
+
+            ByteBuffer offset = ByteBuffer.allocate(Long.BYTES).putLong(0, dictOffset);
+            channel.write(offset, HEADER - Long.BYTES);
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Ricostruisce lo stato salvato in una fotografia su una board vuota
+     *
+     * @param path     percorso del file della fotografia
+     * @param board    la board vuota da riempire
+     * @param password password del proprietario della board
+     * @param onPost   azione eseguita su ogni copia di post inserita, con il suo identificativo
+     * @return (epoch) il numero della fotografia
+     * @throws IOException se il file non può essere letto o non è una fotografia valida
+     * @throws IllegalStateException se la fotografia non è applicabile alla board
+     */
+    public static long read(Path path, Board<Data> board, String password, PostAction onPost)
+            throws IOException {
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Reader in = new Reader(channel);
+            if (in.readInt() != MAGIC)
+                throw new IOException("Formato della fotografia non valido: " + path);
+            byte version = in.readByte();
+            if (version != VERSION && version != DICTIONARY_CONTENT)
+                throw new IOException("Formato della fotografia non valido: " + path);
+            long epoch = in.readLong();
+            long dictOffset = in.readLong();
+
+            in.seek(dictOffset);
+            String[] strings = new String[(int) in.readVarLong()];
+            for (int i = 0; i < strings.length; i++)
+                strings[i] = in.readString((int) in.readVarLong());
+            in.seek(HEADER);
+
+            try {
+                Set<String> categories = new HashSet<>();
+                for (long name = in.readVarLong(); name != 0; name = in.readVarLong()) {
+                    String category = strings[(int) name - 1];
+                    board.createCategory(category, password);
+                    categories.add(category);
+                    for (long friends = in.readVarLong(); friends > 0; friends--)
+                        board.addFriend(category, password, strings[(int) in.readVarLong()]);
+                }
+
+                // Le categorie rimosse i cui posts sono rimasti nel feed (Board1)
+                // vengono ricreate per il tempo necessario ad inserirli
+                Set<String> removed = new HashSet<>();
+                Map<Long, Data> posts = new HashMap<>();
+                for (long id = in.readVarLong(); id != 0; id = in.readVarLong()) {
+                    String bucket = strings[(int) in.readVarLong()];
+                    Data post = posts.get(id);
+                    if (post == null) {
+                        String author = strings[(int) in.readVarLong()];
+                        String content = version == DICTIONARY_CONTENT
+                                ? strings[(int) in.readVarLong()]
+                                : in.readString((int) in.readVarLong());
+                        post = new Data(author, content, strings[(int) in.readVarLong()], in.readLong());
+                        for (long likes = in.readVarLong(); likes > 0; likes--)
+                            post.addLike(strings[(int) in.readVarLong()]);
+                        posts.put(id, post);
+                    }
+                    if (!categories.contains(bucket) && removed.add(bucket))
+                        board.createCategory(bucket, password);
+                    board.put(password, post, bucket);
+                    onPost.accept(id, post);
+                }
+                for (String bucket : removed)
+                    board.removeCategory(bucket, password);
+            } catch (UnauthorizedException | EmptyFieldException | DuplicateItemException | ItemNotFoundException e) {
+                throw new IllegalStateException("Fotografia non applicabile alla board", e);
+            }
+            return epoch;
+        }
+    }
+
+    /**
+     * Azione eseguita su ogni copia di post ripristinata
+     */
+    @FunctionalInterface
+    public interface PostAction {
+        void accept(long id, Data post);
+    }
+
+    /**
+     * Stato di una board fotografato da capture: categorie con i rispettivi amici
+     * e fotografia dei posts, ancora da leggere
+     */
+    public static final class Capture {
+        private final Map<String, List<String>> categories;
+        private final Iterator<? extends Map.Entry<String, ? extends Data>> posts;
+
+        private Capture(Map<String, List<String>> categories, Iterator<? extends Map.Entry<String, ? extends Data>> posts) {
+            this.categories = categories;
+            this.posts = posts;
+        }
+    }
+
+    // Scrive il corpo della fotografia, assegnando gli indici del dizionario
+    private static final class Writer {
+        private final DataOutputStream out;
+        private final Map<String, Integer> dictionary;
+        private final Set<Long> written;
+
+        Writer(DataOutputStream out, Map<String, Integer> dictionary) {
+            this.out = out;
+            this.dictionary = dictionary;
+            this.written = new HashSet<>();
+        }
+
+        void categories(Map<String, List<String>> categories)
+                throws IOException {
+
+            for (Map.Entry<String, List<String>> category : categories.entrySet()) {
+                writeVarLong(out, this.string(category.getKey()) + 1L);
+                writeVarLong(out, category.getValue().size());
+                for (String friend : category.getValue())
+                    writeVarLong(out, this.string(friend));
+            }
+            writeVarLong(out, 0);
+        }
+
+        // Ogni blocco viene codificato in memoria tenendo lock e scritto sul file dopo averlo rilasciato
+        void posts(Iterator<? extends Map.Entry<String, ? extends Data>> posts, ToLongFunction<Data> idOf, Object lock)
+                throws IOException {
+
+            ByteArrayOutputStream chunk = new ByteArrayOutputStream(1 << 16);
+            DataOutputStream buffer = new DataOutputStream(chunk);
+            for (boolean more = true; more; ) {
+                synchronized (lock) {
+                    for (int n = 0; n < CHUNK && posts.hasNext(); n++) {
+                        Map.Entry<String, ? extends Data> entry = posts.next();
+                        this.post(buffer, entry.getKey(), entry.getValue(), idOf);
+                    }
+                    more = posts.hasNext();
+                }
+                chunk.writeTo(out);
+                chunk.reset();
+            }
+            writeVarLong(out, 0);
+        }
+
+        private void post(DataOutputStream out, String bucket, Data post, ToLongFunction<Data> idOf)
+                throws IOException {
+
+            long id = idOf.applyAsLong(post);
+            if (id <= 0)
+                throw new IllegalArgumentException();
+            writeVarLong(out, id);
+            writeVarLong(out, this.string(bucket));
+            if (this.written.add(id)) {
+                writeVarLong(out, this.string(post.getAuthor()));
+                byte[] content = post.getContent().getBytes(StandardCharsets.UTF_8);
+                writeVarLong(out, content.length);
+                out.write(content);
+                writeVarLong(out, this.string(post.getCategory()));
+                out.writeLong(post.getTimestamp());
+                List<String> likes = post.getLikes();
+                writeVarLong(out, likes.size());
+                for (String friend : likes)
+                    writeVarLong(out, this.string(friend));
+            }
+        }
+
+        private int string(String string) {
+            return dictionary.computeIfAbsent(string, s -> dictionary.size());
+        }
+    }
+
+    // Legge il file a finestre mappate in memoria, spostando la finestra quando serve
+    private static final class Reader {
+        private final FileChannel channel;
+        private final long size;
+        private long base;
+        private MappedByteBuffer buffer;
+
+        Reader(FileChannel channel)
+                throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            this.seek(0);
+        }
+
+        void seek(long position)
+                throws IOException {
+            if (position < 0 || position > size)
+                throw new IOException("Fotografia troncata");
+            this.base = position;
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, size - position));
+        }
+
+        private ByteBuffer ensure(int bytes)
+                throws IOException {
+            if (buffer.remaining() < bytes) {
+                this.seek(base + buffer.position());
+                if (buffer.remaining() < bytes)
+                    throw new IOException("Fotografia troncata");
+            }
+            return buffer;
+        }
+
+        int readInt() throws IOException {
+            return ensure(Integer.BYTES).getInt();
+        }
+
+        byte readByte() throws IOException {
+            return ensure(Byte.BYTES).get();
+        }
+
+        long readLong() throws IOException {
+            return ensure(Long.BYTES).getLong();
+        }
+
+        long readVarLong()
+                throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < Long.SIZE; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0)
+                    return value;
+            }
+            throw new IOException("Varint non valido");
+        }
+
+        String readString(int length)
+                throws IOException {
+            byte[] bytes = new byte[length];
+            ensure(length).get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value)
+            throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
@@ -0,0 +1,258 @@
+package app;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+
+final class SymbolSet {
+
+    /*
+     *   Overview:
+     *      Insieme di identificativi della tabella dei simboli di una board (vedi Symbols.java),
+     *      usato per gli amici di una categoria e per le categorie condivise con un amico.
+     *      Le operazioni per nome passano per la tabella; contains(int) confronta solo interi,
+     *      per controllare lo stesso nome in più insiemi dopo averlo risolto una volta sola.
+     *      Come nelle bitmap "roaring", la rappresentazione dipende dalla densità:
+     *      finché gli elementi sono pochi rispetto al massimo identificativo sono tenuti
+     *      in un array ordinato di int (ricerca binaria), altrimenti in una bitmap (BitSet),
+     *      scegliendo ogni volta la forma che occupa meno memoria.
+     *      In entrambi i casi gli elementi sono visitati in ordine crescente di identificativo.
+     *      La classe non è sincronizzata: è protetta dalla stessa disciplina della struttura
+     *      che la contiene.
+     *
+     *   Abstraction function:
+     *      <symbols, array, bits, size>, dove:
+     *          symbols (table) è la tabella dei simboli a cui appartengono gli identificativi
+     *          array (int[])   contiene gli elementi in ordine crescente nelle prime size posizioni,
+     *                              se bits == null
+     *          bits (bitset)   contiene gli elementi, se non è null
+     *          size (int)      è il numero di elementi dell'insieme
+     *
+     *   Representation invariant:
+     *      symbols != null
+     *      && (bits == null && array != null && for each(i) in [1, size) : array[i - 1] < array[i])
+     *          || (bits != null && bits.cardinality == size))
+     *
+     */
+
+    private final Symbols symbols;
+    private int[] array;
+    private BitSet bits;
+    private int size;
+    private final Set<String> view;
+
+    /**
+     * Costruttore della classe SymbolSet, crea un insieme vuoto
+     *
+     * @param symbols la tabella dei simboli della board
+     */
+    SymbolSet(Symbols symbols) {
+        this.symbols = symbols;
+        this.array = new int[4];
+        this.bits = null;
+        this.size = 0;
+        this.view = new AbstractSet<>() {
+            @Override
+            public Iterator<String> iterator() {
+                PrimitiveIterator.OfInt ids = SymbolSet.this.iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return ids.hasNext();
+                    }
+
+                    @Override
+                    public String next() {
+                        return symbols.name(ids.nextInt());
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object name) {
+                return name instanceof String && SymbolSet.this.contains((String) name);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Numero di elementi dell'insieme
+     *
+     * @return (size)
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Controlla se l'insieme è vuoto
+     *
+     * @return (bool) true se size == 0
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Controlla se un identificativo appartiene all'insieme
+     *
+     * @param id l'identificativo
+     * @return (bool) true se id appartiene all'insieme
+     */
+    boolean contains(int id) {
+        if (id < 0)
+            return false;
+        if (bits != null)
+            return bits.get(id);
+        return Arrays.binarySearch(array, 0, size, id) >= 0;
+    }
+
+    /**
+     * Controlla se un nome appartiene all'insieme, senza registrarlo nella tabella dei simboli
+     *
+     * @param name il nome
+     * @return (bool) true se il nome appartiene all'insieme
+     */
+    boolean contains(String name) {
+        return this.contains(this.symbols.lookup(name));
+    }
+
+    /**
+     * Aggiunge un identificativo all'insieme
+     *
+     * @param id l'identificativo, non negativo
+     * @return (bool) true se l'insieme è cambiato
+     * @modifies this
+     * @effects post(this) = pre(this) U {id}
+     */
+    boolean add(int id) {
+        if (bits != null) {
+            if (bits.get(id))
+                return false;
+            bits.set(id);
+            size++;
+            return true;
+        }
+        int slot = Arrays.binarySearch(array, 0, size, id);
+        if (slot >= 0)
+            return false;
+        slot = -slot - 1;
+        if (size == array.length) {
+            // L'array è pieno: se una bitmap occupa meno memoria si cambia rappresentazione
+            int max = Math.max(id, array[size - 1]);
+            if ((long) (size + 1) * Integer.SIZE > max + 1) {
+                this.toBits();
+                return this.add(id);
+            }
+            array = Arrays.copyOf(array, size * 2);
+        }
+        System.arraycopy(array, slot, array, slot + 1, size - slot);
+        array[slot] = id;
+        size++;
+        return true;
+    }
+
+    /**
+     * Aggiunge un nome all'insieme, registrandolo nella tabella dei simboli se necessario
+     *
+     * @param name il nome
+     * @return (bool) true se l'insieme è cambiato
+     * @modifies this
+     * @effects post(this) = pre(this) U {intern(name)}
+     */
+    boolean add(String name) {
+        return this.add(this.symbols.intern(name));
+    }
+
+    /**
+     * Rimuove un identificativo dall'insieme
+     *
+     * @param id l'identificativo
+     * @return (bool) true se l'insieme è cambiato
+     * @modifies this
+     * @effects post(this) = pre(this) \ {id}
+     */
+    boolean remove(int id) {
+        if (!this.contains(id))
+            return false;
+        if (bits != null) {
+            bits.clear(id);
+            size--;
+            // Se la bitmap è diventata rada si torna all'array ordinato
+            if ((long) size * Integer.SIZE * 2 < bits.length())
+                this.toArray();
+            return true;
+        }
+        int slot = Arrays.binarySearch(array, 0, size, id);
+        System.arraycopy(array, slot + 1, array, slot, size - slot - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * Rimuove un nome dall'insieme
+     *
+     * @param name il nome
+     * @return (bool) true se l'insieme è cambiato
+     * @modifies this
+     * @effects post(this) = pre(this) \ {name}
+     */
+    boolean remove(String name) {
+        return this.remove(this.symbols.lookup(name));
+    }
+
+    /**
+     * Esegue un'azione su ogni identificativo dell'insieme, in ordine crescente
+     *
+     * @param action l'azione da eseguire
+     */
+    void forEach(IntConsumer action) {
+        if (bits != null)
+            bits.stream().forEach(action);
+        else
+            for (int i = 0; i < size; i++)
+                action.accept(array[i]);
+    }
+
+    /**
+     * Iteratore sugli identificativi dell'insieme, in ordine crescente.
+     * L'insieme non va modificato finché l'iteratore è in uso
+     *
+     * @return (iterator)
+     */
+    PrimitiveIterator.OfInt iterator() {
+        if (bits != null)
+            return bits.stream().iterator();
+        return Arrays.stream(array, 0, size).iterator();
+    }
+
+    /**
+     * Vista in sola lettura dell'insieme come insieme di nomi, che riflette le modifiche successive
+     *
+     * @return (set) vista non modificabile, ordinata per identificativo
+     */
+    Set<String> view() {
+        return view;
+    }
+
+    private void toBits() {
+        BitSet bitmap = new BitSet(array[size - 1] + 1);
+        for (int i = 0; i < size; i++)
+            bitmap.set(array[i]);
+        this.bits = bitmap;
+        this.array = null;
+    }
+
+    private void toArray() {
+        int[] ids = new int[Math.max(4, size)];
+        int i = 0;
+        for (int id = bits.nextSetBit(0); id >= 0; id = bits.nextSetBit(id + 1))
+            ids[i++] = id;
+        this.array = ids;
+        this.bits = null;
+    }
+}
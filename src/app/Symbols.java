@@ -0,0 +1,99 @@
+package app;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+final class Symbols {
+
+    /*
+     *   Overview:
+     *      Tabella dei simboli di una board, che associa ai nomi di amici e categorie
+     *      un identificativo intero denso (0, 1, 2, ...), assegnato alla prima richiesta
+     *      e mai riutilizzato. Gli insiemi di amici e di categorie della board (vedi SymbolSet)
+     *      contengono gli identificativi al posto dei riferimenti alle stringhe.
+     *      Ogni board ha la propria tabella: i nomi restano registrati finché esiste la board,
+     *      per cui la tabella cresce con il numero di nomi distinti usati dalla board
+     *      e viene liberata insieme ad essa, e board diverse non condividono alcun lock.
+     *      Fa eccezione la tabella di chi mette like (vedi Data.java), unica per tutti i posts,
+     *      che possono sopravvivere alla propria board: i suoi nomi restano registrati
+     *      finché è in esecuzione la JVM.
+     *      La lettura è senza lock: la ricerca di un nome passa per una map concorrente,
+     *      la ricerca di un identificativo per un array pubblicato tramite un campo volatile.
+     *      Solo l'assegnazione di un nuovo identificativo è sincronizzata, sulla tabella.
+     *      Chi controlla lo stesso nome in più insiemi lo risolve una volta sola con lookup
+     *      e confronta poi solo interi (vedi SymbolSet.contains(int)).
+     *
+     *   Abstraction function:
+     *      <ids, names, count>, dove:
+     *          ids (map)       associa ad ogni nome il suo identificativo
+     *          names (array)   associa ad ogni identificativo il suo nome
+     *          count (int)     è il numero di nomi registrati
+     *
+     *   Representation invariant:
+     *      ids != null && names != null && count <= names.length
+     *      && for each(name, id) in ids : 0 <= id < count && names[id] == name
+     *      && ids.size == count
+     *
+     */
+
+    private final Map<String, Integer> ids;
+    private volatile String[] names;
+    private int count;
+
+    /**
+     * Costruttore della classe Symbols, crea una tabella vuota
+     */
+    Symbols() {
+        this.ids = new ConcurrentHashMap<>();
+        this.names = new String[16];
+        this.count = 0;
+    }
+
+    /**
+     * Restituisce l'identificativo di un nome, registrandolo se è la prima volta che viene usato
+     *
+     * @param name il nome
+     * @return (id) l'identificativo del nome
+     * @modifies this
+     */
+    int intern(String name) {
+        Integer id = this.ids.get(name);
+        if (id != null)
+            return id;
+        synchronized (this) {
+            id = this.ids.get(name);
+            if (id != null)
+                return id;
+            String[] table = this.names;
+            if (this.count == table.length)
+                table = Arrays.copyOf(table, this.count * 2);
+            table[this.count] = name;
+            // L'array va pubblicato prima dell'identificativo, che può essere letto senza lock
+            this.names = table;
+            this.ids.put(name, this.count);
+            return this.count++;
+        }
+    }
+
+    /**
+     * Restituisce l'identificativo di un nome senza registrarlo
+     *
+     * @param name il nome
+     * @return (id) l'identificativo del nome, oppure -1 se il nome non è mai stato registrato
+     */
+    int lookup(String name) {
+        Integer id = this.ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Restituisce il nome associato ad un identificativo
+     *
+     * @param id l'identificativo, restituito da intern
+     * @return (name) il nome
+     */
+    String name(int id) {
+        return this.names[id];
+    }
+}
@@ -0,0 +1,116 @@
+package app;
+
+import java.util.*;
+
+public class TimeIndex<E extends Data> {
+
+    /*
+     *   Overview:
+     *      Struttura di appoggio che mantiene i posts di una board ordinati per timestamp,
+     *      per rispondere alle interrogazioni su un intervallo di tempo ("i posts dell'ultima ora")
+     *      senza visitare l'intera board. I posts sono raggruppati per timestamp in un albero
+     *      di ricerca bilanciato (TreeMap), per cui inserimento e rimozione costano O(log n)
+     *      ed un intervallo con k posts si legge in O(log n + k).
+     *      Grazie all'orologio monotono di Data i timestamp dei posts creati dalla stessa JVM
+     *      sono tutti distinti; posts ripristinati o inseriti più volte condividono invece
+     *      lo stesso gruppo, in ordine di inserimento.
+     *
+     *   Abstraction function:
+     *      <byTime, size>, dove:
+     *          byTime (map)    associa ad ogni timestamp i posts con quel timestamp,
+     *                              nell'ordine in cui sono stati inseriti (con i duplicati)
+     *          size (int)      è il numero di posts, contando i duplicati
+     *
+     *   Representation invariant:
+     *      byTime != null
+     *      && for each(timestamp, posts) in byTime : posts != empty
+     *          && for each(post) in posts : post.timestamp == timestamp
+     *      && size == sum(for each(timestamp, posts) in byTime : posts.size)
+     *
+     */
+
+    private final NavigableMap<Long, List<E>> byTime;
+    private int size;
+
+    /**
+     * Costruttore della classe TimeIndex
+     */
+    public TimeIndex() {
+        this.byTime = new TreeMap<>();
+        this.size = 0;
+    }
+
+    /**
+     * Numero di posts (contando i duplicati) presenti nell'indice
+     *
+     * @return (size)
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Aggiunge un post all'indice
+     *
+     * @param post il post da aggiungere
+     * @modifies this.byTime, this.size
+     * @effects post(this) = pre(this) U {post}
+     */
+    public void add(E post) {
+        this.byTime.computeIfAbsent(post.getTimestamp(), t -> new ArrayList<>(1)).add(post);
+        this.size++;
+    }
+
+    /**
+     * Rimuove un'occorrenza del post dall'indice, cercandola tra i posts con il suo timestamp
+     *
+     * @param post il post da rimuovere
+     * @return (bool) true se il post era presente
+     * @modifies this.byTime, this.size
+     * @effects post(this) = pre(this) \ {post}
+     */
+    public boolean remove(E post) {
+        List<E> posts = this.byTime.get(post.getTimestamp());
+        if (posts == null)
+            return false;
+        for (int i = 0; i < posts.size(); i++)
+            if (posts.get(i) == post) {
+                posts.remove(i);
+                if (posts.isEmpty())
+                    this.byTime.remove(post.getTimestamp());
+                this.size--;
+                return true;
+            }
+        return false;
+    }
+
+    /**
+     * Posts con timestamp nell'intervallo [from, to), in ordine di timestamp
+     *
+     * @param from primo timestamp incluso
+     * @param to   primo timestamp escluso
+     * @return (list) una nuova lista con i posts dell'intervallo
+     * @throws IllegalArgumentException se from è maggiore di to
+     */
+    public List<E> range(long from, long to) {
+        if (from > to)
+            throw new IllegalArgumentException();
+        List<E> range = new ArrayList<>();
+        for (List<E> posts : this.byTime.subMap(from, true, to, false).values())
+            range.addAll(posts);
+        return range;
+    }
+
+    /**
+     * Posts con timestamp maggiore o uguale a since, in ordine di timestamp
+     *
+     * @param since primo timestamp incluso
+     * @return (list) una nuova lista con i posts dell'intervallo
+     */
+    public List<E> since(long since) {
+        List<E> range = new ArrayList<>();
+        for (List<E> posts : this.byTime.tailMap(since, true).values())
+            range.addAll(posts);
+        return range;
+    }
+}